@@ -0,0 +1,150 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.bennsch.shoppinglist.sql.ItemDaoSql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that every ItemDao query is answered by an index, i.e. SQLite neither scans a whole
+ * table nor sorts the result in a temporary B-tree.
+ *
+ * The queries are read from ItemDaoSql (every constant is checked), so a new query is checked as
+ * soon as it's added there. Exceptions are listed below, with the reason. The statements Room
+ * generates for @Insert, @Update and @Delete access a single row by its primary key.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemDaoQueryPlanTest {
+
+    // Queries that may scan a table (or an index).
+    private static final Map<String, String> SCAN_ALLOWED = new HashMap<>();
+    // Queries that may sort their result in a temporary B-tree.
+    private static final Map<String, String> SORT_ALLOWED = new HashMap<>();
+    // A value for every parameter name used in ItemDaoSql.
+    private static final Map<String, Object> ARGS = new HashMap<>();
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    static {
+        SCAN_ALLOWED.put("GET_ALL_ITEMS", "Reads all items by design");
+        SCAN_ALLOWED.put("GET_CHECKLISTS", "Reads all checklists by design");
+        SCAN_ALLOWED.put("GET_ALL_CHECKLISTS_WITH_TRASH", "Reads all checklists by design");
+        SCAN_ALLOWED.put("GET_ACTIVE_CHECKLIST", "DbActiveChecklist has a single row");
+        SCAN_ALLOWED.put("GET_CATALOG_MOST_USED",
+                "Walks the index on useCount, lastUsed in order, stopped by the LIMIT");
+        SCAN_ALLOWED.put("SEARCH_CATALOG", "The full-text index is a virtual table");
+        SORT_ALLOWED.put("SEARCH_CATALOG", "The matches are ranked by useCount, lastUsed");
+
+        ARGS.put("listId", 1);
+        ARGS.put("listIds", 1);
+        ARGS.put("itemId", 1);
+        ARGS.put("isChecked", 0);
+        ARGS.put("limit", 10);
+        ARGS.put("position", 0L);
+        ARGS.put("normalizedName", "eggs");
+        ARGS.put("normalizedNames", "eggs");
+        ARGS.put("listTitle", "Groceries");
+        ARGS.put("newListTitle", "Groceries");
+        ARGS.put("trashedAt", 1L);
+        ARGS.put("trashedBefore", 1L);
+        ARGS.put("match", "eg*");
+    }
+
+    private ChecklistDatabase mDb;
+
+    @Before
+    public void createDb() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, ChecklistDatabase.class).build();
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+    }
+
+    @Test
+    public void allQueries_useIndex() throws IllegalAccessException {
+        Map<String, String> queries = getQueries();
+        assertFalse("No queries in ItemDaoSql", queries.isEmpty());
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            String name = query.getKey();
+            String sql = query.getValue();
+            List<String> plan = explainQueryPlan(sql, bindArgs(sql));
+            if (plan.isEmpty()) {
+                failures.add(name + ": empty query plan");
+            }
+            for (String detail : plan) {
+                // Older SQLite versions report "SCAN TABLE x", newer ones "SCAN x". A scan of a
+                // covering index still visits every row, so it is rejected as well.
+                if (detail.startsWith("SCAN") && !SCAN_ALLOWED.containsKey(name)) {
+                    failures.add(name + ": full scan in '" + detail + "'");
+                }
+                if (detail.contains("TEMP B-TREE") && !SORT_ALLOWED.containsKey(name)) {
+                    failures.add(name + ": temporary sort in '" + detail + "'");
+                }
+            }
+        }
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+
+    private static Map<String, String> getQueries() throws IllegalAccessException {
+        // All constants of ItemDaoSql (key: name).
+        Map<String, String> queries = new HashMap<>();
+        for (Field field : ItemDaoSql.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && (field.getType() == String.class)) {
+                queries.put(field.getName(), (String) field.get(null));
+            }
+        }
+        return queries;
+    }
+
+    private static Object[] bindArgs(String sql) {
+        // SQLite numbers the named parameters in the order of their first occurrence.
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PARAMETER.matcher(sql);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        Object[] args = new Object[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            assertTrue("No value for parameter :" + names.get(i), ARGS.containsKey(names.get(i)));
+            args[i] = ARGS.get(names.get(i));
+        }
+        return args;
+    }
+
+    private List<String> explainQueryPlan(String sql, Object... args) {
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = mDb.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int idxDetail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(idxDetail));
+            }
+        }
+        return details;
+    }
+}
@@ -0,0 +1,169 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Migrates a populated version 1 database step by step to the current version. After every step,
+ * MigrationTestHelper validates the schema against the one exported by Room (see
+ * "room.schemaDirectory"), and the rows are checked where a migration transforms the data.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration_test";
+
+    @Rule
+    public MigrationTestHelper mHelper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), ChecklistDatabase.class);
+
+    @Test
+    public void migrateAll_keepsData() throws Exception {
+        try (SupportSQLiteDatabase db = mHelper.createDatabase(TEST_DB, 1)) {
+            db.execSQL("INSERT INTO DbChecklist (listTitle, active) VALUES ('Groceries', 1)");
+            db.execSQL("INSERT INTO DbChecklist (listTitle, active) " +
+                    "VALUES ('__TRASH__Hardware(2024-01-01)', 0)");
+            // Version 1 compared names with equalsIgnoreCase() only, so item 2 duplicates item 1.
+            insertItemV1(db, 1, "Milk", "Groceries", false, 0, 0);
+            insertItemV1(db, 2, "milk ", "Groceries", false, 1, 2);
+            insertItemV1(db, 3, "Eggs", "Groceries", true, 2, 1);
+            insertItemV1(db, 4, "Nails", "__TRASH__Hardware(2024-01-01)", false, 0, 0);
+        }
+
+        // The titles are replaced by ids (in the order of the titles' rowids).
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 2, true, ChecklistDatabase.MIGRATION_1_2)) {
+            assertEquals(1, queryLong(db, "SELECT listId FROM DbChecklist " +
+                    "WHERE listTitle = 'Groceries'"));
+            assertEquals(2, queryLong(db, "SELECT listId FROM DbChecklist " +
+                    "WHERE listTitle = '__TRASH__Hardware(2024-01-01)'"));
+            assertEquals(1, queryLong(db, "SELECT belongsToChecklist FROM DbChecklistItem " +
+                    "WHERE itemId = 1"));
+            assertEquals(2, queryLong(db, "SELECT belongsToChecklist FROM DbChecklistItem " +
+                    "WHERE itemId = 4"));
+            assertEquals(4, queryLong(db, "SELECT COUNT(*) FROM DbChecklistItem"));
+        }
+
+        mHelper.runMigrationsAndValidate(TEST_DB, 3, true, ChecklistDatabase.MIGRATION_2_3)
+                .close();
+
+        // Duplicates keep their item, but get a unique key.
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 4, true, ChecklistDatabase.MIGRATION_3_4)) {
+            assertEquals("milk", queryString(db, "SELECT normalizedName FROM DbChecklistItem " +
+                    "WHERE itemId = 1"));
+            assertEquals("milk#2", queryString(db, "SELECT normalizedName FROM DbChecklistItem " +
+                    "WHERE itemId = 2"));
+            assertEquals("eggs", queryString(db, "SELECT normalizedName FROM DbChecklistItem " +
+                    "WHERE itemId = 3"));
+            assertEquals("nails", queryString(db, "SELECT normalizedName FROM DbChecklistItem " +
+                    "WHERE itemId = 4"));
+        }
+
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 5, true, ChecklistDatabase.MIGRATION_4_5)) {
+            assertEquals(0, queryLong(db, "SELECT position FROM DbChecklistItem " +
+                    "WHERE itemId = 1"));
+            assertEquals(DbChecklistItem.POSITION_STEP, queryLong(db,
+                    "SELECT position FROM DbChecklistItem WHERE itemId = 2"));
+            assertEquals(2 * DbChecklistItem.POSITION_STEP, queryLong(db,
+                    "SELECT position FROM DbChecklistItem WHERE itemId = 3"));
+        }
+
+        // Checked items lose their position, unchecked ones keep it.
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 6, true, ChecklistDatabase.MIGRATION_5_6)) {
+            assertTrue(isNull(db, "SELECT position FROM DbChecklistItem WHERE itemId = 3"));
+            assertEquals(DbChecklistItem.POSITION_STEP, queryLong(db,
+                    "SELECT position FROM DbChecklistItem WHERE itemId = 2"));
+        }
+
+        // Recreating DbChecklist must neither change the ids nor cascade to the items.
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 7, true, ChecklistDatabase.MIGRATION_6_7)) {
+            assertEquals(1, queryLong(db, "SELECT listId FROM DbActiveChecklist " +
+                    "WHERE id = " + DbActiveChecklist.ROW_ID));
+            assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM DbActiveChecklist"));
+            assertEquals(1, queryLong(db, "SELECT listId FROM DbChecklist " +
+                    "WHERE listTitle = 'Groceries'"));
+            assertEquals(4, queryLong(db, "SELECT COUNT(*) FROM DbChecklistItem"));
+        }
+
+        // Every item is used once, plus its (positive) incidence.
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 8, true, ChecklistDatabase.MIGRATION_7_8)) {
+            assertEquals(4, queryLong(db, "SELECT COUNT(*) FROM DbCatalogItem"));
+            assertEquals(1, queryLong(db, "SELECT useCount FROM DbCatalogItem " +
+                    "WHERE normalizedName = 'milk'"));
+            assertEquals(3, queryLong(db, "SELECT useCount FROM DbCatalogItem " +
+                    "WHERE normalizedName = 'milk#2'"));
+            assertEquals(2, queryLong(db, "SELECT useCount FROM DbCatalogItem " +
+                    "WHERE normalizedName = 'eggs'"));
+            // The full-text index is filled by the content sync triggers.
+            assertEquals("Eggs", queryString(db, "SELECT c.name FROM DbCatalogItem AS c " +
+                    "JOIN DbCatalogItemFts ON c.catalogId = DbCatalogItemFts.docid " +
+                    "WHERE DbCatalogItemFts MATCH 'eg*'"));
+            // The catalog triggers are in place.
+            db.execSQL("INSERT INTO DbChecklistItem " +
+                    "(name, normalizedName, belongsToChecklist, isChecked, position, incidence) " +
+                    "VALUES ('Eggs', 'eggs', 2, 0, 0, 0)");
+            assertEquals(3, queryLong(db, "SELECT useCount FROM DbCatalogItem " +
+                    "WHERE normalizedName = 'eggs'"));
+        }
+
+        mHelper.runMigrationsAndValidate(TEST_DB, 9, true, ChecklistDatabase.MIGRATION_8_9)
+                .close();
+
+        // The trash prefix is replaced by "trashedAt", the date stays in the title.
+        try (SupportSQLiteDatabase db = mHelper.runMigrationsAndValidate(
+                TEST_DB, 10, true, ChecklistDatabase.MIGRATION_9_10)) {
+            assertEquals("Hardware(2024-01-01)", queryString(db, "SELECT listTitle " +
+                    "FROM DbChecklist WHERE listId = 2"));
+            assertTrue(queryLong(db, "SELECT trashedAt FROM DbChecklist WHERE listId = 2") > 0);
+            assertEquals("Groceries", queryString(db, "SELECT listTitle " +
+                    "FROM DbChecklist WHERE listId = 1"));
+            assertEquals(0, queryLong(db, "SELECT trashedAt FROM DbChecklist WHERE listId = 1"));
+            assertEquals(5, queryLong(db, "SELECT COUNT(*) FROM DbChecklistItem"));
+        }
+    }
+
+    private static void insertItemV1(SupportSQLiteDatabase db, long itemId, String name,
+                                     String listTitle, boolean isChecked, long position,
+                                     long incidence) {
+        db.execSQL("INSERT INTO DbChecklistItem " +
+                "(itemId, name, belongsToChecklist, isChecked, position, incidence) " +
+                "VALUES (?, ?, ?, ?, ?, ?)",
+                new Object[]{itemId, name, listTitle, isChecked ? 1 : 0, position, incidence});
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            assertTrue("No result: " + sql, cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static String queryString(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            assertTrue("No result: " + sql, cursor.moveToFirst());
+            return cursor.getString(0);
+        }
+    }
+
+    private static boolean isNull(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            assertTrue("No result: " + sql, cursor.moveToFirst());
+            return cursor.isNull(0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that a read transaction as started by ChecklistRepository.beginRead() doesn't block
+ * writers on other threads, and that it keeps seeing the state from before their writes.
+ *
+ * The database is a file (the write-ahead log is not used for in-memory databases), configured
+ * like in ChecklistDatabase.getInstance().
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReadTransactionTest {
+
+    private static final String TEST_DB = "read_transaction_test";
+    // A blocked writer would wait until the read transaction ends.
+    private static final long WRITE_TIMEOUT_SECONDS = 5;
+
+    private Context mContext;
+    private ChecklistDatabase mDb;
+    private int mListId;
+
+    @Before
+    public void createDb() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(TEST_DB);
+        mDb = Room.databaseBuilder(mContext, ChecklistDatabase.class, TEST_DB)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        mListId = (int) mDb.itemDao().insert(new DbChecklist("Groceries"));
+        mDb.itemDao().insert(new DbChecklistItem("Milk", false, 0L, mListId, 0));
+    }
+
+    @After
+    public void closeDb() {
+        mDb.close();
+        mContext.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void readTransaction_writeCompletes() throws Exception {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        assertTrue(db.isWriteAheadLoggingEnabled());
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        // Same as ChecklistRepository.beginRead() and endRead().
+        db.beginTransactionReadOnly();
+        try {
+            // The snapshot is taken by the first read of the transaction.
+            assertEquals(1, countItems(db));
+            Future<Long> write = writer.submit(() -> mDb.itemDao().insert(
+                    new DbChecklistItem("Eggs", false, 1L, mListId, 0)));
+            // Throws a TimeoutException if the writer is blocked.
+            assertTrue(write.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS) > 0);
+            assertEquals(1, countItems(db));
+        } finally {
+            db.endTransaction();
+            writer.shutdownNow();
+        }
+        assertEquals(2, countItems(db));
+    }
+
+    private static long countItems(SupportSQLiteDatabase db) {
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM DbChecklistItem")) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+public class Checklist {
+    /*
+     *  Represents a Checklist in the UI, as opposed to the database.
+     */
+
+    // Uniquely identifies the Checklist, even if it's renamed.
+    private final int mId;
+    private final String mTitle;
+
+    public Checklist(int id, @NonNull String title) {
+        mId = id;
+        mTitle = title;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    @NonNull
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // Required for Transformations.distinctUntilChanged().
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof Checklist)) {
+            return false;
+        } else {
+            Checklist other = (Checklist) o;
+            return (mId == other.mId) && mTitle.equals(other.mTitle);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mId, mTitle);
+    }
+}
@@ -8,10 +8,10 @@ import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.ColorUtils;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
-import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.ListUpdateCallback;
@@ -32,7 +32,12 @@ import com.google.android.material.divider.MaterialDividerItemDecoration;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class ChecklistFragment extends Fragment {
@@ -40,13 +45,15 @@ public class ChecklistFragment extends Fragment {
      *  Fragment to display a Checklist page. It is used for both checked and unchecked items.
      */
 
-    private static final String ARG_LIST_TITLE = "list_title";
+    private static final String ARG_LIST_ID = "list_id";
+    // Shared by all pages, the diffs are short-lived.
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
     private static final String ARG_DISPLAY_CHECKED_ITEMS = "display_checked_items";
 
     private FragmentChecklistBinding mBinding;
     private RecyclerViewAdapter mRecyclerViewAdapter;
     private boolean mDisplayCheckedItems; // Whether this fragment displays checked or unchecked items
-    private String mListTitle;
+    private int mListId;
     private MainViewModel mViewModel;
     private MainViewModel.DeleteItemsMode mDeleteItemsMode;
 
@@ -54,10 +61,10 @@ public class ChecklistFragment extends Fragment {
         // Required empty public constructor.
     }
 
-    public static ChecklistFragment newInstance(String listTitle, boolean displayCheckedItems) {
+    public static ChecklistFragment newInstance(int listId, boolean displayCheckedItems) {
         ChecklistFragment fragment = new ChecklistFragment();
         Bundle args = new Bundle();
-        args.putString(ARG_LIST_TITLE, listTitle);
+        args.putInt(ARG_LIST_ID, listId);
         args.putBoolean(ARG_DISPLAY_CHECKED_ITEMS, displayCheckedItems);
         fragment.setArguments(args);
         return fragment;
@@ -67,7 +74,7 @@ public class ChecklistFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         assert getArguments() != null;
-        mListTitle = getArguments().getString(ARG_LIST_TITLE);
+        mListId = getArguments().getInt(ARG_LIST_ID);
         mDisplayCheckedItems = getArguments().getBoolean(ARG_DISPLAY_CHECKED_ITEMS);
         mRecyclerViewAdapter = new RecyclerViewAdapter();
         // Retrieve the MainActivity's ViewModel instance, to communicate and share data between the
@@ -88,8 +95,16 @@ public class ChecklistFragment extends Fragment {
         mBinding.recyclerView.addItemDecoration(decor);
         mBinding.recyclerView.setAdapter(mRecyclerViewAdapter);
         mBinding.recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        mBinding.recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // Not all checked items are loaded at once, so let the ViewModel know how far
+                // the user has scrolled.
+                onItemsScrolled();
+            }
+        });
 
-        mViewModel.getItemsSortedByPosition(mListTitle, mDisplayCheckedItems).observe(
+        mViewModel.getItemsSorted(mListId, mDisplayCheckedItems).observe(
                 getViewLifecycleOwner(),
                 this::onItemsChanged);
 
@@ -100,9 +115,7 @@ public class ChecklistFragment extends Fragment {
         mDeleteItemsMode = mViewModel.getDeleteItemsMode();
         mDeleteItemsMode.observe(
                 getViewLifecycleOwner(),
-                mode -> mRecyclerViewAdapter.notifyItemRangeChanged(
-                        // Add payload to prevent item animation
-                        0, mRecyclerViewAdapter.getItemCount(), new Object()));
+                mode -> mRecyclerViewAdapter.onDeleteItemsModeChanged());
 
         if (mDisplayCheckedItems) {
             mBinding.emptyListPlaceholderMsg.setTextAppearance(R.style.ChecklistText_Checked);
@@ -140,11 +153,12 @@ public class ChecklistFragment extends Fragment {
     }
 
     private void onDeleteIconClicked(ChecklistItem item, int position) {
-        mViewModel.deleteItem(mListTitle, item);
+        mViewModel.deleteItem(mListId, item);
     }
 
     protected void onItemsChanged(List<ChecklistItem> newItemsSorted) {
-        mRecyclerViewAdapter.updateItems(newItemsSorted);
+        mRecyclerViewAdapter.updateItems(
+                newItemsSorted, mViewModel.getItemsChange(mListId, mDisplayCheckedItems));
         showEmptyListPlaceholder(newItemsSorted.isEmpty());
     }
 
@@ -153,7 +167,7 @@ public class ChecklistFragment extends Fragment {
             // User cannot flip items while "DeleteItems" is active.
             vibrate();
         } else {
-            mViewModel.flipItem(mListTitle, item.getName());
+            mViewModel.flipItem(mListId, item.getName());
             mViewModel.getSimpleOnboarding().notify(MainViewModel.Onboarding.Event.ITEM_TAPPED);
         }
     }
@@ -163,7 +177,20 @@ public class ChecklistFragment extends Fragment {
     }
 
     protected void onItemsMoved(List<ChecklistItem> itemsSortedByPosition) {
-        mViewModel.itemsHaveBeenMoved(mListTitle, mDisplayCheckedItems, itemsSortedByPosition);
+        mViewModel.itemsHaveBeenMoved(mListId, mDisplayCheckedItems, itemsSortedByPosition);
+        // More items might have to be loaded, which has been postponed while dragging.
+        onItemsScrolled();
+    }
+
+    private void onItemsScrolled() {
+        LinearLayoutManager layoutManager =
+                (LinearLayoutManager) mBinding.recyclerView.getLayoutManager();
+        if (layoutManager != null) {
+            mViewModel.itemsScrolled(
+                    mListId,
+                    mDisplayCheckedItems,
+                    layoutManager.findLastVisibleItemPosition());
+        }
     }
 
     @SuppressWarnings("deprecation")
@@ -193,10 +220,68 @@ public class ChecklistFragment extends Fragment {
 
     class RecyclerViewAdapter extends RecyclerView.Adapter<RecyclerViewAdapter.ViewHolder> {
 
+        // Payloads for partial rebinds (see onBindViewHolder()). Using a payload also prevents the
+        // item's change animation.
+        private static final String PAYLOAD_NAME = ChecklistItemsChange.PAYLOAD_NAME;
+        private static final String PAYLOAD_INCIDENCE = ChecklistItemsChange.PAYLOAD_INCIDENCE;
+        private static final String PAYLOAD_FONT_SIZE = "fontSize";
+        private static final String PAYLOAD_DELETE_MODE = "deleteMode";
+
         private List<ChecklistItem> mCachedItems = new ArrayList<>();
         private ItemTouchHelper mItemTouchHelper;
         private Float mFontSizePx; // Font size in pixels
 
+        // The diffs are calculated in the background (see updateItems()). Only the latest diff
+        // (highest generation) is applied, older ones are dropped.
+        private final Executor mMainExecutor = ContextCompat.getMainExecutor(requireContext());
+        private final AtomicInteger mMaxScheduledGeneration = new AtomicInteger(0);
+        // Incremented whenever mCachedItems is modified in place (i.e. by dragging), so that a
+        // diff that has been calculated against the previous state can be detected.
+        private int mCachedItemsVersion = 0;
+        private boolean mIsDragging = false;
+        // Latest items received while dragging, applied once the drag has finished.
+        private List<ChecklistItem> mPendingItems = null;
+        // The items (as received by updateItems()) that mCachedItems has last been set to, and
+        // the state at that time. Used to check whether a ChecklistItemsChange can be applied.
+        private List<ChecklistItem> mAppliedItems = null;
+        private int mAppliedGeneration = 0;
+        private int mAppliedItemsVersion = 0;
+        // Stable ids of the cached items, by normalized name (see getItemId()).
+        private Map<String, Long> mStableIds = new HashMap<>();
+        private long mNextStableId = 0;
+        private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+                if (count == 1) {
+                    // If a single item has been added, scroll to it.
+                    mBinding.recyclerView.smoothScrollToPosition(position);
+                }
+                // TODO: highlight the new item (e.g. flash animation)?
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        };
+
+        RecyclerViewAdapter() {
+            // The items' ids are stable (see getItemId()), so the RecyclerView can keep track of
+            // the ViewHolders by id.
+            setHasStableIds(true);
+        }
+
         @NonNull
         @Override
         public RecyclerViewAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -204,15 +289,35 @@ public class ChecklistFragment extends Fragment {
                     LayoutInflater.from(parent.getContext()), parent, false));
         }
 
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position,
+                                     @NonNull List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            // Only update the Views affected by the change. Multiple payloads may have been
+            // merged into one rebind.
+            ChecklistItem item = mCachedItems.get(position);
+            for (Object payload : payloads) {
+                if (PAYLOAD_NAME.equals(payload) || PAYLOAD_INCIDENCE.equals(payload)) {
+                    bindText(holder, item);
+                } else if (PAYLOAD_FONT_SIZE.equals(payload)) {
+                    bindFontSize(holder);
+                } else if (PAYLOAD_DELETE_MODE.equals(payload)) {
+                    bindDeleteMode(holder);
+                } else {
+                    onBindViewHolder(holder, position);
+                    return;
+                }
+            }
+        }
+
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
             ChecklistItem item = mCachedItems.get(position);
             TextView textView = holder.getBinding().textView;
-            textView.setText(item.getName());
-            if (PreferencesRepository.DBG_SHOW_INCIDENCE) {
-                textView.setText(getString(
-                        R.string.debug_incidence, item.getIncidence(), item.getName()));
-            }
+            bindText(holder, item);
             if (mDisplayCheckedItems) {
                 textView.setTextAppearance(R.style.ChecklistText_Checked_Item);
                 textView.setPaintFlags(textView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
@@ -229,10 +334,26 @@ public class ChecklistFragment extends Fragment {
                 );
             }
 
+            bindFontSize(holder);
+            bindDeleteMode(holder);
+        }
+
+        private void bindText(@NonNull ViewHolder holder, @NonNull ChecklistItem item) {
+            TextView textView = holder.getBinding().textView;
+            textView.setText(item.getName());
+            if (PreferencesRepository.DBG_SHOW_INCIDENCE) {
+                textView.setText(getString(
+                        R.string.debug_incidence, item.getIncidence(), item.getName()));
+            }
+        }
+
+        private void bindFontSize(@NonNull ViewHolder holder) {
             if (mFontSizePx != null) {
-                textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mFontSizePx);
+                holder.getBinding().textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mFontSizePx);
             }
+        }
 
+        private void bindDeleteMode(@NonNull ViewHolder holder) {
             if (mDeleteItemsMode.getValue() == MainViewModel.DeleteItemsMode.ACTIVATED) {
                 // For "animateLayoutChanges" (XML), it matters which View  is made visible/gone first
                 holder.getBinding().dragHandle.setVisibility(View.GONE);
@@ -284,45 +405,119 @@ public class ChecklistFragment extends Fragment {
             return mCachedItems.size();
         }
 
+        @Override
+        public long getItemId(int position) {
+            // Not the itemId: items inserted by the ChecklistItemsModel have a temporary id until
+            // they have been written to the database, but they must keep their stable id.
+            Long stableId = mStableIds.get(mCachedItems.get(position).getNormalizedName());
+            assert stableId != null: "No stable id at position " + position;
+            return (stableId != null) ? stableId : RecyclerView.NO_ID;
+        }
+
         public void setFontSize(Float fontSize) {
             mFontSizePx = fontSize;
-            notifyItemRangeChanged(0, getItemCount());
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_FONT_SIZE);
+        }
+
+        public void onDeleteItemsModeChanged() {
+            // Only the icons have to be updated.
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_DELETE_MODE);
+        }
+
+        public void updateItems(List<ChecklistItem> newItems,
+                                @Nullable ChecklistItemsChange change) {
+            // If "change" describes how "newItems" have been derived from the current items, it's
+            // applied directly (common case: a single item has been flipped, inserted etc.).
+            if (!mIsDragging && (change != null) && (change.getResult() == newItems) &&
+                    (change.getBase() == mAppliedItems) &&
+                    (mMaxScheduledGeneration.get() == mAppliedGeneration) &&
+                    (mCachedItemsVersion == mAppliedItemsVersion)) {
+                mPendingItems = null;
+                mMaxScheduledGeneration.incrementAndGet();
+                setCachedItems(newItems);
+                change.dispatchUpdatesTo(mUpdateCallback);
+            } else {
+                updateItems(newItems);
+            }
         }
 
         public void updateItems(List<ChecklistItem> newItems) {
-            final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
-                    new DiffCallback(getCachedItems(), newItems));
-            mCachedItems = newItems;
-            // This will trigger the appropriate animation.
-            diffResult.dispatchUpdatesTo(new ListUpdateCallback() {
-                @Override
-                public void onInserted(int position, int count) {
-                    notifyItemRangeInserted(position, count);
-                    if (count == 1) {
-                        // If a single item has been added, scroll to it.
-                        mBinding.recyclerView.smoothScrollToPosition(position);
-                    }
-                    // TODO: highlight the new item (e.g. flash animation)?
+            // Calculate the diff between the current and the new items on a background thread,
+            // and apply it on the main thread (together with the new items).
+            mPendingItems = null;
+            if (mIsDragging) {
+                // The user is moving mCachedItems around, so don't touch them until the drag has
+                // finished.
+                mPendingItems = newItems;
+                return;
+            }
+            final int generation = mMaxScheduledGeneration.incrementAndGet();
+            final int cachedItemsVersion = mCachedItemsVersion;
+            final List<ChecklistItem> oldItems = new ArrayList<>(mCachedItems);
+            if (oldItems.isEmpty() || newItems.isEmpty()) {
+                // Nothing to diff.
+                applyItems(newItems, null);
+                return;
+            }
+            DIFF_EXECUTOR.execute(() -> {
+                if (generation != mMaxScheduledGeneration.get()) {
+                    // Newer items have arrived already.
+                    return;
                 }
+                KeyedDiff.Result diffResult = KeyedDiff.calculateDiff(
+                        oldItems, newItems, new DiffCallback());
+                mMainExecutor.execute(() -> {
+                    if (generation != mMaxScheduledGeneration.get()) {
+                        return;
+                    }
+                    if (cachedItemsVersion != mCachedItemsVersion) {
+                        // The items have been dragged in the meantime, so the diff is outdated.
+                        updateItems(newItems);
+                        return;
+                    }
+                    applyItems(newItems, diffResult);
+                });
+            });
+        }
 
-                @Override
-                public void onRemoved(int position, int count) {
-                    notifyItemRangeRemoved(position, count);
+        private void applyItems(List<ChecklistItem> newItems,
+                                @Nullable KeyedDiff.Result diffResult) {
+            // Replace the items and notify the RecyclerView at once. If there is no "diffResult",
+            // either the old or the new items are empty.
+            int oldSize = mCachedItems.size();
+            setCachedItems(newItems);
+            if (diffResult == null) {
+                if (oldSize > 0) {
+                    notifyItemRangeRemoved(0, oldSize);
+                } else if (!mCachedItems.isEmpty()) {
+                    notifyItemRangeInserted(0, mCachedItems.size());
                 }
+                return;
+            }
+            // This will trigger the appropriate animation.
+            diffResult.dispatchUpdatesTo(mUpdateCallback);
+        }
 
-                @Override
-                public void onMoved(int fromPosition, int toPosition) {
-                    notifyItemMoved(fromPosition, toPosition);
-                }
+        private void setCachedItems(List<ChecklistItem> newItems) {
+            // Copy, because mCachedItems is modified in place when items are dragged.
+            mCachedItems = new ArrayList<>(newItems);
+            mCachedItemsVersion++;
+            updateStableIds();
+            mAppliedItems = newItems;
+            mAppliedGeneration = mMaxScheduledGeneration.get();
+            mAppliedItemsVersion = mCachedItemsVersion;
+        }
 
-                @Override
-                public void onChanged(int position, int count, @Nullable Object payload) {
-                    notifyItemRangeChanged(position, count, payload);
-                }
-            });
-            if (PreferencesRepository.DBG_SHOW_INCIDENCE) {
-                notifyItemRangeChanged(0, getItemCount());
+        private void updateStableIds() {
+            // An item keeps its id as long as it's in the list (the normalized name is unique
+            // within a Checklist, and it's also the key of the diff). New items get a new id.
+            Map<String, Long> stableIds = new HashMap<>();
+            for (ChecklistItem item : mCachedItems) {
+                Long stableId = mStableIds.get(item.getNormalizedName());
+                stableIds.put(item.getNormalizedName(),
+                        (stableId != null) ? stableId : mNextStableId++);
             }
+            mStableIds = stableIds;
         }
 
         public boolean onItemMove(@NonNull RecyclerView.ViewHolder itemFrom,
@@ -333,7 +528,7 @@ public class ChecklistFragment extends Fragment {
             if ((from == RecyclerView.NO_POSITION) || (to == RecyclerView.NO_POSITION)) {
                 return false;
             } else {
-                // We need to update cachedItems, or otherwise DiffUtil.calculateDiff() in update()
+                // We need to update cachedItems, or otherwise KeyedDiff.calculateDiff() in update()
                 // won't work properly. The "newItems" will already match the cachedItems
                 // when the ViewModel has updated the database and calls the callback. However,
                 // updating the cachedItems ensures that the RecyclerView visually matches it's
@@ -341,6 +536,7 @@ public class ChecklistFragment extends Fragment {
                 // calls to update the ViewModel.
 
                 // Swap two adjacent items as many times as the item has been moved.
+                mCachedItemsVersion++;
                 if (from < to) {
                     for (int i = from; i < to; i++) {
                         Collections.swap(mCachedItems, i, i + 1);
@@ -357,12 +553,18 @@ public class ChecklistFragment extends Fragment {
         }
 
         public void onDragStart() {
+            mIsDragging = true;
             mViewModel.setItemsDragged(true);
         }
 
         public void onDragFinished() {
+            mIsDragging = false;
             mViewModel.setItemsDragged(false);
-            onItemsMoved(mCachedItems);
+            onItemsMoved(new ArrayList<>(mCachedItems));
+            if (mPendingItems != null) {
+                // No newer items have arrived since (e.g. as a result of the move).
+                updateItems(mPendingItems);
+            }
         }
 
         public ChecklistItem getCachedItem(int pos) {
@@ -423,49 +625,37 @@ public class ChecklistFragment extends Fragment {
             }
         }
 
-        class DiffCallback extends DiffUtil.Callback {
-
-            private final List<ChecklistItem> mOldList;
-            private final List<ChecklistItem> mNewList;
+        class DiffCallback implements KeyedDiff.Callback<ChecklistItem> {
 
-            public DiffCallback(List<ChecklistItem> oldList, List<ChecklistItem> newList) {
-                this.mOldList = oldList;
-                this.mNewList = newList;
-            }
-
-            @Nullable
+            @NonNull
             @Override
-            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
-                return super.getChangePayload(oldItemPosition, newItemPosition);
+            public Object getKey(@NonNull ChecklistItem item) {
+                // The normalized name is unique within a Checklist. Unlike the itemId, it's also
+                // known for items that haven't been written to the database yet.
+                return item.getNormalizedName();
             }
 
             @Override
-            public int getOldListSize() {
-                return mOldList.size();
-            }
-
-            @Override
-            public int getNewListSize() {
-                return mNewList.size();
-            }
-
-            @Override
-            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                // Whether two objects represent the same item.
-                final ChecklistItem oldItem = mOldList.get(oldItemPosition);
-                final ChecklistItem newItem = mNewList.get(newItemPosition);
+            public boolean areContentsTheSame(@NonNull ChecklistItem oldItem,
+                                              @NonNull ChecklistItem newItem) {
+                // Whether the visual representation is the same. "isChecked" is the same for all
+                // items of the list.
+                if (PreferencesRepository.DBG_SHOW_INCIDENCE &&
+                        (oldItem.getIncidence() != newItem.getIncidence())) {
+                    return false;
+                }
                 return oldItem.getName().equals(newItem.getName());
             }
 
+            @Nullable
             @Override
-            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                // Whether the visual representation is the same.
-                // This method is called only if areItemsTheSame() returned true for these items.
-                final ChecklistItem oldItem = mOldList.get(oldItemPosition);
-                final ChecklistItem newItem = mNewList.get(newItemPosition);
-                // TODO: More than name required here? E.g. "isChecked"
-                //  attribute is part of visual representation
-                return oldItem.getName().equals(newItem.getName());
+            public Object getChangePayload(@NonNull ChecklistItem oldItem,
+                                           @NonNull ChecklistItem newItem) {
+                // Called if areContentsTheSame() returned false. Only the text may have changed.
+                return ((oldItem.getIncidence() != newItem.getIncidence()) &&
+                        oldItem.getName().equals(newItem.getName()))
+                        ? PAYLOAD_INCIDENCE
+                        : PAYLOAD_NAME;
             }
         }
     }
@@ -1,24 +1,71 @@
 package com.bennsch.shoppinglist;
 
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+
+import java.util.Objects;
+
 public class ChecklistItem {
     /*
      *  Represents a Checklist-Item in the UI, as opposed to the database.
      */
 
+    // The database's "itemId", or a temporary (negative) id if the item hasn't been written to
+    // the database yet (see ChecklistItemsModel).
+    private final long mItemId;
     private final String mName;
+    // Key to look up the item by name (see DbChecklistItem.normalizeName()).
+    private final String mNormalizedName;
     // Used to sort "checked" items. Will be incremented everytime the user flips an item.
     private final long mIncidence;
 
-    public ChecklistItem(String name, long incidence) {
+    public ChecklistItem(long itemId, String name, long incidence) {
+        this(itemId, name, DbChecklistItem.normalizeName(name), incidence);
+    }
+
+    public ChecklistItem(long itemId, String name, String normalizedName, long incidence) {
+        mItemId = itemId;
         mName = name;
+        mNormalizedName = normalizedName;
         mIncidence = incidence;
     }
 
+    public ChecklistItem withIncidence(long incidence) {
+        return new ChecklistItem(mItemId, mName, mNormalizedName, incidence);
+    }
+
+    public long getItemId() {
+        return mItemId;
+    }
+
     public String getName() {
         return mName;
     }
 
+    public String getNormalizedName() {
+        return mNormalizedName;
+    }
+
     public long getIncidence() {
         return mIncidence;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        // Required to reconcile the in-memory items with the database (see ChecklistItemsModel).
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof ChecklistItem)) {
+            return false;
+        } else {
+            ChecklistItem other = (ChecklistItem) o;
+            return (mItemId == other.mItemId) &&
+                    (mIncidence == other.mIncidence) &&
+                    Objects.equals(mName, other.mName);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mItemId, mName, mIncidence);
+    }
 }
@@ -0,0 +1,119 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ChecklistItemsChange {
+    /*
+     *  Describes how a list of ChecklistItems ("result") has been derived from the previous list
+     *  ("base"), as a sequence of typed operations. Each operation refers to the item by its id.
+     *
+     *  Published by ChecklistItemsModel along with the new list, so that the UI can apply the
+     *  operations directly, instead of calculating a diff. Positions refer to the list as it
+     *  is after all previous operations have been applied (same as ListUpdateCallback).
+     */
+
+    public enum Type {
+        INSERTED,
+        REMOVED,
+        MOVED,
+        // The item stays at its position, but its contents have changed (see "payload").
+        CHANGED
+    }
+
+    // Payloads of CHANGED operations: what has changed about the item.
+    public static final String PAYLOAD_NAME = "name";
+    public static final String PAYLOAD_INCIDENCE = "incidence";
+
+    public static class Operation {
+
+        @NonNull public final Type type;
+        public final long itemId;
+        // For MOVED, the item is moved from "position" to "toPosition".
+        public final int position;
+        public final int toPosition;
+        // For CHANGED, one of the PAYLOAD_* constants.
+        @Nullable public final Object payload;
+
+        Operation(@NonNull Type type, long itemId, int position, int toPosition,
+                  @Nullable Object payload) {
+            this.type = type;
+            this.itemId = itemId;
+            this.position = position;
+            this.toPosition = toPosition;
+            this.payload = payload;
+        }
+    }
+
+    private final List<ChecklistItem> mBase;
+    private final List<ChecklistItem> mResult;
+    private final List<Operation> mOperations = new ArrayList<>();
+
+
+    ChecklistItemsChange(@NonNull List<ChecklistItem> base, @NonNull List<ChecklistItem> result) {
+        mBase = base;
+        mResult = result;
+    }
+
+    ChecklistItemsChange inserted(@NonNull ChecklistItem item, int position) {
+        mOperations.add(new Operation(Type.INSERTED, item.getItemId(), position, position, null));
+        return this;
+    }
+
+    ChecklistItemsChange removed(@NonNull ChecklistItem item, int position) {
+        mOperations.add(new Operation(Type.REMOVED, item.getItemId(), position, position, null));
+        return this;
+    }
+
+    ChecklistItemsChange moved(@NonNull ChecklistItem item, int fromPosition, int toPosition) {
+        mOperations.add(new Operation(Type.MOVED, item.getItemId(), fromPosition, toPosition, null));
+        return this;
+    }
+
+    ChecklistItemsChange changed(@NonNull ChecklistItem item, int position,
+                                 @NonNull Object payload) {
+        mOperations.add(new Operation(Type.CHANGED, item.getItemId(), position, position,
+                payload));
+        return this;
+    }
+
+    @NonNull
+    public List<ChecklistItem> getBase() {
+        // The list the operations have to be applied to (compare by reference).
+        return mBase;
+    }
+
+    @NonNull
+    public List<ChecklistItem> getResult() {
+        return mResult;
+    }
+
+    @NonNull
+    public List<Operation> getOperations() {
+        return mOperations;
+    }
+
+    public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+        for (Operation operation : mOperations) {
+            switch (operation.type) {
+                case INSERTED:
+                    callback.onInserted(operation.position, 1);
+                    break;
+                case REMOVED:
+                    callback.onRemoved(operation.position, 1);
+                    break;
+                case MOVED:
+                    callback.onMoved(operation.position, operation.toPosition);
+                    break;
+                case CHANGED:
+                    callback.onChanged(operation.position, 1, operation.payload);
+                    break;
+            }
+        }
+    }
+}
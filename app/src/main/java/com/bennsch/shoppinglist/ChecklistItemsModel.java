@@ -0,0 +1,383 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import com.bennsch.shoppinglist.datamodel.ChecklistSnapshot;
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+
+public class ChecklistItemsModel {
+    /*
+     *  In-memory model of the items of a single Checklist, as they are displayed in the UI.
+     *
+     *  User actions (flip, insert, delete, move) are applied to the model immediately, so the UI
+     *  doesn't have to wait for the database. The database writes are performed asynchronously
+     *  by the MainViewModel, which reports them via beginWrite() and endWrite().
+     *
+     *  While writes are pending, the database is behind the model, so its updates are ignored.
+     *  Once all writes are done, the database is authoritative again: its updates are only
+     *  published if they differ from the model (e.g. if the model placed an item differently).
+     *  The last update might already contain all writes (and has been ignored), so it's published
+     *  right away if its version is up-to-date (see ChecklistSnapshot.getVersion()). If a write
+     *  fails, the model falls back to the last state received from the database.
+     *
+     *  Along with every list changed by a user action, a ChecklistItemsChange is published (see
+     *  getLastChange()), so the UI doesn't need to calculate a diff. The same goes for updates
+     *  from the database that only change the contents of the items (see contentChange()).
+     *
+     *  Must only be used on the main thread.
+     */
+
+    private final MediatorLiveData<List<ChecklistItem>> mUnchecked;
+    private final MediatorLiveData<List<ChecklistItem>> mChecked;
+    // Current version of the checklist in the database.
+    private final LongSupplier mDbVersion;
+    // Last state received from the database (null if not loaded yet).
+    private ChecklistSnapshot mDbSnapshot = null;
+    private List<ChecklistItem> mDbUnchecked = null;
+    private List<ChecklistItem> mDbChecked = null;
+    // How the current lists have been derived from the previous ones (null if unknown, e.g. if
+    // they come from the database).
+    private ChecklistItemsChange mUncheckedChange = null;
+    private ChecklistItemsChange mCheckedChange = null;
+    private int mPendingWrites = 0;
+    // Items inserted into the model get a temporary (negative) id until the database has
+    // assigned one. It's not shown to the RecyclerView, which keys the items by their normalized
+    // name instead (see ChecklistFragment).
+    private long mNextTemporaryId = -1;
+    private boolean mWriteFailed = false;
+
+
+    public ChecklistItemsModel(@NonNull LiveData<ChecklistSnapshot> dbSnapshot,
+                               @NonNull LongSupplier dbVersion) {
+        // The database snapshot is only observed as long as the model itself is observed. Both
+        // lists are derived from it, whichever of them is observed.
+        mDbVersion = dbVersion;
+        mUnchecked = new MediatorLiveData<>();
+        mUnchecked.addSource(dbSnapshot, this::onDbSnapshot);
+        mChecked = new MediatorLiveData<>();
+        mChecked.addSource(dbSnapshot, this::onDbSnapshot);
+    }
+
+    @NonNull
+    public LiveData<List<ChecklistItem>> getItems(boolean isChecked) {
+        return isChecked ? mChecked : mUnchecked;
+    }
+
+    @Nullable
+    public ChecklistItemsChange getLastChange(boolean isChecked) {
+        // Return how the current items have been derived from the previous ones, or null if
+        // that's unknown. Only valid if its result is the current value of getItems().
+        return isChecked ? mCheckedChange : mUncheckedChange;
+    }
+
+    public void beginWrite() {
+        // A write to the database has been started.
+        mPendingWrites++;
+    }
+
+    public void endWrite(boolean success) {
+        // A write to the database has been completed (successfully or not).
+        assert mPendingWrites > 0: "endWrite() without beginWrite()";
+        mPendingWrites--;
+        mWriteFailed |= !success;
+        if (mPendingWrites == 0) {
+            // The database is authoritative again. If its last update already contains all
+            // writes, publish it now (it has been ignored). Otherwise, the update that does is
+            // still on its way and is published once received. If a write has failed, the
+            // model is no longer in sync with the database, so fall back to its state anyway.
+            boolean upToDate = (mDbSnapshot != null) &&
+                    (mDbSnapshot.getVersion() >= mDbVersion.getAsLong());
+            if (upToDate || mWriteFailed) {
+                publishDb();
+            }
+            mWriteFailed = false;
+        }
+    }
+
+    public void flip(@NonNull String name) {
+        // Same as MainViewModel.flipItem(), but applied to the model.
+        Edit edit = new Edit();
+        edit.flip(DbChecklistItem.normalizeName(name));
+        edit.publish();
+    }
+
+    public void insert(@NonNull String name, boolean isChecked) {
+        // Same as MainViewModel.insertItem(), but applied to the model. "name" must already be
+        // stripped.
+        insertAll(Collections.singletonList(name), isChecked);
+    }
+
+    public void insertAll(@NonNull List<String> names, boolean isChecked) {
+        // Same as insert(), but for each of the "names" (in order). The observers are only
+        // notified once.
+        Edit edit = new Edit();
+        for (String name : names) {
+            edit.insert(name, isChecked);
+        }
+        edit.publish();
+    }
+
+    public boolean contains(@NonNull String name) {
+        // Return true if an item named "name" is currently loaded (checked or unchecked).
+        String normalizedName = DbChecklistItem.normalizeName(name);
+        List<ChecklistItem> unchecked = mUnchecked.getValue();
+        List<ChecklistItem> checked = mChecked.getValue();
+        return ((unchecked != null) && (indexOf(unchecked, normalizedName) >= 0)) ||
+               ((checked != null) && (indexOf(checked, normalizedName) >= 0));
+    }
+
+    public void delete(@NonNull String name) {
+        Edit edit = new Edit();
+        edit.delete(DbChecklistItem.normalizeName(name));
+        edit.publish();
+    }
+
+    public void move(boolean areChecked, @NonNull List<ChecklistItem> itemsInNewOrder) {
+        // Same as MainViewModel.itemsHaveBeenMoved(), but applied to the model.
+        List<ChecklistItem> items = new ArrayList<>(itemsInNewOrder.size());
+        long prevIncidence = 0;
+        for (int i = 0; i < itemsInNewOrder.size(); i++) {
+            ChecklistItem item = itemsInNewOrder.get(i);
+            if (areChecked && (i > 0) && (item.getIncidence() >= prevIncidence)) {
+                item = item.withIncidence(prevIncidence - 1);
+            }
+            prevIncidence = item.getIncidence();
+            items.add(item);
+        }
+        // The UI has already moved the items itself.
+        setLastChange(areChecked, null);
+        (areChecked ? mChecked : mUnchecked).setValue(items);
+    }
+
+    private void onDbSnapshot(@NonNull ChecklistSnapshot snapshot) {
+        // Called by both lists' sources, but it's the same snapshot.
+        if (snapshot == mDbSnapshot) {
+            return;
+        }
+        mDbSnapshot = snapshot;
+        mDbUnchecked = toChecklistItems(snapshot.getItemsSorted(false));
+        mDbChecked = toChecklistItems(snapshot.getItemsSorted(true));
+        if (mPendingWrites == 0) {
+            publishDb();
+        }
+    }
+
+    private void publishDb() {
+        if (mDbSnapshot != null) {
+            publish(false, mDbUnchecked);
+            publish(true, mDbChecked);
+        }
+    }
+
+    private void publish(boolean isChecked, @NonNull List<ChecklistItem> items) {
+        // Publish items received from the database. Only notify the observers if the items have
+        // actually changed.
+        MediatorLiveData<List<ChecklistItem>> liveData = isChecked ? mChecked : mUnchecked;
+        List<ChecklistItem> current = liveData.getValue();
+        if (!items.equals(current)) {
+            setLastChange(isChecked, (current != null) ? contentChange(current, items) : null);
+            liveData.setValue(items);
+        }
+    }
+
+    private void publishChange(boolean isChecked, @NonNull ChecklistItemsChange change) {
+        // Publish items changed by the model itself.
+        setLastChange(isChecked, change);
+        (isChecked ? mChecked : mUnchecked).setValue(change.getResult());
+    }
+
+    private void setLastChange(boolean isChecked, @Nullable ChecklistItemsChange change) {
+        if (isChecked) {
+            mCheckedChange = change;
+        } else {
+            mUncheckedChange = change;
+        }
+    }
+
+    private class Edit {
+        /*
+         *  One or more user actions, applied to copies of the current lists. The observers are
+         *  only notified once all actions have been applied (see publish()).
+         */
+
+        // The copies (null if not loaded yet), and how they are derived from the current lists.
+        final List<ChecklistItem> unchecked = copy(mUnchecked);
+        final List<ChecklistItem> checked = copy(mChecked);
+        final ChecklistItemsChange uncheckedChange = (unchecked != null) ?
+                new ChecklistItemsChange(mUnchecked.getValue(), unchecked) : null;
+        final ChecklistItemsChange checkedChange = (checked != null) ?
+                new ChecklistItemsChange(mChecked.getValue(), checked) : null;
+        boolean uncheckedModified = false;
+        boolean checkedModified = false;
+
+        void flip(@NonNull String normalizedName) {
+            int index;
+            if ((unchecked != null) && ((index = indexOf(unchecked, normalizedName)) >= 0)) {
+                ChecklistItem item = unchecked.remove(index);
+                ChecklistItem flipped = item.withIncidence(item.getIncidence() + 1);
+                uncheckedChange.removed(item, index);
+                uncheckedModified = true;
+                if (checked != null) {
+                    // Checked items are sorted by incidence (descending).
+                    int insertAt = 0;
+                    while ((insertAt < checked.size()) &&
+                           (checked.get(insertAt).getIncidence() >= flipped.getIncidence())) {
+                        insertAt++;
+                    }
+                    checked.add(insertAt, flipped);
+                    checkedChange.inserted(flipped, insertAt);
+                    checkedModified = true;
+                }
+            } else if ((checked != null) && ((index = indexOf(checked, normalizedName)) >= 0)) {
+                ChecklistItem item = checked.remove(index);
+                ChecklistItem flipped = item.withIncidence(item.getIncidence() + 1);
+                checkedChange.removed(item, index);
+                checkedModified = true;
+                if (unchecked != null) {
+                    // Unchecked items are placed at the end of the list.
+                    unchecked.add(flipped);
+                    uncheckedChange.inserted(flipped, unchecked.size() - 1);
+                    uncheckedModified = true;
+                }
+            }
+        }
+
+        void insert(@NonNull String name, boolean isChecked) {
+            String normalizedName = DbChecklistItem.normalizeName(name);
+            int uncheckedIndex = (unchecked != null) ? indexOf(unchecked, normalizedName) : -1;
+            int checkedIndex = (checked != null) ? indexOf(checked, normalizedName) : -1;
+            if ((uncheckedIndex < 0) && (checkedIndex < 0)) {
+                // New item with the lowest incidence, at the end of the list.
+                ChecklistItem item = new ChecklistItem(mNextTemporaryId--, name,
+                        normalizedName, minIncidence(unchecked, checked) - 1);
+                List<ChecklistItem> items = isChecked ? checked : unchecked;
+                if (items != null) {
+                    items.add(item);
+                    (isChecked ? checkedChange : uncheckedChange)
+                            .inserted(item, items.size() - 1);
+                    setModified(isChecked);
+                }
+            } else if (isChecked == (checkedIndex >= 0)) {
+                // Item exists with the same "isChecked". Unchecked items are moved to the end,
+                // checked items stay where they are (they are sorted by incidence).
+                if (!isChecked && (uncheckedIndex != unchecked.size() - 1)) {
+                    ChecklistItem item = unchecked.remove(uncheckedIndex);
+                    unchecked.add(item);
+                    uncheckedChange.moved(item, uncheckedIndex, unchecked.size() - 1);
+                    uncheckedModified = true;
+                }
+            } else {
+                flip(normalizedName);
+            }
+        }
+
+        void delete(@NonNull String normalizedName) {
+            int index;
+            if ((unchecked != null) && ((index = indexOf(unchecked, normalizedName)) >= 0)) {
+                ChecklistItem item = unchecked.remove(index);
+                uncheckedChange.removed(item, index);
+                uncheckedModified = true;
+            } else if ((checked != null) && ((index = indexOf(checked, normalizedName)) >= 0)) {
+                ChecklistItem item = checked.remove(index);
+                checkedChange.removed(item, index);
+                checkedModified = true;
+            }
+        }
+
+        void publish() {
+            if (uncheckedModified) {
+                publishChange(false, uncheckedChange);
+            }
+            if (checkedModified) {
+                publishChange(true, checkedChange);
+            }
+        }
+
+        private void setModified(boolean isChecked) {
+            if (isChecked) {
+                checkedModified = true;
+            } else {
+                uncheckedModified = true;
+            }
+        }
+    }
+
+    @Nullable
+    static ChecklistItemsChange contentChange(@NonNull List<ChecklistItem> base,
+                                              @NonNull List<ChecklistItem> result) {
+        // If "result" contains the same items in the same order as "base" (e.g. once the
+        // database has assigned the ids of inserted items, or changed their incidence), return
+        // the change of their contents. Otherwise null, the UI has to calculate a diff then.
+        if (base.size() != result.size()) {
+            return null;
+        }
+        ChecklistItemsChange change = new ChecklistItemsChange(base, result);
+        for (int i = 0; i < base.size(); i++) {
+            ChecklistItem oldItem = base.get(i);
+            ChecklistItem newItem = result.get(i);
+            if (!oldItem.getNormalizedName().equals(newItem.getNormalizedName())) {
+                return null;
+            } else if (!oldItem.getName().equals(newItem.getName())) {
+                change.changed(newItem, i, ChecklistItemsChange.PAYLOAD_NAME);
+            } else if (oldItem.getIncidence() != newItem.getIncidence()) {
+                change.changed(newItem, i, ChecklistItemsChange.PAYLOAD_INCIDENCE);
+            }
+        }
+        return change;
+    }
+
+    @Nullable
+    private static List<ChecklistItem> copy(@NonNull LiveData<List<ChecklistItem>> liveData) {
+        // Return a modifiable copy of the items, or null if they are not loaded yet.
+        List<ChecklistItem> items = liveData.getValue();
+        return (items != null) ? new ArrayList<>(items) : null;
+    }
+
+    private static int indexOf(@NonNull List<ChecklistItem> items,
+                               @NonNull String normalizedName) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getNormalizedName().equals(normalizedName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<ChecklistItem> toChecklistItems(@NonNull List<DbChecklistItem> dbItems) {
+        // Convert DbChecklistItems to ChecklistItems.
+        return dbItems.stream()
+                .map(dbChecklistItem -> new ChecklistItem(
+                        dbChecklistItem.getItemId(),
+                        dbChecklistItem.getName(),
+                        dbChecklistItem.getNormalizedName(),
+                        dbChecklistItem.getIncidence()))
+                .collect(Collectors.toList());
+    }
+
+    private static long minIncidence(@Nullable List<ChecklistItem> unchecked,
+                                     @Nullable List<ChecklistItem> checked) {
+        // Same as ChecklistRepository.getMinIncidence(): 0 if there are no items.
+        long min = Long.MAX_VALUE;
+        List<ChecklistItem> items = new ArrayList<>();
+        if (unchecked != null) {
+            items.addAll(unchecked);
+        }
+        if (checked != null) {
+            items.addAll(checked);
+        }
+        for (ChecklistItem item : items) {
+            min = Math.min(min, item.getIncidence());
+        }
+        return items.isEmpty() ? 0 : min;
+    }
+}
@@ -10,6 +10,7 @@ import android.os.Bundle;
 import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.constraintlayout.widget.ConstraintSet;
 import androidx.core.content.ContextCompat;
@@ -30,8 +31,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewOutlineProvider;
 import android.view.inputmethod.EditorInfo;
-import android.widget.ArrayAdapter;
-import android.widget.TextView;
 
 import com.bennsch.shoppinglist.databinding.FragmentChecklistPagerBinding;
 import com.google.android.material.tabs.TabLayoutMediator;
@@ -39,7 +38,6 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.util.List;
 
 
 public class ChecklistPagerFragment extends Fragment {
@@ -49,15 +47,16 @@ public class ChecklistPagerFragment extends Fragment {
      *  ChecklistFragments (checked, unchecked items).
      */
 
-    public static final String ARG_LIST_TITLE = "list_title";
+    public static final String ARG_LIST_ID = "list_id";
 
     private FragmentChecklistPagerBinding mBinding;
     private ViewPagerAdapter mViewPagerAdapter;
     private MainViewModel mViewModel;
-    private String mListTitle;
+    private int mListId;
     private OnBackPressedCallback mOnBackPressedCallback;
     private IMEHelper mIMEHelper;
     private OnboardingPopup mOnboardingPopup;
+    private AlertDialog mDidYouMeanDialog;
 
 
     public ChecklistPagerFragment() {
@@ -68,7 +67,7 @@ public class ChecklistPagerFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         assert getArguments() != null;
-        mListTitle = getArguments().getString(ARG_LIST_TITLE);
+        mListId = getArguments().getInt(ARG_LIST_ID);
         // Retrieve the MainActivity's ViewModel instance, to communicate and share data between the
         // fragments easily.
         mViewModel = new ViewModelProvider(requireActivity()).get(MainViewModel.class);
@@ -85,7 +84,7 @@ public class ChecklistPagerFragment extends Fragment {
 
         mBinding.fab.setOnClickListener(view -> this.onFabClicked());
 
-        mViewModel.isChecklistEmpty(mListTitle)
+        mViewModel.isChecklistEmpty(mListId)
                 .observe(getViewLifecycleOwner(),
                         this::onChecklistEmptyChanged);
 
@@ -151,9 +150,9 @@ public class ChecklistPagerFragment extends Fragment {
         super.onResume();
     }
 
-    public static Bundle makeArgs(String listTitle) {
+    public static Bundle makeArgs(int listId) {
         Bundle bundle = new Bundle();
-        bundle.putString(ARG_LIST_TITLE, listTitle);
+        bundle.putInt(ARG_LIST_ID, listId);
         return bundle;
     }
 
@@ -221,44 +220,27 @@ public class ChecklistPagerFragment extends Fragment {
                                 TypedValue.COMPLEX_UNIT_PX, fontSizePx));
 
         // Provide adapter to enable autocomplete suggestions.
-        ArrayAdapter<String> autoCompleteAdapter = new ArrayAdapter<String>(
-                requireContext(),
-                R.layout.item_name_box_suggestion) {
-            // Override the ArrayAdapter to update the text size of the auto-complete suggestions.
-            @NonNull
-            @Override
-            public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-                View view = super.getView(position, convertView, parent);
-                Float itemFontSizePx = mViewModel.getItemFontSize().getValue();
-                if (itemFontSizePx != null) {
-                    // Make the text size slightly smaller compared to the list items.
-                    ((TextView)view).setTextSize(TypedValue.COMPLEX_UNIT_PX, (itemFontSizePx * 0.85f));
-                }
-                return view;
-            }
-        };
+        SuggestionAdapter autoCompleteAdapter = new SuggestionAdapter(
+                requireContext(), mViewModel::searchCatalog);
+        // Update the text size of the auto-complete suggestions.
+        mViewModel.getItemFontSize()
+                .observe(getViewLifecycleOwner(), autoCompleteAdapter::setFontSize);
 
-        // Provide different autoCompleteItems, depending on which page is currently displayed.
+        // Provide different suggestions, depending on which page is currently displayed.
         MutableLiveData<Boolean> isCurrentPageChecked = new MutableLiveData<>();
-        LiveData<List<String>> autoCompleteItems = Transformations.switchMap(
+        LiveData<SuggestionIndex> suggestionIndex = Transformations.switchMap(
                 isCurrentPageChecked,
                 currPageChecked -> {
                     if (currPageChecked == null) {
                         return null;
                     } else {
-                        return mViewModel.getAutoCompleteDataset(mListTitle, currPageChecked);
+                        return mViewModel.getSuggestionIndex(mListId, currPageChecked);
                     }
                 }
         );
 
-        // Update the autoCompleteAdapter whenever autoCompleteItems changes.
-        autoCompleteItems.observe(
-                getViewLifecycleOwner(),
-                strings -> {
-                    autoCompleteAdapter.clear();
-                    autoCompleteAdapter.addAll(strings);
-                }
-        );
+        // Query the suggestions again whenever the index has been updated.
+        suggestionIndex.observe(getViewLifecycleOwner(), autoCompleteAdapter::setIndex);
 
         // Update "isCurrentPageChecked" whenever the user changes the page.
         mBinding.viewpager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
@@ -283,6 +265,15 @@ public class ChecklistPagerFragment extends Fragment {
         mBinding.itemNameBox.setThreshold(MainViewModel.AUTOCOMPLETE_THRESHOLD);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mDidYouMeanDialog != null) {
+            // Avoid leaking the dialog window if e.g. the screen is rotated.
+            mDidYouMeanDialog.dismiss();
+        }
+    }
+
     private void toggleItemNameBox(boolean show) {
         if (show) {
             mOnBackPressedCallback.setEnabled(true);
@@ -355,10 +346,15 @@ public class ChecklistPagerFragment extends Fragment {
     }
 
     private void insertNewItem(@NonNull String name) {
+        insertNewItem(name, true);
+    }
+
+    private void insertNewItem(@NonNull String name, boolean checkSimilar) {
         ListenableFuture<Void> result = mViewModel.insertItem(
-                mListTitle,
+                mListId,
                 isCurrentAdapterPageChecked(),
-                name);
+                name,
+                checkSimilar);
 
         Futures.addCallback(
                 result,
@@ -371,12 +367,31 @@ public class ChecklistPagerFragment extends Fragment {
 
                     @Override
                     public void onFailure(@NonNull Throwable t) {
-                        vibrate();
+                        if (t instanceof MainViewModel.SimilarNameException) {
+                            showDidYouMeanDialog(
+                                    name, ((MainViewModel.SimilarNameException) t).getSimilarName());
+                        } else {
+                            vibrate();
+                        }
                     }
                 },
                 ContextCompat.getMainExecutor(requireContext()));
     }
 
+    private void showDidYouMeanDialog(@NonNull String name, @NonNull String similarName) {
+        // Let the user decide whether the existing item was meant, or a new item should be added
+        // anyway.
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireActivity());
+        builder.setTitle(getString(R.string.dialog_did_you_mean_title, similarName))
+                .setPositiveButton(R.string.dialog_did_you_mean_yes,
+                        (dialog, which) -> insertNewItem(similarName, false))
+                .setNegativeButton(getString(R.string.dialog_did_you_mean_no, name.strip()),
+                        (dialog, which) -> insertNewItem(name, false))
+                .setNeutralButton(R.string.dialog_cancel, null);
+        mDidYouMeanDialog = builder.create();
+        mDidYouMeanDialog.show();
+    }
+
     boolean isCurrentAdapterPageChecked() {
         return mViewPagerAdapter.isPageChecked(
                 mBinding.viewpager.getCurrentItem());
@@ -421,7 +436,7 @@ public class ChecklistPagerFragment extends Fragment {
         public Fragment createFragment(int position) {
             assert (position == POS_CHECKED) || (position == POS_UNCHECKED);
             ChecklistFragment fragment = ChecklistFragment.newInstance(
-                    mListTitle,
+                    mListId,
                     position == POS_CHECKED);
             mCachedFragments[position] = fragment;
             return fragment;
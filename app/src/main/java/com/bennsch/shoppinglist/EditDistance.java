@@ -0,0 +1,93 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+
+
+public class EditDistance {
+    /*
+     *  Bounded Levenshtein distance (insertions, deletions and substitutions of single
+     *  characters), used to find item names that are similar to the user's input (see
+     *  SuggestionIndex).
+     *
+     *  Only distances up to "max" are of interest, so the calculation stops as soon as the
+     *  distance is known to exceed it. Any distance larger than "max" is returned as "max + 1".
+     */
+
+    public static int maxDistance(int length) {
+        // The number of typos that are tolerated in an input of the given length.
+        if (length < 3) {
+            return 0;
+        } else if (length < 6) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    public static int distance(@NonNull String a, @NonNull String b, int max) {
+        // Return the edit distance between "a" and "b".
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        return calculate(a, b, max, false);
+    }
+
+    public static int prefixDistance(@NonNull String prefix, @NonNull String b, int max) {
+        // Return the smallest edit distance between "prefix" and any prefix of "b", i.e. how
+        // many typos there are in "prefix", if it's the beginning of "b".
+        if (prefix.length() - b.length() > max) {
+            return max + 1;
+        }
+        return calculate(prefix, b, max, true);
+    }
+
+    private static int calculate(@NonNull String a, @NonNull String b, int max, boolean isPrefix) {
+        // Dynamic programming over two rows. Row i holds the distances between the first i
+        // characters of "a" and the first j characters of "b". Only the cells within "max" of
+        // the diagonal can be <= max, the others are treated as max + 1.
+        int infinity = max + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, infinity);
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[0] = Math.min(i, infinity);
+            if (from > 1) {
+                current[from - 1] = infinity;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                int value = Math.min(
+                        previous[j - 1] + cost,
+                        Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, infinity);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length()) {
+                current[to + 1] = infinity;
+            }
+            if (rowMin > max) {
+                return infinity;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        if (isPrefix) {
+            // "a" is compared to any prefix of "b" (within the band of the last row, the other
+            // cells may still hold values of previous rows).
+            int result = infinity;
+            int to = Math.min(b.length(), a.length() + max);
+            for (int j = Math.max(0, a.length() - max); j <= to; j++) {
+                result = Math.min(result, previous[j]);
+            }
+            return result;
+        } else {
+            return previous[b.length()];
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class KeyedDiff {
+    /*
+     *  Replacement for DiffUtil.calculateDiff() for lists whose items have a unique key.
+     *
+     *  DiffUtil (Myers' algorithm) has to search for the shortest edit script, which gets slow
+     *  if many items change their place at once (e.g. if a flip re-sorts the checked items).
+     *  With unique keys, the items of both lists can be matched directly, and only the items
+     *  outside of the longest increasing subsequence (of their new indices) have to be moved.
+     *  This takes O(n log n), no matter how the items have been shuffled.
+     *
+     *  The result is dispatched to a ListUpdateCallback, just like DiffUtil.DiffResult.
+     *  If a key occurs more than once in a list, only its first occurrence is matched, the
+     *  others are removed/inserted.
+     */
+
+    public interface Callback<T> {
+        // Unique key of the item (e.g. its id). Must be consistent with equals()/hashCode().
+        @NonNull
+        Object getKey(@NonNull T item);
+
+        // Whether the visual representation of two items with the same key is the same.
+        boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem);
+
+        // Optional payload, if areContentsTheSame() returned false.
+        @Nullable
+        Object getChangePayload(@NonNull T oldItem, @NonNull T newItem);
+    }
+
+    public static class Result {
+        /*
+         *  The update operations, in the order they have to be applied to the old list.
+         */
+
+        private static final int REMOVE = 0;
+        private static final int INSERT = 1;
+        private static final int MOVE = 2;
+        private static final int CHANGE = 3;
+
+        private final List<int[]> mOperations = new ArrayList<>();
+        private final List<Object> mPayloads = new ArrayList<>();
+
+        private void add(int type, int position, int argument, @Nullable Object payload) {
+            // "argument" is the target position for MOVE, otherwise unused.
+            mOperations.add(new int[]{type, position, argument});
+            mPayloads.add(payload);
+        }
+
+        public int getOperationCount() {
+            return mOperations.size();
+        }
+
+        public void dispatchUpdatesTo(@NonNull ListUpdateCallback updateCallback) {
+            // Same as DiffUtil.DiffResult.dispatchUpdatesTo(): adjacent operations are merged
+            // into ranges.
+            BatchingListUpdateCallback callback = new BatchingListUpdateCallback(updateCallback);
+            for (int i = 0; i < mOperations.size(); i++) {
+                int[] operation = mOperations.get(i);
+                switch (operation[0]) {
+                    case REMOVE:
+                        callback.onRemoved(operation[1], 1);
+                        break;
+                    case INSERT:
+                        callback.onInserted(operation[1], 1);
+                        break;
+                    case MOVE:
+                        callback.onMoved(operation[1], operation[2]);
+                        break;
+                    case CHANGE:
+                        callback.onChanged(operation[1], 1, mPayloads.get(i));
+                        break;
+                    default:
+                        assert false: "Invalid operation " + operation[0];
+                }
+            }
+            callback.dispatchLastEvent();
+        }
+    }
+
+    @NonNull
+    public static <T> Result calculateDiff(@NonNull List<T> oldList,
+                                           @NonNull List<T> newList,
+                                           @NonNull Callback<T> callback) {
+        Result result = new Result();
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+
+        // Match the items by key.
+        Map<Object, Integer> oldIndices = new HashMap<>(oldSize * 2);
+        for (int i = oldSize - 1; i >= 0; i--) {
+            // Iterate backwards, so the first occurrence of a key wins.
+            oldIndices.put(callback.getKey(oldList.get(i)), i);
+        }
+        int[] oldToNew = new int[oldSize];
+        int[] newToOld = new int[newSize];
+        Arrays.fill(oldToNew, -1);
+        for (int j = 0; j < newSize; j++) {
+            Integer i = oldIndices.get(callback.getKey(newList.get(j)));
+            if ((i != null) && (oldToNew[i] < 0)) {
+                oldToNew[i] = j;
+                newToOld[j] = i;
+            } else {
+                newToOld[j] = -1;
+            }
+        }
+
+        // Remove the old items that don't exist anymore. Back to front, so the positions of the
+        // remaining removals don't change.
+        for (int i = oldSize - 1; i >= 0; i--) {
+            if (oldToNew[i] < 0) {
+                result.add(Result.REMOVE, i, 0, null);
+            }
+        }
+
+        // The remaining (i.e. matched) items in their old order. The ones that are part of the
+        // longest increasing subsequence of new indices stay where they are ("stable"), all
+        // others are moved.
+        int matchedCount = 0;
+        int[] matchedIndex = new int[oldSize]; // Old index -> index among the matched items
+        long[] matchedNewIndices = new long[oldSize];
+        for (int i = 0; i < oldSize; i++) {
+            if (oldToNew[i] >= 0) {
+                matchedIndex[i] = matchedCount;
+                matchedNewIndices[matchedCount++] = oldToNew[i];
+            }
+        }
+        boolean[] stable = LongestIncreasingSubsequence.find(matchedNewIndices, matchedCount);
+        // New index of the next stable item after each matched item (-1 if there is none).
+        int[] nextStableNewIndex = new int[matchedCount];
+        int next = -1;
+        for (int k = matchedCount - 1; k >= 0; k--) {
+            nextStableNewIndex[k] = next;
+            if (stable[k]) {
+                next = (int) matchedNewIndices[k];
+            }
+        }
+
+        // Build the new list front to back. After step j, the items new[0..j) ("placed") are in
+        // their final order. Stable items and items that have been moved/inserted after them
+        // form contiguous groups. The matched items that haven't been reached yet ("unplaced")
+        // are still in their old order, counted in a Fenwick tree to look up their positions.
+        FenwickTree unplaced = new FenwickTree(matchedCount);
+        for (int k = 0; k < matchedCount; k++) {
+            unplaced.add(k, 1);
+        }
+        int lastStable = -1; // Index among the matched items of the last stable item reached
+        for (int j = 0; j < newSize; j++) {
+            // Items are moved/inserted right after new[j-1]. Only unplaced items that precede
+            // the last stable item are in front of that position.
+            int oldIndex = newToOld[j];
+            if (oldIndex < 0) {
+                result.add(Result.INSERT, j + unplaced.prefixSum(lastStable), 0, null);
+                continue;
+            }
+            int k = matchedIndex[oldIndex];
+            unplaced.add(k, -1);
+            if (stable[k]) {
+                lastStable = k;
+                continue;
+            }
+            // The placed items in front of the item are the ones before the next stable item
+            // (if that has been reached already), or all of them.
+            int nextStable = nextStableNewIndex[k];
+            int placedBefore = ((nextStable >= 0) && (nextStable < j)) ? nextStable : j;
+            int from = placedBefore + unplaced.prefixSum(k);
+            int to = j + unplaced.prefixSum(lastStable);
+            if (from != to) {
+                result.add(Result.MOVE, from, to, null);
+            }
+        }
+
+        // Finally, all items are at their new positions.
+        for (int j = 0; j < newSize; j++) {
+            int oldIndex = newToOld[j];
+            if (oldIndex >= 0) {
+                T oldItem = oldList.get(oldIndex);
+                T newItem = newList.get(j);
+                if (!callback.areContentsTheSame(oldItem, newItem)) {
+                    result.add(Result.CHANGE, j, 0, callback.getChangePayload(oldItem, newItem));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class FenwickTree {
+        /*
+         *  Prefix sums with O(log n) updates.
+         */
+
+        private final int[] mTree;
+
+        FenwickTree(int size) {
+            mTree = new int[size + 1];
+        }
+
+        void add(int index, int delta) {
+            for (int i = index + 1; i < mTree.length; i += i & -i) {
+                mTree[i] += delta;
+            }
+        }
+
+        int prefixSum(int end) {
+            // Sum of the values [0, end). 0 if "end" <= 0.
+            int sum = 0;
+            for (int i = end; i > 0; i -= i & -i) {
+                sum += mTree[i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+
+
+public class LongestIncreasingSubsequence {
+    /*
+     *  Finds the longest strictly increasing subsequence of a sequence of values, i.e. the
+     *  largest set of elements that are already in order. Used to change as little as possible
+     *  when a list is reordered (see PositionHelper and KeyedDiff).
+     *
+     *  O(n log n) "patience sorting": tails[k] is the index of the smallest value that ends an
+     *  increasing subsequence of length k + 1.
+     */
+
+    @NonNull
+    public static boolean[] find(@NonNull long[] values, int size) {
+        // Return which of the first "size" values form the longest strictly increasing
+        // subsequence. If there are several, the one ending with the smallest value is chosen.
+        int[] tails = new int[size];
+        int[] predecessors = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            predecessors[i] = (lo > 0) ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+        boolean[] result = new boolean[size];
+        int k = (length > 0) ? tails[length - 1] : -1;
+        while (k >= 0) {
+            result[k] = true;
+            k = predecessors[k];
+        }
+        return result;
+    }
+}
@@ -5,6 +5,7 @@ import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBarDrawerToggle;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.AppCompatImageButton;
 import androidx.core.content.ContextCompat;
@@ -30,8 +31,12 @@ import com.bennsch.shoppinglist.dialog.AboutDialog;
 import com.bennsch.shoppinglist.dialog.EditListDialog;
 import com.bennsch.shoppinglist.dialog.NewListDialog;
 import com.bennsch.shoppinglist.dialog.WelcomeDialog;
+import com.google.android.material.snackbar.Snackbar;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 import java.util.List;
+import java.util.Objects;
 
 
 
@@ -47,9 +52,14 @@ public class MainActivity extends AppCompatActivity
     private IMEHelper mIMEHelper;
     private MainViewModel mViewModel;
     // Null if no Checklist selected.
-    private LiveData<String> mActiveChecklist;
+    private LiveData<Checklist> mActiveChecklist;
     // Null if no Checklist selected.
     private MainViewModel.DeleteItemsMode mDeleteItemsMode;
+    // Id of the Checklist currently displayed by the ChecklistPagerFragment (null if none).
+    private Integer mShownChecklistId;
+    // Item names shared with the app (see ACTION_SEND), which are added to the active Checklist
+    // as soon as it's known (null if none).
+    private List<String> mSharedItemNames;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -81,8 +91,8 @@ public class MainActivity extends AppCompatActivity
                 this::onActiveChecklistChanged);
         mDeleteItemsMode.observe(this,
                 this::onDeleteItemsModeChanged);
-        mViewModel.getAllChecklistTitles(PreferencesRepository.DBG_SHOW_TRASH).observe(this,
-                this::onChecklistTitlesChanged);
+        mViewModel.getAllChecklists(PreferencesRepository.DBG_SHOW_TRASH).observe(this,
+                this::onChecklistsChanged);
 
         // Perform certain actions only the first time the app has been launched.
         PreferencesRepository preferencesRepo = PreferencesRepository
@@ -102,6 +112,11 @@ public class MainActivity extends AppCompatActivity
             }
         });
 
+        // Text shared with the app is only handled once (not again after e.g. a rotation).
+        if (savedInstanceState == null) {
+            handleSharedText(getIntent());
+        }
+
         // Only for debugging:
         if (BuildConfig.DEBUG){
             mBinding.versionLabel.setText(getString(
@@ -162,11 +177,96 @@ public class MainActivity extends AppCompatActivity
             showEditListDialog();
         } else if (item.getItemId() == R.id.clmenu_delete_items) {
             mDeleteItemsMode.toggle();
+        } else {
+            onChecklistMenuItemSelected(item.getItemId());
         }
         // Open navigation drawer if toolbar icon is clicked.
         return this.mActionBarDrawerToggle.onOptionsItemSelected(item);
     }
 
+    private void shareChecklist(int listId) {
+        // Send the Checklist as plain text to another app (e.g. a messenger).
+        Futures.addCallback(
+                mViewModel.exportChecklistAsText(listId),
+                new FutureCallback<String>() {
+                    @Override
+                    public void onSuccess(String text) {
+                        Intent intent = new Intent(Intent.ACTION_SEND);
+                        intent.setType("text/plain");
+                        intent.putExtra(Intent.EXTRA_TEXT, text);
+                        startActivity(Intent.createChooser(intent, null));
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Throwable t) {}
+                },
+                ContextCompat.getMainExecutor(this));
+    }
+
+    private void restoreChecklist(int listId) {
+        Futures.addCallback(
+                mViewModel.restoreChecklist(listId),
+                new FutureCallback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean restored) {
+                        if (!restored) {
+                            Toast.makeText(getApplicationContext(),
+                                    R.string.invalid_name_already_in_use,
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Throwable t) {}
+                },
+                ContextCompat.getMainExecutor(this));
+    }
+
+    private void onChecklistMenuItemSelected(int menuItemId) {
+        // Operations on all items of the active Checklist at once.
+        Checklist activeChecklist = mActiveChecklist.getValue();
+        if (activeChecklist == null) {
+            return;
+        }
+        int listId = activeChecklist.getId();
+        if (menuItemId == R.id.clmenu_uncheck_all) {
+            mViewModel.uncheckAllItems(listId);
+        } else if (menuItemId == R.id.clmenu_check_all) {
+            mViewModel.checkAllItems(listId);
+        } else if (menuItemId == R.id.clmenu_delete_checked) {
+            // Deleted items cannot be restored, so ask first.
+            new AlertDialog.Builder(this)
+                    .setMessage(getString(
+                            R.string.dialog_delete_checked_confirm, activeChecklist.getTitle()))
+                    .setPositiveButton(R.string.dialog_edit_list_delete,
+                            (dialog, which) -> mViewModel.deleteCheckedItems(listId))
+                    .setNegativeButton(R.string.dialog_cancel, null)
+                    .show();
+        } else if (menuItemId == R.id.clmenu_save_template) {
+            mViewModel.saveTemplate(listId);
+            Toast.makeText(getApplicationContext(), R.string.template_saved, Toast.LENGTH_SHORT)
+                    .show();
+        } else if (menuItemId == R.id.clmenu_share_list) {
+            shareChecklist(listId);
+        } else if (menuItemId == R.id.clmenu_reset_to_template) {
+            Futures.addCallback(
+                    mViewModel.resetToTemplate(listId),
+                    new FutureCallback<Boolean>() {
+                        @Override
+                        public void onSuccess(Boolean hasTemplate) {
+                            if (!hasTemplate) {
+                                Toast.makeText(getApplicationContext(), R.string.template_missing,
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(@NonNull Throwable t) {}
+                    },
+                    ContextCompat.getMainExecutor(this));
+        }
+    }
+
     public void onBackButtonPressed() {
         // Close the NavDrawer, deactivate DeleteItemsMode, or quit
         // the application if the back button is pressed
@@ -184,10 +284,9 @@ public class MainActivity extends AppCompatActivity
         // Confirm the clicked item is not already selected.
         if (mBinding.navView.getCheckedItem() != item) {
             if (item.getGroupId() == R.id.group_checklists) {
-                // A Checklist has been selected, activate it.
-                CharSequence listTitle = item.getTitle();
-                assert listTitle != null: "item.getTitle() returned null";
-                mViewModel.setActiveChecklist(item.getTitle().toString());
+                // A Checklist has been selected, activate it. The menu item's id is the
+                // Checklist's id (see onChecklistsChanged()).
+                mViewModel.setActiveChecklist(item.getItemId());
                 mBinding.drawerLayout.close();
             } else if (item.getItemId() == R.id.nav_new_list) {
                 showNewListDialog();
@@ -209,7 +308,48 @@ public class MainActivity extends AppCompatActivity
         invalidateMenu();
     }
 
-    private void onActiveChecklistChanged(@Nullable String newActiveChecklist) {
+    @Override
+    protected void onNewIntent(@NonNull Intent intent) {
+        super.onNewIntent(intent);
+        handleSharedText(intent);
+        if (mActiveChecklist.getValue() != null) {
+            insertSharedItems(mActiveChecklist.getValue());
+        }
+    }
+
+    private void handleSharedText(@Nullable Intent intent) {
+        // Each line of the shared text becomes an item in the active Checklist (see
+        // insertSharedItems()).
+        if ((intent != null) && Intent.ACTION_SEND.equals(intent.getAction()) &&
+            "text/plain".equals(intent.getType())) {
+            CharSequence text = intent.getCharSequenceExtra(Intent.EXTRA_TEXT);
+            if (text != null) {
+                mSharedItemNames = SharedTextParser.parse(text);
+            }
+        }
+    }
+
+    private void insertSharedItems(@Nullable Checklist checklist) {
+        // Add the shared items (if any) to "checklist" in a single write.
+        if (mSharedItemNames == null) {
+            return;
+        }
+        List<String> names = mSharedItemNames;
+        mSharedItemNames = null;
+        if (checklist == null) {
+            Toast.makeText(getApplicationContext(), R.string.shared_items_no_list,
+                    Toast.LENGTH_SHORT).show();
+        } else if (!names.isEmpty()) {
+            mViewModel.insertItems(checklist.getId(), false, names);
+            Toast.makeText(getApplicationContext(),
+                    getResources().getQuantityString(R.plurals.shared_items_added,
+                            names.size(), names.size(), checklist.getTitle()),
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void onActiveChecklistChanged(@Nullable Checklist newActiveChecklist) {
+        insertSharedItems(newActiveChecklist);
         if (newActiveChecklist == null) {
             // No item was selected yet, or no lists present at all.
             showChecklist(null);
@@ -218,9 +358,8 @@ public class MainActivity extends AppCompatActivity
             // Iterate over all menu items:
             for (int i = 0; i < menu.size(); i++) {
                 MenuItem item = menu.getItem(i);
-                CharSequence title = item.getTitle();
-                assert title != null: "item.getTitle() returned null";
-                boolean isActive = title.equals(newActiveChecklist);
+                boolean isActive = (item.getGroupId() == R.id.group_checklists) &&
+                        (item.getItemId() == newActiveChecklist.getId());
                 View actionView = item.getActionView();
                 // Highlight the menu item if it's the currently
                 // selected Checklist.
@@ -238,13 +377,15 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
-    private void onChecklistTitlesChanged(List<String> newChecklistTitles) {
-        // Remove entire group and populate again with current Checklist titles.
+    private void onChecklistsChanged(List<Checklist> newChecklists) {
+        // Remove entire group and populate again with current Checklists.
         mBinding.navView.getMenu().removeGroup(R.id.group_checklists);
-        newChecklistTitles.forEach(title -> {
-            // Create new MenuItem.
+        newChecklists.forEach(checklist -> {
+            // Create new MenuItem. Use the Checklist's id as the MenuItem's id, so that we can
+            // identify the Checklist when the MenuItem is selected.
             Menu menu = mBinding.navView.getMenu();
-            MenuItem menuItem = menu.add(R.id.group_checklists, Menu.NONE, Menu.NONE, title);
+            MenuItem menuItem = menu.add(
+                    R.id.group_checklists, checklist.getId(), Menu.NONE, checklist.getTitle());
             menuItem.setCheckable(true);
             // Add ActionView (icon next to the item)
             AppCompatImageButton actionView = new AppCompatImageButton(this);
@@ -259,7 +400,7 @@ public class MainActivity extends AppCompatActivity
             if (mActiveChecklist.getValue() != null) { // null if no Checklist selected.
                 // Highlight the menu item if it's the currently
                 // selected Checklist.
-                if (mActiveChecklist.getValue().equals(title)) {
+                if (mActiveChecklist.getValue().getId() == checklist.getId()) {
                     menuItem.setChecked(true);
                 }else{
                     View av = menuItem.getActionView();
@@ -273,11 +414,11 @@ public class MainActivity extends AppCompatActivity
         });
     }
 
-    private void showChecklist(@Nullable String listTitle) {
-        // Show the Checklist named "listTitle". If "listTitle" is null,
+    private void showChecklist(@Nullable Checklist checklist) {
+        // Show the Checklist "checklist". If "checklist" is null,
         // show the NoListsFragment.
         // TODO: add animation for fragment transaction?
-        if (listTitle == null) {
+        if (checklist == null) {
             getSupportFragmentManager()
                     .setFragmentResultListener(
                     NoListsFragment.REQ_KEY_NEW_LIST_BUTTON_CLICKED,
@@ -292,15 +433,20 @@ public class MainActivity extends AppCompatActivity
                     .commit();
             mBinding.toolbar.setTitle("");
             invalidateMenu();
+            mShownChecklistId = null;
         } else {
-            getSupportFragmentManager().beginTransaction()
-                    //.setCustomAnimations(R.anim.slide, R.anim.slide)
-                    .replace(
-                            mBinding.fragmentContainerView.getId(),
-                            ChecklistPagerFragment.class,
-                            ChecklistPagerFragment.makeArgs(listTitle))
-                    .commit();
-            mBinding.toolbar.setTitle(listTitle);
+            // If the Checklist has only been renamed, we don't need to replace the fragment.
+            if (!Objects.equals(mShownChecklistId, checklist.getId())) {
+                getSupportFragmentManager().beginTransaction()
+                        //.setCustomAnimations(R.anim.slide, R.anim.slide)
+                        .replace(
+                                mBinding.fragmentContainerView.getId(),
+                                ChecklistPagerFragment.class,
+                                ChecklistPagerFragment.makeArgs(checklist.getId()))
+                        .commit();
+                mShownChecklistId = checklist.getId();
+            }
+            mBinding.toolbar.setTitle(checklist.getTitle());
         }
     }
 
@@ -385,7 +531,9 @@ public class MainActivity extends AppCompatActivity
     }
 
     private void showEditListDialog() {
-        EditListDialog.newInstance(mActiveChecklist.getValue())
+        Checklist activeChecklist = mActiveChecklist.getValue();
+        assert activeChecklist != null: "No Checklist active";
+        EditListDialog.newInstance(activeChecklist.getId(), activeChecklist.getTitle())
                 .show(getSupportFragmentManager(), "EditListDialog");
     }
 
@@ -426,9 +574,9 @@ public class MainActivity extends AppCompatActivity
     }
 
     @Override
-    public void editListDialog_onSafeClicked(String oldTitle, String newTitle){
+    public void editListDialog_onSafeClicked(int listId, String newTitle){
         try {
-            mViewModel.renameChecklist(oldTitle, newTitle);
+            mViewModel.renameChecklist(listId, newTitle);
         } catch (MainViewModel.InvalidNameException e) {
             Toast.makeText(
                     getApplicationContext(), getMsgFromReason(e.getReason()), Toast.LENGTH_SHORT)
@@ -448,9 +596,12 @@ public class MainActivity extends AppCompatActivity
     }
 
     @Override
-    public void editListDialog_onDeleteClicked(String listTitle) {
+    public void editListDialog_onDeleteClicked(int listId) {
         try {
-            mViewModel.moveChecklistToTrash(listTitle);
+            mViewModel.moveChecklistToTrash(listId);
+            Snackbar.make(mBinding.getRoot(), R.string.list_trashed, Snackbar.LENGTH_LONG)
+                    .setAction(R.string.list_trashed_undo, v -> restoreChecklist(listId))
+                    .show();
         } catch (MainViewModel.InvalidNameException e) {
             Toast.makeText(
                     getApplicationContext(), getMsgFromReason(e.getReason()), Toast.LENGTH_SHORT)
@@ -4,6 +4,7 @@ import android.app.Application;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
@@ -12,19 +13,33 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.Transformations;
 
+import com.bennsch.shoppinglist.datamodel.ChecklistExporter;
 import com.bennsch.shoppinglist.datamodel.ChecklistRepository;
+import com.bennsch.shoppinglist.datamodel.ChecklistSnapshot;
+import com.bennsch.shoppinglist.datamodel.DbChecklist;
 import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
 import com.bennsch.shoppinglist.datamodel.PreferencesRepository;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import kotlin.jvm.functions.Function1;
@@ -59,7 +74,8 @@ public class MainViewModel extends AndroidViewModel {
             NAME_ALREADY_IN_USE,
             NAME_EXCEEDS_MAX_LENGTH,
             NAME_IS_EMPTY,
-            NAME_DOES_NOT_EXIST
+            NAME_DOES_NOT_EXIST,
+            NAME_SIMILAR_TO_EXISTING
         }
 
         private final Reason reason;
@@ -74,6 +90,24 @@ public class MainViewModel extends AndroidViewModel {
         }
     }
 
+    public static class SimilarNameException extends InvalidNameException {
+        /*
+         *  The name of a new item is similar to the name of an existing item (see insertItem()).
+         */
+
+        private final String similarName;
+
+        public SimilarNameException(@NonNull String similarName) {
+            super(Reason.NAME_SIMILAR_TO_EXISTING);
+            this.similarName = similarName;
+        }
+
+        @NonNull
+        public String getSimilarName() {
+            return similarName;
+        }
+    }
+
     public static class Onboarding {
     /*
      *  This class encapsulates all the logic related to the onboarding process.
@@ -178,8 +212,8 @@ public class MainViewModel extends AndroidViewModel {
         private final MediatorLiveData<Integer> mValue;
 
         public DeleteItemsMode(int initValue,
-                               @NonNull LiveData<String> activeChecklist,
-                               @NonNull Function1<String, LiveData<Boolean>> isChecklistEmpty) {
+                               @NonNull LiveData<Checklist> activeChecklist,
+                               @NonNull Function1<Checklist, LiveData<Boolean>> isChecklistEmpty) {
             mValue = new MediatorLiveData<>(initValue);
             // Disable DeleteItemsMode if the active Checklist is or becomes empty. Set it to
             // DEACTIVATED once items have been added again (list not empty anymore).
@@ -219,21 +253,39 @@ public class MainViewModel extends AndroidViewModel {
 
     public static final int AUTOCOMPLETE_THRESHOLD = 0;
     public static final int LIST_TITLE_MAX_LENGTH = 50;
-
-    private static final String TRASH_LABEL = "__TRASH__";
+    // Load more checked items once the user has scrolled this close to the end of the loaded
+    // items (see ChecklistSnapshot).
+    public static final int CHECKED_PREFETCH_DISTANCE = 50;
+
+    // Trashed Checklists can be restored for this long, afterwards they are deleted (see
+    // purgeTrash()).
+    private static final long TRASH_RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long TRASH_PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(12);
+    private static final long TRASH_PURGE_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+    // Maximum number of rows deleted per transaction, so that the purge doesn't delay the user's
+    // writes for long.
+    private static final int TRASH_PURGE_BATCH_SIZE = 200;
 
     // Room-Database queries must be executed on a separate thread.
-    // NOTE: Each time an executor is called, it should only perform a single Room-database
-    // transaction, to avoid concurrent LiveData updates!
-    private static final ExecutorService mExecutor =
-            Executors.newSingleThreadExecutor();
-    // Executor that can throw an exception.
-    private static final ListeningExecutorService mListeningExecutor =
-            MoreExecutors.listeningDecorator(mExecutor);
+    // NOTE: All writes go through mWritePipeline, which executes them in batches (one Room-database
+    // transaction per batch), to avoid concurrent LiveData updates!
+    private static final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    // Updates of the SuggestionIndexes (kept off mExecutor, so that they don't delay any writes).
+    private static final Executor mSuggestionExecutor = Executors.newSingleThreadExecutor();
 
     private final ChecklistRepository mChecklistRepo;
+    private final WritePipeline mWritePipeline;
+    private final Executor mMainExecutor;
+    // In-memory models of the Checklists' items, which are displayed by the UI (key: listId).
+    private final Map<Integer, ChecklistItemsModel> mItemsModels;
+    // Autocomplete suggestions for the Checklists' items (key: listId). Only kept while they are
+    // observed (see getSuggestionIndex()).
+    private final Map<Integer, SuggestionIndex> mSuggestionIndexes;
     private final PreferencesRepository mPreferencesRepo;
-    private final LiveData<List<String>> mChecklistTitles;
+    private final LiveData<List<Checklist>> mChecklists;
+    private final LiveData<Checklist> mActiveChecklist;
+    private final ScheduledFuture<?> mTrashPurge;
 
     // We can store the below data in the MainViewModel itself (instead of repositories), because
     // we don't need to keep it when the app finishes:
@@ -246,21 +298,43 @@ public class MainViewModel extends AndroidViewModel {
         super(application);
         mChecklistRepo = ChecklistRepository.getInstance(application.getApplicationContext());
         mPreferencesRepo = PreferencesRepository.getInstance(application.getApplicationContext());
-        mChecklistTitles = mChecklistRepo.getAllChecklistTitles();
+        mWritePipeline = new WritePipeline(mExecutor, mChecklistRepo::runInTransaction);
+        mMainExecutor = ContextCompat.getMainExecutor(application);
+        mItemsModels = new HashMap<>();
+        mSuggestionIndexes = new HashMap<>();
+        // distinctUntilChanged() is required, because the room database would notify the LiveData
+        // observers if ANY row in the DbChecklist table is written, even if nothing has changed.
+        mChecklists = Transformations.distinctUntilChanged(
+                Transformations.map(
+                        mChecklistRepo.getAllChecklists(false),
+                        MainViewModel::toChecklists));
+        mActiveChecklist = Transformations.distinctUntilChanged(
+                Transformations.map(
+                        mChecklistRepo.getActiveChecklist(),
+                        // Null if no Checklist is active.
+                        dbChecklist -> (dbChecklist == null) ? null : toChecklist(dbChecklist)));
         mDeleteItemsMode = new DeleteItemsMode(
                 DeleteItemsMode.DISABLED,
                 getActiveChecklist(),
-                this::isChecklistEmpty);
+                // No active Checklist is treated like an empty Checklist.
+                checklist -> (checklist == null)
+                        ? new MutableLiveData<>(true)
+                        : isChecklistEmpty(checklist.getId()));
         mAreItemsDragged = new MutableLiveData<>(false);
         mOnboarding = new Onboarding(
                 Boolean.TRUE.equals(mPreferencesRepo.getPrefOnboardingCompleted().getValue()),
                 () -> mPreferencesRepo.setPrefOnboardingCompleted(true));
-
+        mTrashPurge = mExecutor.scheduleWithFixedDelay(
+                this::purgeTrash,
+                TRASH_PURGE_DELAY_MS,
+                TRASH_PURGE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
+        mTrashPurge.cancel(false);
     }
 
     public void setItemsDragged(boolean dragged) {
@@ -293,67 +367,99 @@ public class MainViewModel extends AndroidViewModel {
         return BuildConfig.VERSION_NAME;
     }
 
-    public void setActiveChecklist(String checklistTitle) {
-        mExecutor.execute(() -> mChecklistRepo.setActiveChecklist(checklistTitle));
+    @NonNull
+    public WritePipeline.Metrics getWriteMetrics() {
+        // Statistics about the batched database writes (e.g. for debugging).
+        return mWritePipeline.getMetrics();
+    }
+
+    public void setActiveChecklist(@Nullable Integer listId) {
+        // Only the last selection matters, if the user switches Checklists quickly.
+        mWritePipeline.execute(
+                "setActiveChecklist",
+                WritePipeline.Merge.REPLACE,
+                () -> mChecklistRepo.setActiveChecklist(listId));
     }
 
-    public LiveData<Boolean> isChecklistEmpty(String listTitle) {
-        MediatorLiveData<Boolean> mediator = new MediatorLiveData<>();
-        mediator.addSource(
-                    mChecklistRepo.getItemsLiveData(listTitle),
-                    dbChecklistItems
-                        -> mediator.setValue(dbChecklistItems.isEmpty()));
-        return Transformations.distinctUntilChanged(mediator);
+    public LiveData<Boolean> isChecklistEmpty(int listId) {
+        return Transformations.distinctUntilChanged(
+                Transformations.map(
+                        mChecklistRepo.getSnapshot(listId),
+                        ChecklistSnapshot::isEmpty));
     }
 
-    public LiveData<String> getActiveChecklist() {
-        return mChecklistRepo.getActiveChecklistTitle();
+    public LiveData<Checklist> getActiveChecklist() {
+        // The value is null if no Checklist is active.
+        return mActiveChecklist;
     }
 
-    public LiveData<List<String>> getAllChecklistTitles(boolean includeTrash) {
+    public LiveData<List<Checklist>> getAllChecklists(boolean includeTrash) {
         if (includeTrash) {
-            return mChecklistTitles;
+            return Transformations.distinctUntilChanged(
+                    Transformations.map(
+                            mChecklistRepo.getAllChecklists(true),
+                            MainViewModel::toChecklists));
         } else {
-            MediatorLiveData<List<String>> filtered = new MediatorLiveData<>();
-            filtered.addSource(mChecklistTitles, listTitles -> {
-                filtered.setValue(
-                        listTitles.stream()
-                                .filter(listTitle -> !listTitle.contains(TRASH_LABEL))
-                                .collect(Collectors.toList()));
-            });
-            return Transformations.distinctUntilChanged(filtered);
+            return mChecklists;
         }
     }
 
-    public LiveData<List<String>> getAutoCompleteDataset(@NonNull String listTitle,
-                                                         boolean isCheckedVisible) {
-        // Return a list of strings that should be used as the dataset for the adapter of an
-        // AutoCompleteTextView. It's the names of all the items (both checked and unchecked) in the
-        // Checklist titled "listTitle". Which of those suggestions will actually be displayed to
-        // the user depends on the user input and is handled in the AutoCompleteTextView.
+    public LiveData<SuggestionIndex> getSuggestionIndex(int listId, boolean isCheckedVisible) {
+        // Return the index providing the autocomplete suggestions for the item name box. It
+        // contains all the items (both checked and unchecked) in the Checklist "listId". Which of
+        // those suggestions will actually be displayed to the user depends on the user input and
+        // is handled by the SuggestionAdapter.
         if (isCheckedVisible) {
             // If the user is currently looking at checked items, then we won't show any
             // suggestions, because the user probably wants to only add new items anyway.
-            return new MutableLiveData<>(new ArrayList<>(0));
+            return new MutableLiveData<>(null);
         } else {
-            // TODO: map() runs on UI-thread!
-            return Transformations.map(
-                    mChecklistRepo.getItemsLiveData(listTitle),
-                    dbChecklistItems
-                            -> dbChecklistItems
-                            .stream()
-                            .map(DbChecklistItem::getName)
-                            .collect(Collectors.toList()));
+            // Shared with the other observers of the same Checklist, if there are any.
+            SuggestionIndex existing = mSuggestionIndexes.get(listId);
+            SuggestionIndex index = (existing != null) ? existing : new SuggestionIndex();
+            // The index is updated incrementally whenever the items change (background
+            // thread), and is published once it's up-to-date. It's dropped once it's not
+            // observed anymore, so only the indexes in use are kept in memory.
+            MediatorLiveData<SuggestionIndex> result = new MediatorLiveData<SuggestionIndex>() {
+                @Override
+                protected void onActive() {
+                    super.onActive();
+                    mSuggestionIndexes.put(listId, index);
+                }
+
+                @Override
+                protected void onInactive() {
+                    super.onInactive();
+                    mSuggestionIndexes.remove(listId, index);
+                }
+            };
+            result.addSource(mChecklistRepo.getItemSummaries(listId), summaries -> {
+                if (summaries != null) {
+                    mSuggestionExecutor.execute(() -> {
+                        index.update(summaries);
+                        result.postValue(index);
+                    });
+                }
+            });
+            return result;
         }
     }
 
+    @NonNull
+    public List<String> searchCatalog(@NonNull String prefix, int limit) {
+        // Return item names from all checklists (including deleted items) matching "prefix", see
+        // ChecklistRepository.searchCatalog(). Blocking, must not be called on the UI thread.
+        return mChecklistRepo.searchCatalog(prefix, limit);
+    }
+
     public String validateChecklistTitle(String listTitle) throws InvalidNameException {
         // Strip white spaces, validate it can be used for a new Checklist and return the stripped
         // title.
-        String listTitleStripped = stripWhitespace(listTitle);
-        List<String> currentTitles = mChecklistTitles.getValue();
-        assert currentTitles != null;
-        if (currentTitles.contains(listTitleStripped)) {
+        String listTitleStripped = DbChecklistItem.stripWhitespace(listTitle);
+        List<Checklist> currentChecklists = mChecklists.getValue();
+        assert currentChecklists != null;
+        if (currentChecklists.stream().anyMatch(
+                checklist -> checklist.getTitle().equals(listTitleStripped))) {
             throw new InvalidNameException(InvalidNameException.Reason.NAME_ALREADY_IN_USE);
         } else if (listTitleStripped.length() > LIST_TITLE_MAX_LENGTH) {
             throw new InvalidNameException(InvalidNameException.Reason.NAME_EXCEEDS_MAX_LENGTH);
@@ -366,240 +472,450 @@ public class MainViewModel extends AndroidViewModel {
 
     public void insertChecklist(String listTitle) throws InvalidNameException {
         String listTitleValidated = validateChecklistTitle(listTitle);
-        mExecutor.execute(() -> {
-            mChecklistRepo.insertChecklist(listTitleValidated);
-            mChecklistRepo.setActiveChecklist(listTitleValidated);
+        mWritePipeline.execute(() -> {
+            int listId = mChecklistRepo.insertChecklist(listTitleValidated);
+            mChecklistRepo.setActiveChecklist(listId);
         });
     }
 
-    public void moveChecklistToTrash(String checklistTitle) throws InvalidNameException {
-        // Moving a Checklist to the trash means prefixing its title with TRASH_LABEL.
-        // Those Checklists won't be displayed in the NavDrawer.
-        assert mChecklistTitles.getValue() != null;
-        if (!mChecklistTitles.getValue().contains(checklistTitle)) {
+    public void moveChecklistToTrash(int listId) throws InvalidNameException {
+        // Trashed Checklists won't be displayed in the NavDrawer. They can be restored until
+        // they are purged (see purgeTrash()).
+        Checklist checklist = findChecklist(listId);
+        if (checklist == null) {
             throw new InvalidNameException(InvalidNameException.Reason.NAME_DOES_NOT_EXIST);
         }
-        mExecutor.execute(() -> {
-            String trashed_title =
-                    TRASH_LABEL + checklistTitle + "(" + Calendar.getInstance().getTime() + ")";
-            mChecklistRepo.updateChecklistTitle(checklistTitle, trashed_title);
-            assert mChecklistTitles.getValue() != null;
-            String ac = mChecklistTitles.getValue().stream()
-                    .filter(listTitle ->
-                            !listTitle.contains(TRASH_LABEL) &&
-                            // Required because old list title is still present at this point (why?)
-                            !listTitle.equals(checklistTitle))
+        mWritePipeline.execute(() -> {
+            mChecklistRepo.trashChecklist(listId);
+            assert mChecklists.getValue() != null;
+            Integer ac = mChecklists.getValue().stream()
+                    // Required because the trashed Checklist is still present at this point
+                    // (mChecklists has not been updated yet).
+                    .filter(cl -> cl.getId() != listId)
+                    .map(Checklist::getId)
                     .findFirst()
                     .orElse(null);
             mChecklistRepo.setActiveChecklist(ac);
         });
     }
 
-    public void renameChecklist(@NonNull final String title,
+    public ListenableFuture<String> exportChecklistAsText(int listId) {
+        // Return the Checklist's items as plain text (see ChecklistExporter). Queued like a
+        // write, so that the text includes the modifications that are still pending.
+        return mWritePipeline.submit(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new ChecklistExporter(mChecklistRepo).export(
+                    listId, ChecklistExporter.Format.TEXT, out, null);
+            return out.toString(StandardCharsets.UTF_8.name());
+        });
+    }
+
+    public ListenableFuture<Boolean> restoreChecklist(int listId) {
+        // Restore a trashed Checklist and make it the active one. The result is false if it
+        // couldn't be restored, because another Checklist with the same title has been created
+        // in the meantime (or it's been purged already).
+        return mWritePipeline.submit(() -> {
+            boolean restored = mChecklistRepo.restoreChecklist(listId);
+            if (restored) {
+                mChecklistRepo.setActiveChecklist(listId);
+            }
+            return restored;
+        });
+    }
+
+    public void renameChecklist(int listId,
                                 @NonNull final String newTitle) throws InvalidNameException {
-        assert mChecklistTitles.getValue() != null;
-        if (mChecklistTitles.getValue().contains(title)) {
+        if (findChecklist(listId) != null) {
             String newTitleValidated = validateChecklistTitle(newTitle);
-            mExecutor.execute(() -> {
-                mChecklistRepo.updateChecklistTitle(title, newTitleValidated);
+            mWritePipeline.execute(() -> {
+                mChecklistRepo.updateChecklistTitle(listId, newTitleValidated);
             });
         } else {
             throw new InvalidNameException(InvalidNameException.Reason.NAME_DOES_NOT_EXIST);
         }
     }
 
-    public LiveData<List<ChecklistItem>> getItemsSortedByPosition(String listTitle,
-                                                                  boolean isChecked) {
-        return Transformations.map(
-                mChecklistRepo.getItemSubsetSortedLiveData(listTitle, isChecked),
-                MainViewModel::toChecklistItems);
+    public LiveData<List<ChecklistItem>> getItemsSorted(int listId, boolean isChecked) {
+        // Unchecked items are sorted by their position (i.e. the order the user has arranged them
+        // in), checked items are sorted by incidence (most frequently used items first).
+        // The items come from an in-memory model, so that changes are visible immediately (see
+        // ChecklistItemsModel).
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (model == null) {
+            // Both pages are derived from the same snapshot.
+            model = new ChecklistItemsModel(
+                    mChecklistRepo.getSnapshot(listId),
+                    () -> mChecklistRepo.getVersion(listId));
+            mItemsModels.put(listId, model);
+        }
+        return model.getItems(isChecked);
+    }
+
+    @Nullable
+    public ChecklistItemsChange getItemsChange(int listId, boolean isChecked) {
+        // How the current value of getItemsSorted() has been derived from the previous one (see
+        // ChecklistItemsModel.getLastChange()), or null if unknown.
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        return (model != null) ? model.getLastChange(isChecked) : null;
+    }
+
+    public void itemsScrolled(int listId, boolean isChecked, int lastVisiblePosition) {
+        // Only a window of the checked items is loaded, which is extended as the user scrolls
+        // down. Not while items are dragged, because the dragged items would be reset.
+        if (isChecked && !Boolean.TRUE.equals(mAreItemsDragged.getValue())) {
+            mChecklistRepo.loadCheckedItems(
+                    listId, lastVisiblePosition + 1 + CHECKED_PREFETCH_DISTANCE);
+        }
     }
 
-    public void deleteItem(@NonNull String listTitle, @NonNull ChecklistItem clItem) {
-        mExecutor.execute(() -> {
-            DbChecklistItem dbItem =
-                    findDbItem(mChecklistRepo.getItems(listTitle), clItem.getName());
-            assert dbItem != null;
+    public void deleteItem(int listId, @NonNull ChecklistItem clItem) {
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (model != null) {
+            model.delete(clItem.getName());
+        }
+        trackWrite(model, mWritePipeline.execute(() -> {
+            DbChecklistItem dbItem = mChecklistRepo.findItemByName(listId, clItem.getName());
+            assert dbItem != null: "findItemByName() returned null for name == " + clItem.getName();
             mChecklistRepo.deleteItem(dbItem);
-        });
+        }));
     }
 
-    public ListenableFuture<Void> insertItem(final @NonNull String listTitle,
+    public ListenableFuture<Void> insertItem(final int listId,
                                              final boolean isChecked,
                                              final @NonNull String name) {
-        // Insert a new item named "name" to Checklist "listTitle".
+        return insertItem(listId, isChecked, name, true);
+    }
+
+    public ListenableFuture<Void> insertItem(final int listId,
+                                             final boolean isChecked,
+                                             final @NonNull String name,
+                                             final boolean checkSimilar) {
+        // Insert a new item named "name" to Checklist "listId".
         // If an item with the same name already exists, then either move it to the bottom of the
         // list (if "isChecked" equals the existing item's "isChecked"), or flip it (if "isChecked"
         // differs).
-        return mListeningExecutor.submit(() -> {
-            String strippedName = stripWhitespace(name);
-            if (strippedName.isEmpty()) {
-                throw new InvalidNameException(InvalidNameException.Reason.NAME_IS_EMPTY);
+        // If "checkSimilar" and there is no such item, but one with a similar name (e.g. "name"
+        // contains a typo), nothing is inserted and the future fails with SimilarNameException,
+        // so that the user can decide which name was meant.
+        String strippedName = DbChecklistItem.stripWhitespace(name);
+        if (strippedName.isEmpty()) {
+            return Futures.immediateFailedFuture(
+                    new InvalidNameException(InvalidNameException.Reason.NAME_IS_EMPTY));
+        }
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (checkSimilar && ((model == null) || !model.contains(strippedName))) {
+            // The index is kept in memory, so this is fast enough for the UI thread. It's only
+            // available while the list's suggestions are used (see getSuggestionIndex()).
+            SuggestionIndex index = mSuggestionIndexes.get(listId);
+            String similarName = (index != null) ? index.findSimilar(strippedName) : null;
+            if (similarName != null) {
+                return Futures.immediateFailedFuture(new SimilarNameException(similarName));
             }
-            DbChecklistItem dbItem = findDbItem(mChecklistRepo.getItems(listTitle), strippedName);
+        }
+        if (model != null) {
+            model.insert(strippedName, isChecked);
+        }
+        return trackWrite(model, mWritePipeline.submit(() -> {
+            DbChecklistItem dbItem = mChecklistRepo.findItemByName(listId, strippedName);
             if (dbItem == null){
-                // Item does not exist in database, so insert a new item.
+                // Item does not exist in database, so insert a new item at the end of the list.
                 // The new item will have the lowest incidence.
-                long incidence = mChecklistRepo.getMinIncidence(listTitle) - 1;
+                long incidence = mChecklistRepo.getMinIncidence(listId) - 1;
+                // Checked items are sorted by incidence, so they don't need a position.
+                Long position = isChecked ? null : PositionHelper.nextPosition(
+                        mChecklistRepo.getMaxPosition(listId, false));
                 DbChecklistItem newDbItem = new DbChecklistItem(
-                        strippedName, isChecked, null, listTitle, incidence);
-                // Within each executor runnable we must only perform a single database transaction
-                // to avoid multiple LiveData updates. So we need to get a copy the list, modify
-                // the copy and then update the database using that copy.
-                List<DbChecklistItem> dbItems =
-                        mChecklistRepo.getItemSubsetSorted(listTitle, isChecked);
-                dbItems.add(newDbItem);
-                // This function updates all positions, but we only care about the newDbItem's
-                // position.
-                updatePositionByOrder(dbItems);
-                // Single database transaction
-                mChecklistRepo.insertAndUpdateItems(newDbItem, dbItems);
+                        strippedName, isChecked, position, listId, incidence);
+                // Positions are sparse, so no other item needs to be updated.
+                mChecklistRepo.insertItem(newDbItem);
             } else {
                 // Item already exists in database.
                 if (dbItem.isChecked() == isChecked) {
                     // The user tries to add an item with the same "isChecked" as the existing item,
                     // so just move it to the bottom of the list (as a visual feedback).
-                    List<DbChecklistItem> items = mChecklistRepo
-                            .getItemSubsetSorted(listTitle, dbItem.isChecked());
-                    assert dbItem.getPosition() != null: "dbItem.getPosition() returned null";
-                    // Remove and add the same item to move it to the end of the list.
-                    items.remove((int)dbItem.getPosition());
-                    items.add(dbItem);
-                    updatePositionByOrder(items);
-                    mChecklistRepo.updateItems(items);
+                    // Checked items are always sorted by incidence, so they stay where they are.
+                    if (isChecked) {
+                        return null;
+                    }
+                    Long maxPosition = mChecklistRepo.getMaxPosition(listId, isChecked);
+                    if (!Objects.equals(maxPosition, dbItem.getPosition())) {
+                        dbItem.setPosition(PositionHelper.nextPosition(maxPosition));
+                        mChecklistRepo.updateItems(Collections.singletonList(dbItem));
+                    }
                 } else {
                     // The user tries to add an item with the opposite "isChecked", so we can simply
                     // flip the existing item (to make it appear in the list that the user is trying
                     // to add it to).
-                    flipItem(listTitle, dbItem.getName());
+                    flipItemNow(listId, dbItem.getName());
                 }
             }
             return null;
-        });
+        }));
+    }
+
+    public ListenableFuture<Integer> insertItems(final int listId,
+                                                 final boolean isChecked,
+                                                 final @NonNull List<String> names) {
+        // Same as insertItem() for each of the "names" (in order, without checking for similar
+        // names), but as a single write: the existing items are looked up with a single query and
+        // all items are written in the same transaction, so the UI is only updated once.
+        // Empty names and duplicates are skipped. Returns the number of distinct names.
+        Map<String, String> strippedNames = new LinkedHashMap<>();
+        for (String name : names) {
+            String strippedName = DbChecklistItem.stripWhitespace(name);
+            if (!strippedName.isEmpty()) {
+                strippedNames.putIfAbsent(DbChecklistItem.normalizeName(strippedName), strippedName);
+            }
+        }
+        if (strippedNames.isEmpty()) {
+            return Futures.immediateFailedFuture(
+                    new InvalidNameException(InvalidNameException.Reason.NAME_IS_EMPTY));
+        }
+        List<String> itemNames = new ArrayList<>(strippedNames.values());
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (model != null) {
+            model.insertAll(itemNames, isChecked);
+        }
+        return trackWrite(model, mWritePipeline.submit(() -> {
+            Map<String, DbChecklistItem> dbItems = mChecklistRepo.findItemsByName(listId, itemNames);
+            long minIncidence = mChecklistRepo.getMinIncidence(listId);
+            Long maxPosition = mChecklistRepo.getMaxPosition(listId, false);
+            List<DbChecklistItem> newDbItems = new ArrayList<>();
+            List<DbChecklistItem> updatedDbItems = new ArrayList<>();
+            for (String name : itemNames) {
+                DbChecklistItem dbItem = dbItems.get(DbChecklistItem.normalizeName(name));
+                if (dbItem == null) {
+                    // New item at the end of the list, with the lowest incidence (see
+                    // insertItem()).
+                    Long position = null;
+                    if (!isChecked) {
+                        position = maxPosition = PositionHelper.nextPosition(maxPosition);
+                    }
+                    newDbItems.add(new DbChecklistItem(
+                            name, isChecked, position, listId, --minIncidence));
+                } else if (dbItem.isChecked() == isChecked) {
+                    // Unchecked items are moved to the end, checked items stay where they are.
+                    if (!isChecked && !Objects.equals(maxPosition, dbItem.getPosition())) {
+                        dbItem.setPosition(maxPosition = PositionHelper.nextPosition(maxPosition));
+                        updatedDbItems.add(dbItem);
+                    }
+                } else {
+                    // Flip the existing item (see flipItemNow()).
+                    dbItem.setIncidence(dbItem.getIncidence() + 1);
+                    dbItem.setChecked(isChecked);
+                    dbItem.setPosition(isChecked ?
+                            null : (maxPosition = PositionHelper.nextPosition(maxPosition)));
+                    updatedDbItems.add(dbItem);
+                }
+            }
+            mChecklistRepo.updateItems(updatedDbItems);
+            mChecklistRepo.insertItems(newDbItems);
+            return itemNames.size();
+        }));
+    }
+
+    public ListenableFuture<Void> uncheckAllItems(int listId) {
+        return setBasedWrite(listId, () -> mChecklistRepo.uncheckAllItems(listId));
+    }
+
+    public ListenableFuture<Void> checkAllItems(int listId) {
+        return setBasedWrite(listId, () -> mChecklistRepo.checkAllItems(listId));
+    }
+
+    public ListenableFuture<Void> deleteCheckedItems(int listId) {
+        return setBasedWrite(listId, () -> mChecklistRepo.deleteCheckedItems(listId));
     }
 
-    public void flipItem(String listTitle, String name) {
+    public ListenableFuture<Void> saveTemplate(int listId) {
+        return mWritePipeline.execute(() -> mChecklistRepo.saveTemplate(listId));
+    }
+
+    public ListenableFuture<Boolean> resetToTemplate(int listId) {
+        // See ChecklistRepository.resetToTemplate(). Returns false if the Checklist doesn't have
+        // a template.
+        return trackWrite(mItemsModels.get(listId),
+                mWritePipeline.submit(() -> mChecklistRepo.resetToTemplate(listId)));
+    }
+
+    public void flipItem(int listId, String name) {
         // Move an item from "checked" to "unchecked" and vice versa, and increment the
         // item's incidence.
-        mExecutor.execute(() -> {
-            // Get a copy of the list in the database, so that we can apply several modifications
-            // but only perform a single database transaction at the end.
-            List<DbChecklistItem> allItems = mChecklistRepo.getItems(listTitle);
-            DbChecklistItem itemToFlip = findDbItem(allItems, name);
-            assert itemToFlip != null: "findDbItem() returned null for name == " + name;
+        // If the same item is flipped again before the write is executed, both flips cancel
+        // each other out.
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (model != null) {
+            model.flip(name);
+        }
+        trackWrite(model, mWritePipeline.execute(
+                "flipItem/" + listId + "/" + DbChecklistItem.normalizeName(name),
+                WritePipeline.Merge.CANCEL,
+                () -> flipItemNow(listId, name)));
+    }
+
+    private void flipItemNow(int listId, String name) {
+        // See flipItem(). Must be called from within mWritePipeline.
+        DbChecklistItem itemToFlip = mChecklistRepo.findItemByName(listId, name);
+        assert itemToFlip != null: "findItemByName() returned null for name == " + name;
+        // Increment the incidence every time an item is flipped.
+        itemToFlip.setIncidence(itemToFlip.getIncidence() + 1);
+        // Invert "isChecked", i.e. flip it.
+        itemToFlip.setChecked(!itemToFlip.isChecked());
+        if (!itemToFlip.isChecked()) {
             // If an item is flipped from "checked" to "unchecked", we want it to be placed at
             // the end of the list.
-            if (itemToFlip.isChecked()) {
-                itemToFlip.setPosition(Integer.MAX_VALUE);
-            }
-            // Increment the incidence every time an item is flipped.
-            itemToFlip.setIncidence(itemToFlip.getIncidence() + 1);
-            // Invert "isChecked", i.e. flip it.
-            itemToFlip.setChecked(!itemToFlip.isChecked());
-            // After the item has been flipped, we need to update the positions of all items.
-            // Items are sorted differently depending on whether they are "checked" or "unchecked",
-            // so we need to filter them first:
-            List<DbChecklistItem> uncheckedItems = filterByChecked(allItems, false);
-            sortByPositionAscending(uncheckedItems);
-            updatePositionByOrder(uncheckedItems);
-            List<DbChecklistItem> checkedItems = filterByChecked(allItems, true);
-            sortByIncidenceDescending(checkedItems); // Only "checked" items are sorted by incidence
-            updatePositionByOrder(checkedItems);
-            // Commit the local changes in a single database transaction
-            mChecklistRepo.updateItems(allItems);
-        });
+            itemToFlip.setPosition(PositionHelper.nextPosition(
+                    mChecklistRepo.getMaxPosition(listId, false)));
+        } else {
+            // "Checked" items are sorted by incidence when they are queried, so the item's
+            // position is not needed anymore.
+            itemToFlip.setPosition(null);
+        }
+        // Only the flipped item itself needs to be written.
+        mChecklistRepo.updateItems(Collections.singletonList(itemToFlip));
     }
 
-    public void itemsHaveBeenMoved(String listTitle,
+    public void itemsHaveBeenMoved(int listId,
                                    boolean areChecked,
                                    final List<ChecklistItem> items) {
         // Update the database's item positions to match the order as they are in "items". If
-        // "checked" items have been moved, update their incidences accordingly.
-        mExecutor.execute(() -> {
+        // "checked" items have been moved, update their incidences instead (since they are
+        // sorted by incidence). For "checked" items, "items" may only be the loaded window (see
+        // itemsScrolled()).
+        ChecklistItemsModel model = mItemsModels.get(listId);
+        if (model != null) {
+            model.move(areChecked, items);
+        }
+        trackWrite(model, mWritePipeline.execute(() -> {
             // Get a copy of the list in the database, so that we can apply several modifications
             // but only perform a single database transaction at the end.
-            List<DbChecklistItem> dbItems
-                    = mChecklistRepo.getItemSubsetSorted(listTitle, areChecked);
+            List<DbChecklistItem> dbItems = areChecked
+                    ? mChecklistRepo.getCheckedItemsSorted(listId)
+                    : mChecklistRepo.getItemSubsetSorted(listId, false);
             // Number of items should match the database.
-            assert items.size() == dbItems.size(): "Unexpected number of items";
-            long prevIncidence = 0;
-            for (int i = 0; i < items.size(); i++) {
-                ChecklistItem item = items.get(i);
-                DbChecklistItem dbItem = findDbItem(dbItems, item.getName());
+            assert areChecked ? (items.size() <= dbItems.size()) : (items.size() == dbItems.size())
+                    : "Unexpected number of items";
+            Map<String, DbChecklistItem> dbItemsByName = mapByNormalizedName(dbItems);
+            List<DbChecklistItem> dbItemsInNewOrder = new ArrayList<>(dbItems.size());
+            for (ChecklistItem item : items) {
+                DbChecklistItem dbItem =
+                        dbItemsByName.remove(DbChecklistItem.normalizeName(item.getName()));
                 assert dbItem != null: "Could not find item with name = " + item.getName();
-                dbItem.setPosition(i);
+                dbItemsInNewOrder.add(dbItem);
+            }
+            // Items outside of the window keep their order, after the window.
+            for (DbChecklistItem dbItem : dbItems) {
+                if (dbItemsByName.containsKey(dbItem.getNormalizedName())) {
+                    dbItemsInNewOrder.add(dbItem);
+                }
+            }
+            // Only the items that have actually changed will be written to the database.
+            Set<DbChecklistItem> changedItems = new LinkedHashSet<>();
+            long prevIncidence = 0;
+            for (int i = 0; i < dbItemsInNewOrder.size(); i++) {
+                DbChecklistItem dbItem = dbItemsInNewOrder.get(i);
                 if (areChecked && (i > 0)) {
-                    if (item.getIncidence() >= prevIncidence) {
+                    if (dbItem.getIncidence() >= prevIncidence) {
                         // Note: Incidences may become negative to maintain existing order.
                         dbItem.setIncidence(prevIncidence - 1);
+                        changedItems.add(dbItem);
                     }
                 }
                 prevIncidence = dbItem.getIncidence();
             }
+            if (!areChecked) {
+                // Typically, only the dragged item needs a new position.
+                changedItems.addAll(PositionHelper.reorder(dbItemsInNewOrder));
+            }
             // Commit the local changes in a single database transaction
-            mChecklistRepo.updateItems(dbItems);
-        });
+            mChecklistRepo.updateItems(new ArrayList<>(changedItems));
+        }));
     }
 
 // ------- Helper methods --------------------------------------------------------------------------
 
-    private static String stripWhitespace(@NonNull final String s) {
-        // Remove leading and trailing spaces, and replace all multi-spaces with single
-        // spaces.
-        return s.strip().replaceAll(" +", " ");
-    }
+    private ListenableFuture<Void> setBasedWrite(int listId, @NonNull Runnable write) {
+        // Execute a write that modifies many items with a single statement (see
+        // ChecklistRepository). It's not applied to the model in advance (which might not even
+        // contain all affected items), the model is updated from the database once it's done.
+        return trackWrite(mItemsModels.get(listId), mWritePipeline.execute(write));
+    }
+
+    private <T> ListenableFuture<T> trackWrite(@Nullable ChecklistItemsModel model,
+                                               @NonNull ListenableFuture<T> write) {
+        // Let "model" know about the pending database write, so it can reconcile with the
+        // database once the write is done.
+        if (model != null) {
+            model.beginWrite();
+            Futures.addCallback(
+                    write,
+                    new FutureCallback<T>() {
+                        @Override
+                        public void onSuccess(T result) {
+                            model.endWrite(true);
+                        }
+
+                        @Override
+                        public void onFailure(@NonNull Throwable t) {
+                            model.endWrite(false);
+                        }
+                    },
+                    mMainExecutor);
+        }
+        return write;
+    }
+
+    private void purgeTrash() {
+        // Delete the Checklists whose retention period has expired, one batch per transaction.
+        // The next batch is queued once the previous one is done, so that other writes can be
+        // executed in between.
+        long trashedBefore = System.currentTimeMillis() - TRASH_RETENTION_MS;
+        Futures.addCallback(
+                mWritePipeline.submit(
+                        () -> mChecklistRepo.purgeTrash(trashedBefore, TRASH_PURGE_BATCH_SIZE)),
+                new FutureCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer deleted) {
+                        if ((deleted > 0) && !mTrashPurge.isCancelled()) {
+                            purgeTrash();
+                        }
+                    }
 
-    private static List<ChecklistItem> toChecklistItems(List<DbChecklistItem> dbItems) {
-        // Convert DbChecklistItems to ChecklistItems.
-        return dbItems.stream()
-                .map(dbChecklistItem -> new ChecklistItem(
-                        dbChecklistItem.getName(),
-                        dbChecklistItem.getIncidence()))
-                .collect(Collectors.toList());
+                    @Override
+                    public void onFailure(@NonNull Throwable t) {
+                        // Retried with the next scheduled purge.
+                    }
+                },
+                MoreExecutors.directExecutor());
     }
 
-    @Nullable
-    private DbChecklistItem findDbItem(List<DbChecklistItem> dbItems, @NonNull String name) {
-        List<DbChecklistItem> found = dbItems
-                .stream()
-                .filter(item -> item.getName().equalsIgnoreCase(name))
+    private static List<Checklist> toChecklists(List<DbChecklist> dbChecklists) {
+        return dbChecklists.stream()
+                .map(MainViewModel::toChecklist)
                 .collect(Collectors.toList());
-        assert found.size() <= 1 : "More than one item found with name = " + name;
-        if (found.isEmpty()) {
-            return null;
-        } else {
-            return found.get(0);
-        }
     }
 
-    private static List<DbChecklistItem> filterByChecked(List<DbChecklistItem> items,
-                                                         boolean isChecked) {
-        return items.stream()
-                .filter(item -> item.isChecked() == isChecked)
-                .collect(Collectors.toList());
+    private static Checklist toChecklist(DbChecklist dbChecklist) {
+        // Convert DbChecklist to Checklist.
+        return new Checklist(dbChecklist.getListId(), dbChecklist.getListTitle());
     }
 
-    private static void updatePositionByOrder(List<DbChecklistItem> dbItems) {
-        // Update the "position" field of each item based on its position in the list starting
-        // with 0. List is modified in place.
-        for (int i = 0; i < dbItems.size(); i++) {
-            dbItems.get(i).setPosition(i);
+    @Nullable
+    private Checklist findChecklist(int listId) {
+        List<Checklist> checklists = mChecklists.getValue();
+        assert checklists != null;
+        return checklists.stream()
+                .filter(checklist -> checklist.getId() == listId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Map<String, DbChecklistItem> mapByNormalizedName(
+            List<DbChecklistItem> dbItems) {
+        // Index the items by their "normalizedName", which is unique within a Checklist.
+        Map<String, DbChecklistItem> map = new HashMap<>(dbItems.size());
+        for (DbChecklistItem dbItem : dbItems) {
+            map.put(dbItem.getNormalizedName(), dbItem);
         }
-    }
-
-    private static void sortByPositionAscending(List<DbChecklistItem> dbItems) {
-        // List is modified in place.
-        dbItems.sort(
-                Comparator.comparing(
-                        DbChecklistItem::getPosition,
-                        Comparator.nullsFirst(Comparator.naturalOrder())));
-    }
-
-    private static void sortByIncidenceDescending(List<DbChecklistItem> dbItems) {
-        // List is modified in place.
-        dbItems.sort(
-                Comparator.comparingLong(
-                        DbChecklistItem::getIncidence)
-                .reversed());
+        return map;
     }
 }
@@ -0,0 +1,138 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class PositionHelper {
+    /*
+     *  Helper class to maintain the sparse "position" keys of DbChecklistItems.
+     *
+     *  Positions are spaced POSITION_STEP apart, so an item can be placed between two other items
+     *  by picking a value in between, without renumbering the rest of the list. Only once there is
+     *  no gap left, the affected list is rebalanced (i.e. renumbered with POSITION_STEP spacing).
+     */
+
+    public static final long POSITION_STEP = DbChecklistItem.POSITION_STEP;
+
+    public static long nextPosition(@Nullable Long maxPosition) {
+        // Return the position to append an item to a list whose largest position is "maxPosition"
+        // (null if the list is empty).
+        return (maxPosition == null) ? 0 : (maxPosition + POSITION_STEP);
+    }
+
+    @NonNull
+    public static List<DbChecklistItem> reorder(@NonNull List<DbChecklistItem> itemsInNewOrder) {
+        // Update the "position" of the items, so that sorting them by position results in the
+        // order of "itemsInNewOrder". Items with a null position will always get a new one.
+        // As few positions as possible are changed: the longest run of items that are already in
+        // ascending order keeps their positions, and only the other items are placed in between.
+        // Returns the items whose position has changed (these need to be written back).
+        int size = itemsInNewOrder.size();
+        Long[] oldPositions = new Long[size];
+        for (int i = 0; i < size; i++) {
+            oldPositions[i] = itemsInNewOrder.get(i).getPosition();
+        }
+        boolean[] keep = longestIncreasingSubsequence(oldPositions);
+        Long[] newPositions = new Long[size];
+        int i = 0;
+        while (i < size) {
+            if (keep[i]) {
+                newPositions[i] = oldPositions[i];
+                i++;
+            } else {
+                // Find the run of items [i, end) that need a new position, and place them evenly
+                // between their neighbors.
+                int end = i;
+                while ((end < size) && !keep[end]) {
+                    end++;
+                }
+                Long lower = (i > 0) ? newPositions[i - 1] : null;
+                Long upper = (end < size) ? oldPositions[end] : null;
+                if (!fillGap(newPositions, i, end, lower, upper)) {
+                    return rebalance(itemsInNewOrder);
+                }
+                i = end;
+            }
+        }
+        return applyPositions(itemsInNewOrder, newPositions);
+    }
+
+    @NonNull
+    public static List<DbChecklistItem> rebalance(@NonNull List<DbChecklistItem> items) {
+        // Renumber all items with POSITION_STEP spacing, keeping their order in "items".
+        // Returns the items whose position has changed.
+        Long[] newPositions = new Long[items.size()];
+        for (int i = 0; i < newPositions.length; i++) {
+            newPositions[i] = i * POSITION_STEP;
+        }
+        return applyPositions(items, newPositions);
+    }
+
+    private static boolean fillGap(Long[] positions, int start, int end,
+                                   @Nullable Long lower, @Nullable Long upper) {
+        // Assign positions to the indices [start, end) so that they are ascending and lie between
+        // "lower" and "upper" (exclusive, null means unbounded). Returns false if there's no room.
+        int count = end - start;
+        if ((lower == null) && (upper == null)) {
+            for (int j = 0; j < count; j++) {
+                positions[start + j] = j * POSITION_STEP;
+            }
+        } else if (upper == null) {
+            for (int j = 0; j < count; j++) {
+                positions[start + j] = lower + (j + 1) * POSITION_STEP;
+            }
+        } else if (lower == null) {
+            for (int j = 0; j < count; j++) {
+                positions[start + j] = upper - (count - j) * POSITION_STEP;
+            }
+        } else {
+            long step = (upper - lower) / (count + 1);
+            if (step < 1) {
+                return false;
+            }
+            for (int j = 0; j < count; j++) {
+                positions[start + j] = lower + (j + 1) * step;
+            }
+        }
+        return true;
+    }
+
+    private static List<DbChecklistItem> applyPositions(List<DbChecklistItem> items,
+                                                        Long[] newPositions) {
+        List<DbChecklistItem> changed = new ArrayList<>();
+        for (int i = 0; i < newPositions.length; i++) {
+            DbChecklistItem item = items.get(i);
+            if (!newPositions[i].equals(item.getPosition())) {
+                item.setPosition(newPositions[i]);
+                changed.add(item);
+            }
+        }
+        return changed;
+    }
+
+    private static boolean[] longestIncreasingSubsequence(Long[] values) {
+        // Return which of the (non-null) values form the longest strictly increasing subsequence.
+        // The null values are left out, and can't be part of it.
+        long[] nonNullValues = new long[values.length];
+        int[] indices = new int[values.length];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                nonNullValues[count] = values[i];
+                indices[count++] = i;
+            }
+        }
+        boolean[] nonNullResult = LongestIncreasingSubsequence.find(nonNullValues, count);
+        boolean[] result = new boolean[values.length];
+        for (int k = 0; k < count; k++) {
+            result[indices[k]] = nonNullResult[k];
+        }
+        return result;
+    }
+}
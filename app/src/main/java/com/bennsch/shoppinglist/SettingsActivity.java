@@ -3,7 +3,10 @@ package com.bennsch.shoppinglist;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
+import android.util.Log;
 import android.view.MenuItem;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
@@ -12,6 +15,7 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
@@ -20,8 +24,10 @@ import androidx.core.view.WindowInsetsCompat;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 
+import com.bennsch.shoppinglist.datamodel.ChecklistBackup;
+import com.bennsch.shoppinglist.datamodel.ChecklistExporter;
+import com.bennsch.shoppinglist.datamodel.ChecklistImporter;
 import com.bennsch.shoppinglist.datamodel.ChecklistRepository;
-import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
 import com.bennsch.shoppinglist.datamodel.PreferencesRepository;
 import com.bennsch.shoppinglist.databinding.SettingsActivityBinding;
 import com.google.common.util.concurrent.FutureCallback;
@@ -30,8 +36,10 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
-import java.io.BufferedWriter;
-import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
 
@@ -42,7 +50,18 @@ public class SettingsActivity extends AppCompatActivity {
      */
 
     private SettingsActivityBinding mBinding;
-    private ActivityResultLauncher<Intent> mCsvFileLauncher;
+    private ActivityResultLauncher<Intent> mExportFileLauncher;
+    private ActivityResultLauncher<Intent> mImportFileLauncher;
+    private ActivityResultLauncher<Intent> mBackupFileLauncher;
+    private ActivityResultLauncher<Intent> mRestoreFileLauncher;
+    // The format of the file that is picked by mExportFileLauncher.
+    private ChecklistExporter.Format mExportFormat = ChecklistExporter.Format.CSV;
+    // Progress of an export, import, backup or restore.
+    private AlertDialog mProgressDialog = null;
+
+    private static final String TAG = "SettingsActivity";
+    // Number of failed rows that are listed after an import.
+    private static final int IMPORT_ERRORS_SHOWN = 10;
 
     private static final ListeningExecutorService mListeningExecutor =
             MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
@@ -53,13 +72,48 @@ public class SettingsActivity extends AppCompatActivity {
         public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
             // Populate preferences from xml.
             setPreferencesFromResource(PreferencesRepository.PREFS_RES_ID, rootKey);
-            // Register OnClickListener for "Export to CSV" preference.
-            Preference prefExportCsv = findPreference(getString(R.string.pref_key_export_csv));
-            if (prefExportCsv != null) {
-                prefExportCsv.setOnPreferenceClickListener(preference -> {
+            // Register OnClickListeners for the "Export" preferences.
+            setExportClickListener(R.string.pref_key_export_csv, ChecklistExporter.Format.CSV);
+            setExportClickListener(
+                    R.string.pref_key_export_jsonl, ChecklistExporter.Format.JSON_LINES);
+            // Register OnClickListener for "Import" preference.
+            Preference prefImport = findPreference(getString(R.string.pref_key_import));
+            if (prefImport != null) {
+                prefImport.setOnPreferenceClickListener(preference -> {
+                    SettingsActivity parent = (SettingsActivity)getActivity();
+                    assert parent != null;
+                    parent.onImportClicked();
+                    return true; // Return true if the click was handled.
+                });
+            }
+            // Register OnClickListeners for the "Backup" and "Restore" preferences.
+            Preference prefBackup = findPreference(getString(R.string.pref_key_backup));
+            if (prefBackup != null) {
+                prefBackup.setOnPreferenceClickListener(preference -> {
+                    SettingsActivity parent = (SettingsActivity)getActivity();
+                    assert parent != null;
+                    parent.onBackupClicked();
+                    return true; // Return true if the click was handled.
+                });
+            }
+            Preference prefRestore = findPreference(getString(R.string.pref_key_restore));
+            if (prefRestore != null) {
+                prefRestore.setOnPreferenceClickListener(preference -> {
+                    SettingsActivity parent = (SettingsActivity)getActivity();
+                    assert parent != null;
+                    parent.onRestoreClicked();
+                    return true; // Return true if the click was handled.
+                });
+            }
+        }
+
+        private void setExportClickListener(int keyResId, ChecklistExporter.Format format) {
+            Preference prefExport = findPreference(getString(keyResId));
+            if (prefExport != null) {
+                prefExport.setOnPreferenceClickListener(preference -> {
                     SettingsActivity parent = (SettingsActivity)getActivity();
                     assert parent != null;
-                    parent.onExportCsvClicked();
+                    parent.onExportClicked(format);
                     return true; // Return true if the click was handled.
                 });
             }
@@ -79,9 +133,21 @@ public class SettingsActivity extends AppCompatActivity {
         setWindowInsetListeners();
 
         // LifecycleOwners must call register*() before they are STARTED (e.g. during onCreate()).
-        mCsvFileLauncher = registerForActivityResult(
+        mExportFileLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                this::onExportFileResult
+        );
+        mImportFileLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
-                this::onCsvFileResult
+                this::onImportFileResult
+        );
+        mBackupFileLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                this::onBackupFileResult
+        );
+        mRestoreFileLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                this::onRestoreFileResult
         );
         if (savedInstanceState == null) {
             getSupportFragmentManager()
@@ -92,6 +158,12 @@ public class SettingsActivity extends AppCompatActivity {
         setupActionBar();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        dismissProgressDialog();
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -101,16 +173,17 @@ public class SettingsActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    private void onExportCsvClicked() {
+    private void onExportClicked(@NonNull ChecklistExporter.Format format) {
+        mExportFormat = format;
         Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
-        intent.setType("text/plain");
-        intent.putExtra(Intent.EXTRA_TITLE, "shopping_list.csv");
+        intent.setType(format.getMimeType());
+        intent.putExtra(Intent.EXTRA_TITLE, "shopping_list." + format.getFileExtension());
         // intent.putExtra(DocumentsContract.EXTRA_INITIAL_URI, pickerInitialUri);
-        mCsvFileLauncher.launch(intent);
+        mExportFileLauncher.launch(intent);
     }
 
-    private void onCsvFileResult(ActivityResult result) {
+    private void onExportFileResult(ActivityResult result) {
         int resultCode = result.getResultCode();
         if (resultCode == RESULT_OK) {
             Intent intent = result.getData();
@@ -121,7 +194,7 @@ public class SettingsActivity extends AppCompatActivity {
                 if (uri == null) {
                     Toast.makeText(this, "ERROR: uri == null", Toast.LENGTH_LONG).show();
                 }else{
-                    exportToCsv(uri);
+                    exportToFile(uri, mExportFormat);
                 }
             }
         } else if (resultCode == RESULT_CANCELED) {
@@ -131,42 +204,282 @@ public class SettingsActivity extends AppCompatActivity {
         }
     }
 
-    private void exportToCsv(@NonNull Uri csvFileUri) {
-        // TODO: Add progress dialog
-        ListenableFuture<Void> result =  mListeningExecutor.submit(() -> {
+    private void exportToFile(@NonNull Uri fileUri, @NonNull ChecklistExporter.Format format) {
+        // Export all checklists, showing the progress in a dialog (which allows to cancel).
+        ProgressBar progressBar = new ProgressBar(
+                this, null, android.R.attr.progressBarStyleHorizontal);
+        int padding = getResources().getDimensionPixelSize(R.dimen.export_progress_padding);
+        progressBar.setPadding(padding, padding, padding, 0);
+        ListenableFuture<Integer> result =  mListeningExecutor.submit(() -> {
             // Exceptions will be caught by ListenableFuture.
-            try (BufferedWriter writer = new BufferedWriter(
-                    new OutputStreamWriter(
-                            getContentResolver()
-                                    .openOutputStream(csvFileUri)))) {
-                ChecklistRepository repo = ChecklistRepository.getInstance(getApplicationContext());
-                List<DbChecklistItem> items = repo.getAllItems();
-                writer.write("List;Name;Incidence;Checked"); writer.newLine();
-                for (DbChecklistItem item : items) {
-                    writer.write(
-                            item.getBelongsToChecklist() + ";" +
-                            item.getName() + ";" +
-                            item.getIncidence() + ";" +
-                            item.isChecked()
-                    );
-                    writer.newLine();
+            try (OutputStream out = getContentResolver().openOutputStream(fileUri)) {
+                if (out == null) {
+                    throw new IOException("Failed to open " + fileUri);
                 }
-                return null;
+                ChecklistExporter exporter = new ChecklistExporter(
+                        ChecklistRepository.getInstance(getApplicationContext()));
+                return exporter.export(null, format, out, (exportedItems, totalItems) ->
+                        runOnUiThread(() -> {
+                            progressBar.setMax(totalItems);
+                            progressBar.setProgress(exportedItems);
+                        }));
             }
         });
-        Futures.addCallback(result, new FutureCallback<Void>() {
+        mProgressDialog = new AlertDialog.Builder(this)
+                .setTitle("Exporting\u2026")
+                .setView(progressBar)
+                .setNegativeButton(R.string.dialog_cancel, (dialog, which) -> result.cancel(true))
+                .setCancelable(false)
+                .show();
+        Futures.addCallback(result, new FutureCallback<Integer>() {
             @Override
-            public void onSuccess(Void result) {
-                Toast.makeText(getApplicationContext(), "File written successfully", Toast.LENGTH_LONG).show();
+            public void onSuccess(Integer exportedItems) {
+                dismissProgressDialog();
+                Toast.makeText(getApplicationContext(), exportedItems + " items written successfully", Toast.LENGTH_LONG).show();
             }
 
             @Override
             public void onFailure(@NonNull Throwable t) {
+                dismissProgressDialog();
+                if (result.isCancelled()) {
+                    // Don't leave an incomplete file behind.
+                    try {
+                        DocumentsContract.deleteDocument(getContentResolver(), fileUri);
+                    } catch (Exception e) {
+                        Log.w(TAG, "Failed to delete " + fileUri, e);
+                    }
+                    Toast.makeText(getApplicationContext(), "Cancelled", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getApplicationContext(), "ERROR: " + t, Toast.LENGTH_LONG).show();
+                }
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void onImportClicked() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        // CSV and JSON Lines files don't have a reliable MIME type.
+        intent.setType("*/*");
+        mImportFileLauncher.launch(intent);
+    }
+
+    private void onImportFileResult(ActivityResult result) {
+        Intent intent = result.getData();
+        Uri uri = (intent != null) ? intent.getData() : null;
+        if ((result.getResultCode() == RESULT_OK) && (uri != null)) {
+            importFromFile(uri);
+        } else if (result.getResultCode() == RESULT_CANCELED) {
+            Toast.makeText(this, "Cancelled", Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(this, "ERROR: Unexpected result " + result, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void importFromFile(@NonNull Uri fileUri) {
+        // Import the file (CSV or JSON Lines, see ChecklistImporter), showing the number of
+        // imported rows in a dialog (which allows to cancel). The size of the file is unknown,
+        // so the progress is indeterminate.
+        ProgressBar progressBar = new ProgressBar(
+                this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        int padding = getResources().getDimensionPixelSize(R.dimen.export_progress_padding);
+        progressBar.setPadding(padding, padding, padding, 0);
+        // Accessed from mListeningExecutor only, until the import is done.
+        List<String> errors = new ArrayList<>();
+        ListenableFuture<ChecklistImporter.Result> result = mListeningExecutor.submit(() -> {
+            // Exceptions will be caught by ListenableFuture.
+            try (InputStream in = getContentResolver().openInputStream(fileUri)) {
+                if (in == null) {
+                    throw new IOException("Failed to open " + fileUri);
+                }
+                ChecklistImporter importer = new ChecklistImporter(
+                        ChecklistRepository.getInstance(getApplicationContext()));
+                return importer.importItems(in, new ChecklistImporter.Listener() {
+                    @Override
+                    public void onRowFailed(int lineNumber, @NonNull String reason) {
+                        if (errors.size() < IMPORT_ERRORS_SHOWN) {
+                            errors.add("Line " + lineNumber + ": " + reason);
+                        }
+                    }
+
+                    @Override
+                    public void onProgress(@NonNull ChecklistImporter.Result progress) {
+                        int rows = progress.rows;
+                        runOnUiThread(() -> {
+                            if (mProgressDialog != null) {
+                                mProgressDialog.setMessage(rows + " rows");
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        mProgressDialog = new AlertDialog.Builder(this)
+                .setTitle("Importing\u2026")
+                .setMessage("0 rows")
+                .setView(progressBar)
+                .setNegativeButton(R.string.dialog_cancel, (dialog, which) -> result.cancel(true))
+                .setCancelable(false)
+                .show();
+        Futures.addCallback(result, new FutureCallback<ChecklistImporter.Result>() {
+            @Override
+            public void onSuccess(ChecklistImporter.Result imported) {
+                dismissProgressDialog();
+                StringBuilder message = new StringBuilder()
+                        .append(imported.inserted).append(" items added\n")
+                        .append(imported.updated).append(" items updated\n")
+                        .append(imported.unchanged).append(" items unchanged\n")
+                        .append(imported.failed).append(" rows failed");
+                for (String error : errors) {
+                    message.append("\n").append(error);
+                }
+                new AlertDialog.Builder(SettingsActivity.this)
+                        .setTitle("Import finished")
+                        .setMessage(message)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show();
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable t) {
+                dismissProgressDialog();
+                if (result.isCancelled()) {
+                    Toast.makeText(getApplicationContext(), "Cancelled", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getApplicationContext(), "ERROR: " + t, Toast.LENGTH_LONG).show();
+                }
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void onBackupClicked() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("application/vnd.sqlite3");
+        intent.putExtra(Intent.EXTRA_TITLE, "shopping_list.db");
+        mBackupFileLauncher.launch(intent);
+    }
+
+    private void onBackupFileResult(ActivityResult result) {
+        Intent intent = result.getData();
+        Uri uri = (intent != null) ? intent.getData() : null;
+        if ((result.getResultCode() == RESULT_OK) && (uri != null)) {
+            backupToFile(uri);
+        } else if (result.getResultCode() == RESULT_CANCELED) {
+            Toast.makeText(this, "Cancelled", Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(this, "ERROR: Unexpected result " + result, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void backupToFile(@NonNull Uri fileUri) {
+        // Write a snapshot of the database to the file. This doesn't block the writes of the
+        // app (see ChecklistBackup), so MainActivity's ViewModel doesn't have to wait for it.
+        ListenableFuture<ChecklistBackup.Stats> result = mListeningExecutor.submit(() -> {
+            // Exceptions will be caught by ListenableFuture.
+            try (OutputStream out = getContentResolver().openOutputStream(fileUri)) {
+                if (out == null) {
+                    throw new IOException("Failed to open " + fileUri);
+                }
+                return new ChecklistBackup(getApplicationContext()).createSnapshot(out);
+            }
+        });
+        showIndeterminateProgressDialog("Backing up\u2026");
+        Futures.addCallback(result, new FutureCallback<ChecklistBackup.Stats>() {
+            @Override
+            public void onSuccess(ChecklistBackup.Stats stats) {
+                dismissProgressDialog();
+                Toast.makeText(getApplicationContext(), "Backup written: " + stats, Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable t) {
+                dismissProgressDialog();
                 Toast.makeText(getApplicationContext(), "ERROR: " + t, Toast.LENGTH_LONG).show();
             }
         }, ContextCompat.getMainExecutor(this));
     }
 
+    private void onRestoreClicked() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        // Backups don't have a reliable MIME type.
+        intent.setType("*/*");
+        mRestoreFileLauncher.launch(intent);
+    }
+
+    private void onRestoreFileResult(ActivityResult result) {
+        Intent intent = result.getData();
+        Uri uri = (intent != null) ? intent.getData() : null;
+        if ((result.getResultCode() == RESULT_OK) && (uri != null)) {
+            new AlertDialog.Builder(this)
+                    .setTitle("Restore database")
+                    .setMessage("All checklists will be replaced by the backup.")
+                    .setPositiveButton(android.R.string.ok,
+                            (dialog, which) -> restoreFromFile(uri))
+                    .setNegativeButton(R.string.dialog_cancel, null)
+                    .show();
+        } else if (result.getResultCode() == RESULT_CANCELED) {
+            Toast.makeText(this, "Cancelled", Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(this, "ERROR: Unexpected result " + result, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void restoreFromFile(@NonNull Uri fileUri) {
+        // Replace the database with the backup. The database is reopened, so the app is
+        // restarted afterwards (without restarting the process) to recreate all ViewModels,
+        // which still refer to the previous database. Until then, their writes (including the
+        // trash purge) fail, see ChecklistRepository.replaceDatabase().
+        ListenableFuture<ChecklistBackup.Stats> result = mListeningExecutor.submit(() -> {
+            // Exceptions will be caught by ListenableFuture.
+            try (InputStream in = getContentResolver().openInputStream(fileUri)) {
+                if (in == null) {
+                    throw new IOException("Failed to open " + fileUri);
+                }
+                return new ChecklistBackup(getApplicationContext()).restore(in);
+            }
+        });
+        showIndeterminateProgressDialog("Restoring\u2026");
+        Futures.addCallback(result, new FutureCallback<ChecklistBackup.Stats>() {
+            @Override
+            public void onSuccess(ChecklistBackup.Stats stats) {
+                dismissProgressDialog();
+                Toast.makeText(getApplicationContext(), "Backup restored: " + stats, Toast.LENGTH_LONG).show();
+                Intent intent = new Intent(getApplicationContext(), MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                startActivity(intent);
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable t) {
+                dismissProgressDialog();
+                Toast.makeText(getApplicationContext(), "ERROR: " + t, Toast.LENGTH_LONG).show();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void showIndeterminateProgressDialog(@NonNull String title) {
+        ProgressBar progressBar = new ProgressBar(
+                this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        int padding = getResources().getDimensionPixelSize(R.dimen.export_progress_padding);
+        progressBar.setPadding(padding, padding, padding, 0);
+        mProgressDialog = new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setView(progressBar)
+                .setCancelable(false)
+                .show();
+    }
+
+    private void dismissProgressDialog() {
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+    }
+
     private void setupActionBar() {
         setSupportActionBar(mBinding.settingsToolbar);
         ActionBar actionBar = getSupportActionBar();
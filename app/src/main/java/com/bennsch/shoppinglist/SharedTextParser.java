@@ -0,0 +1,33 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+public class SharedTextParser {
+    /*
+     *  Splits text shared with the app (e.g. a recipe or a list copied from a message) into item
+     *  names: one item per line, without list markers such as "- ", "* ", "1. " or "[ ] ".
+     */
+
+    // Bullets, numbering and checkboxes at the beginning of a line.
+    private static final Pattern LIST_MARKER = Pattern.compile(
+            "^\\s*(?:[-*+\u2022\u00B7\u2013]\\s*|\\d{1,3}[.)]\\s+|\\[[ xX]?]\\s*)+");
+
+    @NonNull
+    public static List<String> parse(@NonNull CharSequence text) {
+        // Return the item names in the order they appear in "text". Empty lines are skipped, names
+        // may still contain duplicates and surrounding whitespace (see MainViewModel.insertItems()).
+        List<String> names = new ArrayList<>();
+        for (String line : text.toString().split("\\R")) {
+            String name = LIST_MARKER.matcher(line).replaceFirst("");
+            if (!name.trim().isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+}
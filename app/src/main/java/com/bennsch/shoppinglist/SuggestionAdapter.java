@@ -0,0 +1,152 @@
+package com.bennsch.shoppinglist;
+
+import android.content.Context;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+public class SuggestionAdapter extends BaseAdapter implements Filterable {
+    /*
+     *  Adapter for the autocomplete suggestions of the item name box (AutoCompleteTextView).
+     *
+     *  Unlike ArrayAdapter, which scans all of its items on every keystroke, the suggestions are
+     *  queried from a SuggestionIndex (by the Filter's background thread). Only the best ranked
+     *  MAX_SUGGESTIONS are displayed: the items of the current checklist first, followed by items
+     *  from the catalog (i.e. from any checklist, including deleted items).
+     */
+
+    public interface Catalog {
+        // Blocking, called on the Filter's background thread.
+        @NonNull
+        List<String> search(@NonNull String prefix, int limit);
+    }
+
+    private static final int MAX_SUGGESTIONS = 50;
+
+    private final LayoutInflater mInflater;
+    private final Catalog mCatalog;
+    private final SuggestionFilter mFilter = new SuggestionFilter();
+    // Accessed from the Filter's background thread.
+    private volatile SuggestionIndex mIndex = null;
+    private List<String> mSuggestions = new ArrayList<>();
+    private CharSequence mLastConstraint = null;
+    private Float mFontSizePx = null;
+
+
+    public SuggestionAdapter(@NonNull Context context, @NonNull Catalog catalog) {
+        mInflater = LayoutInflater.from(context);
+        mCatalog = catalog;
+    }
+
+    public void setIndex(@Nullable SuggestionIndex index) {
+        // Set the index to query the suggestions from. The index is also set again whenever it
+        // has been updated, in which case the current suggestions are queried again.
+        mIndex = index;
+        if (index == null) {
+            mSuggestions = new ArrayList<>();
+            notifyDataSetInvalidated();
+        } else if (mLastConstraint != null) {
+            mFilter.filter(mLastConstraint);
+        }
+    }
+
+    public void setFontSize(float fontSizePx) {
+        // Make the text size slightly smaller compared to the list items.
+        mFontSizePx = fontSizePx * 0.85f;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mSuggestions.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return mSuggestions.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) convertView;
+        if (view == null) {
+            view = (TextView) mInflater.inflate(R.layout.item_name_box_suggestion, parent, false);
+        }
+        view.setText(getItem(position));
+        if (mFontSizePx != null) {
+            view.setTextSize(TypedValue.COMPLEX_UNIT_PX, mFontSizePx);
+        }
+        return view;
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return mFilter;
+    }
+
+    private class SuggestionFilter extends Filter {
+
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            // Runs on a background thread.
+            FilterResults results = new FilterResults();
+            SuggestionIndex index = mIndex;
+            String prefix = (constraint == null) ? "" : constraint.toString();
+            List<String> suggestions = new ArrayList<>();
+            if (index != null) {
+                suggestions.addAll(index.query(prefix, MAX_SUGGESTIONS));
+                if (suggestions.size() < MAX_SUGGESTIONS) {
+                    // Fill up with names from the catalog, unless they are already suggested.
+                    Set<String> normalizedNames = new HashSet<>();
+                    for (String name : suggestions) {
+                        normalizedNames.add(DbChecklistItem.normalizeName(name));
+                    }
+                    for (String name : mCatalog.search(prefix, MAX_SUGGESTIONS)) {
+                        if (suggestions.size() >= MAX_SUGGESTIONS) {
+                            break;
+                        } else if (normalizedNames.add(DbChecklistItem.normalizeName(name))) {
+                            suggestions.add(name);
+                        }
+                    }
+                }
+            }
+            results.values = suggestions;
+            results.count = suggestions.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            mLastConstraint = constraint;
+            mSuggestions = (List<String>) results.values;
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+    }
+}
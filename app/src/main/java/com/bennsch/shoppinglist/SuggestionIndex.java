@@ -0,0 +1,299 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+import com.bennsch.shoppinglist.datamodel.DbItemSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+public class SuggestionIndex {
+    /*
+     *  Autocomplete suggestions for the items of a single checklist.
+     *
+     *  Every item is indexed by the (normalized) suffixes of its name that start at a word, so
+     *  that "ju" and "orange ju" both match "Orange juice". A query is a range lookup in a sorted
+     *  map, instead of a scan over all names. Matches are ranked by incidence (most frequently
+     *  used first), then by recency (items whose incidence changed last, or were added last).
+     *
+     *  If only few items match a prefix, the suggestions are completed by items with a similar
+     *  name (to tolerate typos, e.g. "tomatos" or "yoghurt"). Candidates are the items that share
+     *  enough trigrams (i.e. 3 consecutive characters) with the input, which are then scored by
+     *  their edit distance (see EditDistance). The same is used to find an existing item that
+     *  was probably meant when inserting a new one (see findSimilar()).
+     *
+     *  The index is updated incrementally (see update()): only items that have been added,
+     *  renamed, used or deleted since the last update are touched.
+     *
+     *  Thread-safe: updates are done on a background thread, queries are run by the Filter of the
+     *  AutoCompleteTextView's adapter (also on a background thread).
+     */
+
+    private static class Entry {
+        final int itemId;
+        String name;
+        String normalizedName;
+        List<String> tokens;
+        Set<String> trigrams;
+        long incidence;
+        // Larger is more recent.
+        long lastUsed;
+
+        Entry(int itemId) {
+            this.itemId = itemId;
+        }
+    }
+
+    // Most frequently used first, then most recently used.
+    private static final Comparator<Entry> RANKING = (a, b) -> {
+        if (a.incidence != b.incidence) {
+            return Long.compare(b.incidence, a.incidence);
+        } else if (a.lastUsed != b.lastUsed) {
+            return Long.compare(b.lastUsed, a.lastUsed);
+        } else {
+            return Integer.compare(b.itemId, a.itemId);
+        }
+    };
+
+    // Fuzzy matching is only used for inputs of at least this length, since shorter inputs are
+    // similar to almost anything.
+    private static final int FUZZY_MIN_LENGTH = 3;
+
+    private final Map<Integer, Entry> mEntries = new HashMap<>();
+    // Token (i.e. normalized name suffix) -> entries containing it.
+    private final NavigableMap<String, List<Entry>> mTokens = new TreeMap<>();
+    // Trigram -> entries containing it.
+    private final Map<String, List<Entry>> mTrigrams = new HashMap<>();
+    // Incremented whenever an entry is used, see Entry.lastUsed.
+    private long mClock = 0;
+
+
+    public synchronized void update(@NonNull Collection<DbItemSummary> items) {
+        // Update the index to contain exactly "items".
+        Set<Integer> itemIds = new HashSet<>(items.size() * 2);
+        boolean isFirstUpdate = mEntries.isEmpty();
+        for (DbItemSummary item : items) {
+            itemIds.add(item.getItemId());
+            Entry entry = mEntries.get(item.getItemId());
+            if (entry == null) {
+                entry = new Entry(item.getItemId());
+                entry.incidence = item.getIncidence();
+                // Items added later (i.e. with a larger itemId) are more recent. Before the
+                // first update, all items are equally old.
+                entry.lastUsed = isFirstUpdate ? 0 : ++mClock;
+                mEntries.put(entry.itemId, entry);
+                setName(entry, item.getName());
+            } else {
+                if (!entry.name.equals(item.getName())) {
+                    removeTokens(entry);
+                    setName(entry, item.getName());
+                }
+                if (entry.incidence != item.getIncidence()) {
+                    entry.incidence = item.getIncidence();
+                    entry.lastUsed = ++mClock;
+                }
+            }
+        }
+        if (mEntries.size() > itemIds.size()) {
+            // Some items have been deleted.
+            List<Entry> deleted = new ArrayList<>();
+            for (Entry entry : mEntries.values()) {
+                if (!itemIds.contains(entry.itemId)) {
+                    deleted.add(entry);
+                }
+            }
+            for (Entry entry : deleted) {
+                removeTokens(entry);
+                mEntries.remove(entry.itemId);
+            }
+        }
+    }
+
+    @NonNull
+    public synchronized List<String> query(@NonNull CharSequence prefix, int limit) {
+        // Return the names of the (at most "limit") best ranked items matching "prefix".
+        String normalizedPrefix = DbChecklistItem.normalizeName(prefix.toString());
+        List<Entry> ranked;
+        // An item can match several of its tokens, but must only be suggested once.
+        Map<Entry, Boolean> matches = new IdentityHashMap<>();
+        if (normalizedPrefix.isEmpty()) {
+            // Everything matches (same as the default Filter of ArrayAdapter).
+            ranked = new ArrayList<>(mEntries.values());
+        } else {
+            for (List<Entry> entries : mTokens.subMap(
+                    normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, true).values()) {
+                for (Entry entry : entries) {
+                    matches.put(entry, true);
+                }
+            }
+            ranked = new ArrayList<>(matches.keySet());
+        }
+        ranked.sort(RANKING);
+        List<String> names = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; (i < ranked.size()) && (i < limit); i++) {
+            names.add(ranked.get(i).name);
+        }
+        if ((names.size() < limit) && (normalizedPrefix.length() >= FUZZY_MIN_LENGTH)) {
+            // The input is probably not complete yet, so it's compared to the beginning of the
+            // names only.
+            for (Entry entry : findFuzzy(normalizedPrefix, true)) {
+                if (names.size() >= limit) {
+                    break;
+                } else if (!matches.containsKey(entry)) {
+                    names.add(entry.name);
+                }
+            }
+        }
+        return names;
+    }
+
+    @Nullable
+    public synchronized String findSimilar(@NonNull String name) {
+        // Return the name of the item that was probably meant by "name" (i.e. the most similar
+        // one), or null if there is no similar item, or if an item named "name" exists.
+        String normalizedName = DbChecklistItem.normalizeName(name);
+        if (normalizedName.length() < FUZZY_MIN_LENGTH) {
+            return null;
+        }
+        List<Entry> matches = findFuzzy(normalizedName, false);
+        if (matches.isEmpty() || matches.get(0).normalizedName.equals(normalizedName)) {
+            return null;
+        } else {
+            return matches.get(0).name;
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    @NonNull
+    private List<Entry> findFuzzy(@NonNull String normalizedInput, boolean isPrefix) {
+        // Return the entries whose (normalized) name is within the maximum edit distance of
+        // "normalizedInput", the most similar first. If "isPrefix", the input is compared to the
+        // beginning of the names only.
+        int maxDistance = EditDistance.maxDistance(normalizedInput.length());
+        // Candidates: a single typo changes at most 3 trigrams, so an entry within "maxDistance"
+        // must share (almost) all other trigrams with the input. Only those are scored.
+        Set<String> inputTrigrams = trigrams(normalizedInput, isPrefix);
+        int minShared = Math.max(1, inputTrigrams.size() - 3 * maxDistance);
+        Map<Entry, Integer> shared = new IdentityHashMap<>();
+        for (String trigram : inputTrigrams) {
+            List<Entry> entries = mTrigrams.get(trigram);
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    Integer count = shared.get(entry);
+                    shared.put(entry, (count == null) ? 1 : (count + 1));
+                }
+            }
+        }
+        List<Entry> matches = new ArrayList<>();
+        Map<Entry, Integer> distances = new IdentityHashMap<>();
+        for (Map.Entry<Entry, Integer> candidate : shared.entrySet()) {
+            if (candidate.getValue() < minShared) {
+                continue;
+            }
+            Entry entry = candidate.getKey();
+            int distance = isPrefix ?
+                    EditDistance.prefixDistance(normalizedInput, entry.normalizedName, maxDistance) :
+                    EditDistance.distance(normalizedInput, entry.normalizedName, maxDistance);
+            if (distance <= maxDistance) {
+                matches.add(entry);
+                distances.put(entry, distance);
+            }
+        }
+        matches.sort((a, b) -> {
+            int result = Integer.compare(distances.get(a), distances.get(b));
+            return (result != 0) ? result : RANKING.compare(a, b);
+        });
+        return matches;
+    }
+
+    private void setName(@NonNull Entry entry, @NonNull String name) {
+        entry.name = name;
+        entry.normalizedName = DbChecklistItem.normalizeName(name);
+        entry.tokens = tokenize(entry.normalizedName);
+        for (String token : entry.tokens) {
+            add(mTokens, token, entry);
+        }
+        entry.trigrams = trigrams(entry.normalizedName, false);
+        for (String trigram : entry.trigrams) {
+            add(mTrigrams, trigram, entry);
+        }
+    }
+
+    private void removeTokens(@NonNull Entry entry) {
+        for (String token : entry.tokens) {
+            remove(mTokens, token, entry);
+        }
+        for (String trigram : entry.trigrams) {
+            remove(mTrigrams, trigram, entry);
+        }
+    }
+
+    private static void add(@NonNull Map<String, List<Entry>> map,
+                            @NonNull String key,
+                            @NonNull Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            map.put(key, entries);
+        }
+        entries.add(entry);
+    }
+
+    private static void remove(@NonNull Map<String, List<Entry>> map,
+                               @NonNull String key,
+                               @NonNull Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    @NonNull
+    private static Set<String> trigrams(@NonNull String normalizedName, boolean isPrefix) {
+        // The trigrams of each word, padded with two spaces at the beginning and one at the end
+        // (so that the first letters and short words are weighted as well). If "isPrefix", the
+        // end of the last word isn't padded, since the word might not be complete yet.
+        Set<String> trigrams = new HashSet<>();
+        String[] words = normalizedName.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            boolean padEnd = !isPrefix || (i < words.length - 1);
+            String padded = "  " + words[i] + (padEnd ? " " : "");
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                trigrams.add(padded.substring(j, j + 3));
+            }
+        }
+        return trigrams;
+    }
+
+    @NonNull
+    private static List<String> tokenize(@NonNull String normalizedName) {
+        // All suffixes of the name that start at a word (words are separated by single spaces,
+        // see DbChecklistItem.normalizeName()).
+        List<String> tokens = new ArrayList<>();
+        tokens.add(normalizedName);
+        int space = normalizedName.indexOf(' ');
+        while (space >= 0) {
+            tokens.add(normalizedName.substring(space + 1));
+            space = normalizedName.indexOf(' ', space + 1);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,315 @@
+package com.bennsch.shoppinglist;
+
+import android.database.sqlite.SQLiteDatabaseCorruptException;
+import android.database.sqlite.SQLiteDatabaseLockedException;
+import android.database.sqlite.SQLiteDiskIOException;
+import android.database.sqlite.SQLiteFullException;
+import android.database.sqlite.SQLiteOutOfMemoryException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+public class WritePipeline {
+    /*
+     *  Collects database write operations and executes them in batches.
+     *
+     *  Operations are queued and executed after a short window (BATCH_WINDOW_MS), so that quick
+     *  user inputs (e.g. tapping through a list) end up in the same batch. Each batch is executed
+     *  as a single database transaction, so the LiveData observers are only notified once per
+     *  batch (instead of once per operation).
+     *
+     *  Operations can have a "key" to be merged with a pending operation with the same key (e.g.
+     *  two flips of the same item cancel each other out). Operations without a key act as a
+     *  barrier, i.e. keyed operations are never merged across them, since they might depend on
+     *  each other.
+     *
+     *  All batches are executed on the same single-threaded executor, so the operations are
+     *  executed in the order they have been queued.
+     *
+     *  An operation that fails must not leave any of its writes behind (e.g. the first of two
+     *  statements), so the whole transaction is rolled back and the batch is executed again
+     *  without the failed operation. Errors after which SQLite may have rolled back the
+     *  transaction by itself (e.g. disk full) fail the whole batch instead.
+     */
+
+    public interface TransactionRunner {
+        // Execute "body" inside a single database transaction.
+        void runInTransaction(@NonNull Runnable body);
+    }
+
+    public enum Merge {
+        // Two operations with the same key cancel each other out (none of them is executed).
+        CANCEL,
+        // The newer operation replaces the older operation.
+        REPLACE
+    }
+
+    public static class Metrics {
+        /*
+         *  Snapshot of the pipeline's statistics.
+         */
+
+        // Number of operations waiting to be executed.
+        public final int queueDepth;
+        // Largest queue depth so far.
+        public final int maxQueueDepth;
+        // Number of batches executed so far.
+        public final long batchCount;
+        // Number of operations executed so far.
+        public final long executedCount;
+        // Number of operations that have been merged away (i.e. never executed).
+        public final long mergedCount;
+        // Number of operations in the last and the largest batch.
+        public final int lastBatchSize;
+        public final int maxBatchSize;
+
+        private Metrics(int queueDepth, int maxQueueDepth, long batchCount, long executedCount,
+                        long mergedCount, int lastBatchSize, int maxBatchSize) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.batchCount = batchCount;
+            this.executedCount = executedCount;
+            this.mergedCount = mergedCount;
+            this.lastBatchSize = lastBatchSize;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "queueDepth=" + queueDepth + " (max " + maxQueueDepth + "), " +
+                    "batches=" + batchCount + ", executed=" + executedCount + ", " +
+                    "merged=" + mergedCount + ", batchSize=" + lastBatchSize +
+                    " (max " + maxBatchSize + ")";
+        }
+    }
+
+    private static class Operation {
+        // Null if the operation cannot be merged.
+        @Nullable final String key;
+        @Nullable final Merge merge;
+        @NonNull final Callable<?> task;
+        @NonNull final SettableFuture<Object> result;
+        // True, if a failure should be logged (i.e. the caller doesn't handle it).
+        final boolean logFailure;
+        @Nullable Object value;
+        @Nullable Exception exception;
+
+        Operation(@Nullable String key, @Nullable Merge merge, @NonNull Callable<?> task,
+                  @NonNull SettableFuture<Object> result, boolean logFailure) {
+            this.key = key;
+            this.merge = merge;
+            this.task = task;
+            this.result = result;
+            this.logFailure = logFailure;
+        }
+    }
+
+    private static class OperationFailedException extends RuntimeException {
+        // Thrown to roll back the transaction of a batch if one of its operations has failed.
+    }
+
+    private static final String TAG = "WritePipeline";
+    // How long to wait for more operations before a batch is executed.
+    private static final long BATCH_WINDOW_MS = 20;
+
+    private final ScheduledExecutorService mExecutor;
+    private final TransactionRunner mTransactionRunner;
+    private final Object mLock = new Object();
+
+    // Guarded by mLock:
+    private List<Operation> mPending = new ArrayList<>();
+    private boolean mDrainScheduled = false;
+    private int mMaxQueueDepth = 0;
+    private long mBatchCount = 0;
+    private long mExecutedCount = 0;
+    private long mMergedCount = 0;
+    private int mLastBatchSize = 0;
+    private int mMaxBatchSize = 0;
+
+
+    public WritePipeline(@NonNull ScheduledExecutorService executor,
+                         @NonNull TransactionRunner transactionRunner) {
+        // "executor" must be single-threaded, otherwise batches could be executed concurrently.
+        mExecutor = executor;
+        mTransactionRunner = transactionRunner;
+    }
+
+    @NonNull
+    public ListenableFuture<Void> execute(@NonNull Runnable task) {
+        // Queue an operation that cannot be merged. Failures are logged, the returned future
+        // can be ignored.
+        return execute(null, null, task);
+    }
+
+    @NonNull
+    public ListenableFuture<Void> execute(@Nullable String key, @Nullable Merge merge,
+                                          @NonNull Runnable task) {
+        // Queue an operation that can be merged with a pending operation with the same "key".
+        // If the operation is merged away, the returned future completes immediately.
+        return enqueue(new Operation(key, merge, () -> {
+            task.run();
+            return null;
+        }, SettableFuture.create(), true));
+    }
+
+    @NonNull
+    public <T> ListenableFuture<T> submit(@NonNull Callable<T> task) {
+        // Queue an operation that cannot be merged. The returned future completes (with the
+        // task's result or exception) once the batch has been committed.
+        return enqueue(new Operation(null, null, task, SettableFuture.create(), false));
+    }
+
+    @NonNull
+    public Metrics getMetrics() {
+        synchronized (mLock) {
+            return new Metrics(mPending.size(), mMaxQueueDepth, mBatchCount, mExecutedCount,
+                    mMergedCount, mLastBatchSize, mMaxBatchSize);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    private <T> ListenableFuture<T> enqueue(@NonNull Operation operation) {
+        // The result's type matches the type of the operation's task.
+        synchronized (mLock) {
+            if (!merge(operation)) {
+                mPending.add(operation);
+            }
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mPending.size());
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                mExecutor.schedule(this::drain, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return (ListenableFuture<T>) (ListenableFuture<?>) operation.result;
+    }
+
+    private boolean merge(@NonNull Operation operation) {
+        // Try to merge "operation" with a pending operation. Returns true if it has been merged.
+        // Must be called with mLock held.
+        if (operation.key == null) {
+            return false;
+        }
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            Operation pending = mPending.get(i);
+            if (pending.key == null) {
+                // Barrier: don't merge across operations that can't be merged.
+                return false;
+            } else if (pending.key.equals(operation.key)) {
+                // Operations that are merged away are completed immediately.
+                if (operation.merge == Merge.CANCEL) {
+                    mPending.remove(i);
+                    pending.result.set(null);
+                    operation.result.set(null);
+                    mMergedCount += 2;
+                } else {
+                    mPending.set(i, operation);
+                    pending.result.set(null);
+                    mMergedCount += 1;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain() {
+        // Execute all pending operations in a single transaction.
+        List<Operation> batch;
+        synchronized (mLock) {
+            batch = mPending;
+            mPending = new ArrayList<>();
+            mDrainScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            // All operations have been merged away.
+            return;
+        }
+        List<Operation> remaining = batch;
+        while (true) {
+            List<Operation> attempt = remaining;
+            try {
+                mTransactionRunner.runInTransaction(() -> {
+                    for (Operation operation : attempt) {
+                        try {
+                            operation.value = operation.task.call();
+                        } catch (Exception e) {
+                            if (isTransactionAborted(e)) {
+                                throw (e instanceof RuntimeException) ?
+                                        (RuntimeException) e : new RuntimeException(e);
+                            }
+                            // An operation's exception (e.g. invalid user input) only affects
+                            // the operation itself, but its writes must be rolled back.
+                            operation.exception = e;
+                            throw new OperationFailedException();
+                        }
+                    }
+                });
+                break;
+            } catch (OperationFailedException e) {
+                // Execute the batch again, without the failed operation.
+                remaining = new ArrayList<>();
+                for (Operation operation : attempt) {
+                    if (operation.exception == null) {
+                        remaining.add(operation);
+                    }
+                }
+                if (remaining.isEmpty()) {
+                    break;
+                }
+            } catch (Throwable t) {
+                // The whole transaction has been rolled back.
+                Log.e(TAG, "Batch of " + attempt.size() + " operations failed", t);
+                for (Operation operation : batch) {
+                    if (operation.exception == null) {
+                        operation.exception = (t instanceof Exception) ?
+                                (Exception) t : new RuntimeException(t);
+                    }
+                }
+                break;
+            }
+        }
+        // Complete the futures only after the transaction has been committed.
+        for (Operation operation : batch) {
+            if (operation.exception != null) {
+                if (operation.logFailure) {
+                    Log.e(TAG, "Operation failed", operation.exception);
+                }
+                operation.result.setException(operation.exception);
+            } else {
+                operation.result.set(operation.value);
+            }
+        }
+        synchronized (mLock) {
+            mBatchCount++;
+            mExecutedCount += batch.size();
+            mLastBatchSize = batch.size();
+            mMaxBatchSize = Math.max(mMaxBatchSize, batch.size());
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, getMetrics().toString());
+        }
+    }
+
+    private static boolean isTransactionAborted(@NonNull Exception e) {
+        // After these errors SQLite may have rolled back the transaction by itself, so the
+        // following operations must not be executed (they would run outside a transaction).
+        return (e instanceof SQLiteFullException) ||
+                (e instanceof SQLiteDiskIOException) ||
+                (e instanceof SQLiteDatabaseLockedException) ||
+                (e instanceof SQLiteOutOfMemoryException) ||
+                (e instanceof SQLiteDatabaseCorruptException);
+    }
+}
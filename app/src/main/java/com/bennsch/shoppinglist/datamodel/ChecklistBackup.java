@@ -0,0 +1,247 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+public class ChecklistBackup {
+    /*
+     *  Backup and restore of the complete database (unlike ChecklistExporter, nothing is lost).
+     *
+     *  A snapshot is created with "VACUUM INTO" on a separate, read-only connection: it's a
+     *  consistent and compacted copy of the database, and writes (which go through Room's
+     *  connection) are not blocked meanwhile. SQLite versions before 3.27 (Android < 11) don't
+     *  support "VACUUM INTO", then the database file is copied while holding the write lock.
+     *
+     *  Restoring validates the backup (integrity, schema version and Room's identity hash of that
+     *  version), swaps the database file and reopens the database. Room migrates older backups
+     *  on reopening. If that fails, the previous database file is put back in place.
+     *
+     *  Both are blocking and must not be done on the UI thread. The durations of the individual
+     *  steps are logged and returned (see Stats), to check how they scale with the database size.
+     */
+
+    public static class Stats {
+        public final long bytes;
+        // Creating (or validating) the snapshot.
+        public final long databaseMs;
+        // Copying the snapshot to (or from) the stream.
+        public final long copyMs;
+        // Swapping the file and reopening the database (restore only).
+        public final long reopenMs;
+
+        Stats(long bytes, long databaseMs, long copyMs, long reopenMs) {
+            this.bytes = bytes;
+            this.databaseMs = databaseMs;
+            this.copyMs = copyMs;
+            this.reopenMs = reopenMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return bytes + " bytes, database " + databaseMs + " ms, copy " + copyMs + " ms" +
+                    ", reopen " + reopenMs + " ms";
+        }
+    }
+
+    public static class InvalidBackupException extends IOException {
+        public InvalidBackupException(@NonNull String message) {
+            super(message);
+        }
+    }
+
+    private static final String TAG = "ChecklistBackup";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Room stores the identity hash of the schema in a single row of this table.
+    private static final String SQL_IDENTITY_HASH =
+            "SELECT identity_hash FROM room_master_table WHERE id = 42";
+    // Only used if "VACUUM INTO" isn't supported, see copyDatabaseFile().
+    private static final int MAX_COPY_ATTEMPTS = 5;
+
+    private final Context mContext;
+
+
+    public ChecklistBackup(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    public Stats createSnapshot(@NonNull OutputStream out) throws IOException {
+        // Write a snapshot of the database to "out" (which is not closed).
+        File databaseFile = ChecklistDatabase.getDatabaseFile(mContext);
+        File snapshot = new File(mContext.getCacheDir(), "checklist_snapshot.db");
+        try {
+            long start = SystemClock.elapsedRealtime();
+            // "VACUUM INTO" fails if the file exists (and isn't empty).
+            deleteFile(snapshot);
+            // Make sure the database has been created (and migrated) by Room.
+            ChecklistDatabase.getInstance(mContext).getOpenHelper().getWritableDatabase();
+            try (SQLiteDatabase source = SQLiteDatabase.openDatabase(
+                    databaseFile.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+                String sqliteVersion = DatabaseUtils.stringForQuery(
+                        source, "SELECT sqlite_version()", null);
+                if (supportsVacuumInto(sqliteVersion)) {
+                    source.execSQL("VACUUM INTO ?", new Object[]{snapshot.getPath()});
+                } else {
+                    copyDatabaseFile(databaseFile, snapshot);
+                }
+            }
+            long snapshotDone = SystemClock.elapsedRealtime();
+            try (InputStream in = new FileInputStream(snapshot)) {
+                copy(in, out);
+            }
+            out.flush();
+            Stats stats = new Stats(snapshot.length(), snapshotDone - start,
+                    SystemClock.elapsedRealtime() - snapshotDone, 0);
+            Log.i(TAG, "Snapshot created: " + stats);
+            return stats;
+        } finally {
+            deleteFile(snapshot);
+        }
+    }
+
+    @NonNull
+    public Stats restore(@NonNull InputStream in) throws IOException {
+        // Replace the database with the backup read from "in" (which is not closed). Throws
+        // InvalidBackupException if it's not a valid backup, the database is not modified then.
+        // Note: objects that were obtained from the previous database (DAOs, LiveData etc.) must
+        // not be used anymore, see ChecklistRepository.replaceDatabase().
+        File databaseFile = ChecklistDatabase.getDatabaseFile(mContext);
+        // In the same directory, so that it can be renamed (atomically) to the database file.
+        File restored = new File(databaseFile.getPath() + ".restore");
+        try {
+            long start = SystemClock.elapsedRealtime();
+            try (FileOutputStream out = new FileOutputStream(restored)) {
+                copy(in, out);
+                out.getFD().sync();
+            }
+            long copyDone = SystemClock.elapsedRealtime();
+            validate(restored);
+            long validateDone = SystemClock.elapsedRealtime();
+            ChecklistRepository.replaceDatabase(mContext, restored);
+            Stats stats = new Stats(databaseFile.length(), validateDone - copyDone,
+                    copyDone - start, SystemClock.elapsedRealtime() - validateDone);
+            Log.i(TAG, "Backup restored: " + stats);
+            return stats;
+        } finally {
+            deleteFile(restored);
+        }
+    }
+
+    private void validate(@NonNull File backup) throws IOException {
+        int version;
+        String identityHash;
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                backup.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            String check = DatabaseUtils.stringForQuery(db, "PRAGMA quick_check", null);
+            if (!"ok".equals(check)) {
+                throw new InvalidBackupException("Database is corrupt: " + check);
+            }
+            version = db.getVersion();
+            identityHash = DatabaseUtils.stringForQuery(db, SQL_IDENTITY_HASH, null);
+        } catch (SQLiteException e) {
+            // E.g. not a database at all, or not created by Room.
+            throw new InvalidBackupException("Not a backup: " + e.getMessage());
+        }
+        if ((version < 1) || (version > ChecklistDatabase.VERSION)) {
+            throw new InvalidBackupException("Unsupported version " + version);
+        }
+        String expectedHash = (version == ChecklistDatabase.VERSION) ?
+                ChecklistDatabase.getIdentityHash(mContext) :
+                readExportedIdentityHash(version);
+        if (!expectedHash.equals(identityHash)) {
+            throw new InvalidBackupException("Schema of version " + version + " doesn't match");
+        }
+    }
+
+    @NonNull
+    private String readExportedIdentityHash(int version) throws IOException {
+        // The schemas exported by Room are packaged as assets (see build.gradle). Every version
+        // must have been exported, otherwise the backup cannot be validated.
+        String path = ChecklistDatabase.class.getName() + "/" + version + ".json";
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (InputStream in = mContext.getAssets().open(path)) {
+            copy(in, json);
+        } catch (IOException e) {
+            throw new IOException("Missing schema " + path, e);
+        }
+        try {
+            return new JSONObject(json.toString("UTF-8"))
+                    .getJSONObject("database")
+                    .getString("identityHash");
+        } catch (JSONException e) {
+            throw new IOException("Invalid schema " + path, e);
+        }
+    }
+
+    private void copyDatabaseFile(@NonNull File databaseFile,
+                                  @NonNull File snapshot) throws IOException {
+        // Copy the database file while no other connection can write to it. The WAL must be
+        // empty (i.e. checkpointed), otherwise the file doesn't contain the latest writes.
+        ChecklistDatabase database = ChecklistDatabase.getInstance(mContext);
+        File walFile = new File(databaseFile.getPath() + "-wal");
+        for (int attempt = 0; attempt < MAX_COPY_ATTEMPTS; attempt++) {
+            database.query("PRAGMA wal_checkpoint(TRUNCATE)", null).close();
+            boolean copied = database.runInTransaction(() -> {
+                if (walFile.length() > 0) {
+                    // Written between the checkpoint and the transaction, try again.
+                    return false;
+                }
+                try (InputStream in = new FileInputStream(databaseFile);
+                     OutputStream out = new FileOutputStream(snapshot)) {
+                    copy(in, out);
+                }
+                return true;
+            });
+            if (copied) {
+                return;
+            }
+        }
+        throw new IOException("Database is busy");
+    }
+
+    static boolean supportsVacuumInto(@NonNull String sqliteVersion) {
+        // "VACUUM INTO" requires SQLite 3.27.0 or newer.
+        String[] parts = sqliteVersion.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = (parts.length > 1) ? Integer.parseInt(parts[1]) : 0;
+            return (major > 3) || ((major == 3) && (minor >= 27));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void copy(@NonNull InputStream in, @NonNull OutputStream out)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+    }
+
+    private static void deleteFile(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete " + file);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+class ChecklistChangeTracker {
+    /*
+     *  Keeps a version number for the items of every checklist, which is incremented whenever
+     *  the items of that checklist are modified (as opposed to Room's InvalidationTracker,
+     *  which only knows that "some" item has changed).
+     *
+     *  ChecklistRepository reports every modification via markChanged(). Modifications made
+     *  inside a transaction (see beginTransaction()) are only published once the transaction has
+     *  been committed, and discarded if it has been rolled back.
+     *
+     *  If the modifications are reported in detail (see markChanged(int, ItemChangeSet.Change)),
+     *  the resulting ItemChangeSet is kept along with the new version (see getChanges()).
+     *
+     *  Observers are called on the thread that published the change, and must not block.
+     */
+
+    private final Object mLock = new Object();
+    // Guarded by mLock:
+    private final Map<Integer, Long> mVersions = new HashMap<>();
+    private final Map<Integer, Set<Runnable>> mObservers = new HashMap<>();
+    // The changes that led to the current version of a checklist (if they are known).
+    private final Map<Integer, ItemChangeSet> mLastChanges = new HashMap<>();
+    // Incremented if all checklists have changed. It's part of every checklist's version, so
+    // that checklists which aren't tracked yet are covered as well.
+    private long mGlobalVersion = 0;
+    // Set if the current thread's transaction has modified all checklists.
+    private final ThreadLocal<Boolean> mPendingAllChanged = new ThreadLocal<>();
+    // Checklists modified by the current thread's transaction (null if not in a transaction),
+    // with their changes in detail (null if not known).
+    private final ThreadLocal<Map<Integer, List<ItemChangeSet.Change>>> mPendingChanges =
+            new ThreadLocal<>();
+
+
+    public long getVersion(int listId) {
+        synchronized (mLock) {
+            Long version = mVersions.get(listId);
+            return ((version != null) ? version : 0) + mGlobalVersion;
+        }
+    }
+
+    @Nullable
+    public ItemChangeSet getChanges(int listId, long fromVersion, long toVersion) {
+        // Return the changes that turned version "fromVersion" of the checklist into
+        // "toVersion", or null if they are not known (e.g. because the versions aren't
+        // consecutive, or the changes haven't been reported in detail).
+        synchronized (mLock) {
+            ItemChangeSet last = mLastChanges.get(listId);
+            if ((last != null) && (last.getVersion() == toVersion) &&
+                    (fromVersion + 1 == toVersion)) {
+                return last;
+            }
+            return null;
+        }
+    }
+
+    public void addObserver(int listId, @NonNull Runnable observer) {
+        synchronized (mLock) {
+            Set<Runnable> observers = mObservers.get(listId);
+            if (observers == null) {
+                observers = new HashSet<>();
+                mObservers.put(listId, observers);
+            }
+            observers.add(observer);
+        }
+    }
+
+    public void removeObserver(int listId, @NonNull Runnable observer) {
+        synchronized (mLock) {
+            Set<Runnable> observers = mObservers.get(listId);
+            if (observers != null) {
+                observers.remove(observer);
+                if (observers.isEmpty()) {
+                    mObservers.remove(listId);
+                }
+            }
+        }
+    }
+
+    public boolean beginTransaction() {
+        // Returns false if the current thread is already in a transaction (i.e. the changes will
+        // be published by the outer transaction).
+        if (mPendingChanges.get() != null) {
+            return false;
+        }
+        mPendingChanges.set(new LinkedHashMap<>());
+        return true;
+    }
+
+    public void endTransaction(boolean committed) {
+        Map<Integer, List<ItemChangeSet.Change>> changes = mPendingChanges.get();
+        assert changes != null: "endTransaction() without beginTransaction()";
+        boolean allChanged = Boolean.TRUE.equals(mPendingAllChanged.get());
+        mPendingChanges.remove();
+        mPendingAllChanged.remove();
+        if (committed) {
+            publish(changes, allChanged);
+        }
+    }
+
+    public void markChanged(int listId) {
+        // The items of checklist "listId" have been modified (in an unknown way).
+        Map<Integer, List<ItemChangeSet.Change>> changes = mPendingChanges.get();
+        if (changes != null) {
+            changes.put(listId, null);
+        } else {
+            Map<Integer, List<ItemChangeSet.Change>> change = new HashMap<>();
+            change.put(listId, null);
+            publish(change, false);
+        }
+    }
+
+    public void markChanged(int listId, @NonNull ItemChangeSet.Change change) {
+        // Same as markChanged(int), but the modification is known in detail.
+        Map<Integer, List<ItemChangeSet.Change>> changes = mPendingChanges.get();
+        boolean inTransaction = (changes != null);
+        if (!inTransaction) {
+            changes = new HashMap<>();
+        }
+        if (!changes.containsKey(listId)) {
+            changes.put(listId, new ArrayList<>());
+        }
+        List<ItemChangeSet.Change> listChanges = changes.get(listId);
+        if (listChanges != null) {
+            // Otherwise, the checklist has already been modified in an unknown way.
+            listChanges.add(change);
+        }
+        if (!inTransaction) {
+            publish(changes, false);
+        }
+    }
+
+    public void markAllChanged() {
+        // The items of any checklist may have been modified (e.g. the whole database has been
+        // replaced).
+        if (mPendingChanges.get() != null) {
+            mPendingAllChanged.set(true);
+        } else {
+            publish(new HashMap<>(), true);
+        }
+    }
+
+    private void publish(@NonNull Map<Integer, List<ItemChangeSet.Change>> changes,
+                         boolean allChanged) {
+        List<Runnable> observers = new ArrayList<>();
+        synchronized (mLock) {
+            if (allChanged) {
+                mGlobalVersion++;
+                mLastChanges.clear();
+                for (Set<Runnable> listObservers : mObservers.values()) {
+                    observers.addAll(listObservers);
+                }
+            } else {
+                for (Map.Entry<Integer, List<ItemChangeSet.Change>> entry : changes.entrySet()) {
+                    int listId = entry.getKey();
+                    Long version = mVersions.get(listId);
+                    mVersions.put(listId, ((version != null) ? version : 0) + 1);
+                    if (entry.getValue() != null) {
+                        mLastChanges.put(listId,
+                                new ItemChangeSet(entry.getValue(), getVersion(listId)));
+                    } else {
+                        mLastChanges.remove(listId);
+                    }
+                    Set<Runnable> listObservers = mObservers.get(listId);
+                    if (listObservers != null) {
+                        observers.addAll(listObservers);
+                    }
+                }
+            }
+        }
+        // Call the observers without holding the lock, they might query the versions.
+        for (Runnable observer : observers) {
+            observer.run();
+        }
+    }
+}
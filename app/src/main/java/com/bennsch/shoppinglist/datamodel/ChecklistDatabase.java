@@ -1,31 +1,39 @@
 package com.bennsch.shoppinglist.datamodel;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Database;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
-import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.bennsch.shoppinglist.R;
+import com.bennsch.shoppinglist.sql.CatalogSql;
+import com.bennsch.shoppinglist.sql.ItemDaoSql;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 
 @Database(
-        entities = {DbChecklist.class, DbChecklistItem.class},
-        version = 1,
+        entities = {DbChecklist.class, DbChecklistItem.class, DbActiveChecklist.class,
+                DbCatalogItem.class, DbCatalogItemFts.class, DbTemplateItem.class},
+        version = ChecklistDatabase.VERSION,
         autoMigrations = {/* @AutoMigration(from = 1, to = 2) */}
         /*exportSchema = false*/ )
 public abstract class ChecklistDatabase extends RoomDatabase {
@@ -41,13 +49,23 @@ public abstract class ChecklistDatabase extends RoomDatabase {
          *  method. Annotations (@Insert, @Update etc..) will generate common SQL queries. For
          *  methods which return LiveData, Room will generate all the necessary code to update
          *  LiveData if the database is updated.
+         *
+         *  The SQL of the queries is defined in ItemDaoSql (module ":sql"), which is shared with
+         *  the query plan test and the benchmarks. New queries must be added there as well.
+         *
+         *  Note: Items are not queried as LiveData here, because Room would re-run those queries
+         *  whenever ANY item changes. ChecklistRepository wraps the item queries in
+         *  ChecklistLiveData instead, which only updates if the item's own checklist changes.
          */
 
         @Insert
-        void insert(DbChecklist checklist);
+        long insert(DbChecklist checklist); // Returns the "listId" of the new checklist.
 
         @Insert
-        void insert(DbChecklistItem item);
+        long insert(DbChecklistItem item); // Returns the "itemId" of the new item.
+
+        @Insert
+        List<Long> insert(List<DbChecklistItem> items); // Returns the "itemId"s of the new items.
 
         @Delete
         void delete(DbChecklistItem item);
@@ -55,80 +73,418 @@ public abstract class ChecklistDatabase extends RoomDatabase {
         @Update
         void update(List<DbChecklistItem> items);
 
-        @Query("UPDATE Dbchecklist SET listTitle = :newChecklistName WHERE listTitle LIKE :listTitle")
-        void update(String listTitle, String newChecklistName);
+        @Update
+        void update(DbChecklistItem item);
+
+        @Query(ItemDaoSql.RENAME_CHECKLIST)
+        void update(int listId, String newListTitle);
+
+        @Query(ItemDaoSql.DELETE_CHECKLIST)
+        void delete(int listId);
 
-        @Query("DELETE FROM dbchecklist WHERE listTitle LIKE :checklistTitle")
-        void delete(String checklistTitle);
+        // Moving a checklist to the trash only modifies its own row.
+        @Query(ItemDaoSql.TRASH_CHECKLIST)
+        void trash(int listId, long trashedAt);
 
-        @Query("UPDATE DbChecklist SET active = 1 WHERE listTitle LIKE :listTitle")
-        void setChecklistActive(String listTitle);
+        // Not restored if another checklist with the same title exists (the title must be
+        // unique among the checklists that are not trashed). Returns the number of restored rows.
+        @Query(ItemDaoSql.RESTORE_CHECKLIST)
+        int restore(int listId);
 
-        @Query("UPDATE DbChecklist SET active = 0")
-        void setAllChecklistsInactive();
+        // Backed by the index on "trashedAt".
+        @Query(ItemDaoSql.GET_EXPIRED_TRASH)
+        List<Integer> getExpiredTrash(long trashedBefore, int limit);
 
-        @Query("SELECT * FROM DbChecklistItem")
+        // Delete at most "limit" items of the checklists, to keep the transaction short.
+        @Query(ItemDaoSql.DELETE_ITEMS)
+        int deleteItems(List<Integer> listIds, int limit);
+
+        // The checklists' templates are deleted as well (see ForeignKey in DbTemplateItem).
+        @Query(ItemDaoSql.DELETE_CHECKLISTS)
+        int delete(List<Integer> listIds);
+
+        // There is only a single row, which is replaced.
+        @Insert(onConflict = OnConflictStrategy.REPLACE)
+        void setActiveChecklist(DbActiveChecklist activeChecklist);
+
+        @Query(ItemDaoSql.GET_ALL_ITEMS)
         List<DbChecklistItem> getAllItems();
 
-        @Query("SELECT * FROM DbChecklist")
+        @Query(ItemDaoSql.GET_ALL_CHECKLISTS)
         LiveData<List<DbChecklist>> getAllChecklists();
 
-        @Query("SELECT * FROM DbChecklistItem WHERE belongsToChecklist LIKE :listTitle AND " +
-                "isChecked == :isChecked ORDER BY position ASC")
-        List<DbChecklistItem> getItemSubsetSorted(@NonNull String listTitle,
+        // Including the checklists in the trash.
+        @Query(ItemDaoSql.GET_ALL_CHECKLISTS_WITH_TRASH)
+        LiveData<List<DbChecklist>> getAllChecklistsWithTrash();
+
+        @Query(ItemDaoSql.GET_CHECKLISTS)
+        List<DbChecklist> getChecklists();
+
+        // Returns null if there is no such checklist (excluding the trash).
+        @Query(ItemDaoSql.GET_CHECKLIST_ID)
+        Integer getChecklistId(@NonNull String listTitle);
+
+        @Query(ItemDaoSql.GET_ITEM_SUBSET_SORTED)
+        List<DbChecklistItem> getItemSubsetSorted(int listId,
                                                   @NonNull Boolean isChecked);
 
-        @Query("SELECT * FROM DbChecklistItem WHERE belongsToChecklist LIKE :listTitle AND " +
-                "isChecked == :isChecked ORDER BY position ASC")
-        LiveData<List<DbChecklistItem>> getItemSubsetSortedLiveData(@NonNull String listTitle,
-                                                                    @NonNull Boolean isChecked);
+        // Most frequently used items first. Items with the same incidence are sorted by their id
+        // (descending, so that the index can be traversed backwards without a separate sort).
+        @Query(ItemDaoSql.GET_CHECKED_ITEMS_SORTED)
+        List<DbChecklistItem> getCheckedItemsSorted(int listId);
+
+        // Same as getCheckedItemsSorted(), but only the first "limit" items.
+        @Query(ItemDaoSql.GET_CHECKED_ITEMS_SORTED_WINDOW)
+        List<DbChecklistItem> getCheckedItemsSorted(int listId, int limit);
+
+        @Query(ItemDaoSql.COUNT_ITEMS)
+        int countItems(int listId, @NonNull Boolean isChecked);
+
+        @Query(ItemDaoSql.GET_ITEM_SUMMARIES)
+        List<DbItemSummary> getItemSummaries(int listId);
+
+        // For exporting, the items are read from a Cursor instead of being loaded all at once
+        // (see ChecklistExporter). Same order as getItemSubsetSorted() and
+        // getCheckedItemsSorted().
+        @Query(ItemDaoSql.QUERY_UNCHECKED_ITEMS)
+        Cursor queryUncheckedItems(int listId);
 
-        @Query("SELECT * FROM DbChecklistItem WHERE belongsToChecklist LIKE :listTitle")
-        List<DbChecklistItem> getItems(@NonNull String listTitle);
+        @Query(ItemDaoSql.QUERY_CHECKED_ITEMS)
+        Cursor queryCheckedItems(int listId);
 
-        @Query("SELECT * FROM DbChecklistItem WHERE belongsToChecklist LIKE :listTitle")
-        LiveData<List<DbChecklistItem>> getItemsLiveData(@NonNull String listTitle);
+        @Query(ItemDaoSql.GET_ITEMS)
+        List<DbChecklistItem> getItems(int listId);
 
-        @Query("SELECT * FROM DbChecklist WHERE active == 1")
+        // Observes both tables, so that renaming the active checklist is reflected as well.
+        @Query(ItemDaoSql.GET_ACTIVE_CHECKLIST)
         LiveData<DbChecklist> getActiveChecklist();
 
-        @Query("SELECT MIN(incidence) FROM DbChecklistItem WHERE belongsToChecklist LIKE :listTitle")
-        long getMinIncidence(@NonNull String listTitle); // Returns 0 if list is empty.
+        @Query(ItemDaoSql.GET_ITEM_BY_NORMALIZED_NAME)
+        DbChecklistItem getItemByNormalizedName(int listId, @NonNull String normalizedName);
 
-        // Use "Transaction" so that multiple Queries will result in only one LiveData event:
-        @Transaction
-        default void insertAndUpdate(@NonNull DbChecklistItem itemToInsert,
-                                     @NonNull List<DbChecklistItem> itemsToUpdate) {
-            insert(itemToInsert);
-            update(itemsToUpdate);
-        }
+        @Query(ItemDaoSql.GET_ITEMS_BY_NORMALIZED_NAMES)
+        List<DbChecklistItem> getItemsByNormalizedNames(int listId,
+                                                        @NonNull List<String> normalizedNames);
 
-        @Transaction
-        default void setActiveChecklist(@Nullable String listTitle) {
-            // Set the checklist "listTitle" active, set all other checklists "inactive". If title
-            // is null, set all checklists inactive.
-            setAllChecklistsInactive();
-            setChecklistActive(listTitle);
-        }
+        @Query(ItemDaoSql.GET_MIN_INCIDENCE)
+        long getMinIncidence(int listId); // Returns 0 if list is empty.
+
+        @Query(ItemDaoSql.GET_MAX_POSITION)
+        Long getMaxPosition(int listId, @NonNull Boolean isChecked); // Returns null if empty.
+
+        // The ids of the checked items, in the order they are displayed (same as
+        // getCheckedItemsSorted()).
+        @Query(ItemDaoSql.GET_CHECKED_ITEM_IDS_SORTED)
+        List<Integer> getCheckedItemIdsSorted(int listId);
+
+        @Query(ItemDaoSql.SET_POSITION)
+        void setPosition(int itemId, long position);
+
+        // The set-based operations below modify all (matching) items of a checklist with a
+        // single statement each (see ChecklistRepository).
+
+        // Same as flipping each checked item (their positions must be set first).
+        @Query(ItemDaoSql.UNCHECK_ALL_ITEMS)
+        int uncheckAllItems(int listId);
+
+        // Same as flipping each unchecked item.
+        @Query(ItemDaoSql.CHECK_ALL_ITEMS)
+        int checkAllItems(int listId);
+
+        @Query(ItemDaoSql.DELETE_CHECKED_ITEMS)
+        int deleteCheckedItems(int listId);
+
+        @Query(ItemDaoSql.DELETE_TEMPLATE)
+        void deleteTemplate(int listId);
+
+        // The unchecked items become the template.
+        @Query(ItemDaoSql.SAVE_TEMPLATE)
+        void saveTemplate(int listId);
+
+        @Query(ItemDaoSql.COUNT_TEMPLATE_ITEMS)
+        int countTemplateItems(int listId);
+
+        // Flip the unchecked items that are not part of the template.
+        @Query(ItemDaoSql.CHECK_ITEMS_NOT_IN_TEMPLATE)
+        void checkItemsNotInTemplate(int listId);
+
+        // Insert the template items that have been deleted since the template was saved (with
+        // the lowest incidence, same as insertItem()).
+        @Query(ItemDaoSql.INSERT_MISSING_TEMPLATE_ITEMS)
+        void insertMissingTemplateItems(int listId);
+
+        // Uncheck the template items (flipping the checked ones, i.e. incrementing their
+        // incidence), and restore their positions from the template.
+        @Query(ItemDaoSql.UNCHECK_TEMPLATE_ITEMS)
+        void uncheckTemplateItems(int listId);
+
+        // The names in the catalog matching the full-text query "match", most used first.
+        @Query(ItemDaoSql.SEARCH_CATALOG)
+        List<String> searchCatalog(@NonNull String match, int limit);
+
+        // The most used names in the catalog (backed by the index on "useCount", "lastUsed").
+        @Query(ItemDaoSql.GET_CATALOG_MOST_USED)
+        List<String> getCatalogMostUsed(int limit);
     }
 
+    // Schema version, must be incremented (and a Migration added) whenever the schema changes.
+    static final int VERSION = 10;
+
     private static volatile ChecklistDatabase INSTANCE;
+    // Tracks the modifications of items per checklist (see ChecklistRepository).
+    private final ChecklistChangeTracker mChangeTracker = new ChecklistChangeTracker();
     private static final ExecutorService executor = Executors.newFixedThreadPool(1);
     private static final String DATABASE_NAME = "checklist_database";
+    // Current time in milliseconds since epoch, evaluated by SQLite (see DbCatalogItem).
+    private static final String CATALOG_NOW = CatalogSql.NOW;
 
     abstract ItemDao itemDao();
 
+    ChecklistChangeTracker getChangeTracker() {
+        return mChangeTracker;
+    }
+
+    // Version 2 replaces the "listTitle" primary key of DbChecklist with an integer "listId", so
+    // that renaming a checklist doesn't cascade to every item. The tables are recreated (SQLite
+    // cannot alter a primary key) and "belongsToChecklist" is converted from title to id.
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // Move the old tables out of the way first. Renaming the parent table also updates
+            // the foreign key of the (old) child table, so both stay consistent.
+            db.execSQL("ALTER TABLE `DbChecklistItem` RENAME TO `DbChecklistItem_v1`");
+            db.execSQL("ALTER TABLE `DbChecklist` RENAME TO `DbChecklist_v1`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbChecklist` (" +
+                    "`listId` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "`listTitle` TEXT NOT NULL, " +
+                    "`active` INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbChecklistItem` (" +
+                    "`itemId` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "`name` TEXT NOT NULL, " +
+                    "`belongsToChecklist` INTEGER NOT NULL, " +
+                    "`isChecked` INTEGER NOT NULL, " +
+                    "`position` INTEGER, " +
+                    "`incidence` INTEGER NOT NULL DEFAULT 0, " +
+                    "FOREIGN KEY(`belongsToChecklist`) REFERENCES `DbChecklist`(`listId`) " +
+                    "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO `DbChecklist` (`listTitle`, `active`) " +
+                    "SELECT `listTitle`, `active` FROM `DbChecklist_v1`");
+            db.execSQL("INSERT INTO `DbChecklistItem` " +
+                    "(`itemId`, `name`, `belongsToChecklist`, `isChecked`, `position`, `incidence`) " +
+                    "SELECT i.`itemId`, i.`name`, l.`listId`, i.`isChecked`, i.`position`, i.`incidence` " +
+                    "FROM `DbChecklistItem_v1` AS i " +
+                    "INNER JOIN `DbChecklist` AS l ON l.`listTitle` = i.`belongsToChecklist`");
+            // Drop the child first, so that no foreign key references the old parent anymore.
+            // The old indices are dropped together with their tables.
+            db.execSQL("DROP TABLE `DbChecklistItem_v1`");
+            db.execSQL("DROP TABLE `DbChecklist_v1`");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DbChecklist_listTitle` " +
+                    "ON `DbChecklist` (`listTitle`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_DbChecklistItem_belongsToChecklist` " +
+                    "ON `DbChecklistItem` (`belongsToChecklist`)");
+        }
+    };
+
+    // Version 3 replaces the single column index on "belongsToChecklist" with a composite index
+    // that matches the item subset queries (see DbChecklistItem).
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_DbChecklistItem_belongsToChecklist`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS " +
+                    "`index_DbChecklistItem_belongsToChecklist_isChecked_position` " +
+                    "ON `DbChecklistItem` (`belongsToChecklist`, `isChecked`, `position`)");
+        }
+    };
+
+    // Version 4 adds the "normalizedName" column and a unique index on it (see DbChecklistItem).
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `DbChecklistItem` " +
+                    "ADD COLUMN `normalizedName` TEXT NOT NULL DEFAULT ''");
+            // The normalization cannot be expressed in SQL (e.g. lower() only handles ASCII), so
+            // fill in the new column item by item.
+            Set<String> seen = new HashSet<>();
+            try (Cursor cursor = db.query(
+                    "SELECT `itemId`, `belongsToChecklist`, `name` FROM `DbChecklistItem` " +
+                    "ORDER BY `itemId` ASC")) {
+                while (cursor.moveToNext()) {
+                    long itemId = cursor.getLong(0);
+                    long listId = cursor.getLong(1);
+                    String normalizedName = DbChecklistItem.normalizeName(cursor.getString(2));
+                    if (!seen.add(listId + ":" + normalizedName)) {
+                        // Older versions compared names with equalsIgnoreCase() only, so there
+                        // might be duplicates. Keep them, but make their key unique.
+                        normalizedName = normalizedName + "#" + itemId;
+                    }
+                    db.execSQL("UPDATE `DbChecklistItem` SET `normalizedName` = ? " +
+                            "WHERE `itemId` = ?", new Object[]{normalizedName, itemId});
+                }
+            }
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " +
+                    "`index_DbChecklistItem_belongsToChecklist_normalizedName` " +
+                    "ON `DbChecklistItem` (`belongsToChecklist`, `normalizedName`)");
+        }
+    };
+
+    // Version 5 makes the "position" keys sparse (see DbChecklistItem.POSITION_STEP). The schema
+    // itself is unchanged, only the existing (dense) positions are spread out.
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE `DbChecklistItem` SET `position` = `position` * ?",
+                    new Object[]{DbChecklistItem.POSITION_STEP});
+        }
+    };
+
+    // Version 6 adds an index to sort checked items by incidence (see DbChecklistItem).
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " +
+                    "`index_DbChecklistItem_belongsToChecklist_isChecked_incidence` " +
+                    "ON `DbChecklistItem` (`belongsToChecklist`, `isChecked`, `incidence`)");
+            // Positions of checked items are not used anymore.
+            db.execSQL("UPDATE `DbChecklistItem` SET `position` = NULL WHERE `isChecked` == 1");
+        }
+    };
+
+    // Version 7 moves the "active" flag out of DbChecklist into its own single-row table (see
+    // DbActiveChecklist). DbChecklist is recreated without the column (SQLite < 3.35 cannot drop
+    // columns). Foreign keys are not enforced during migrations, so dropping the old table
+    // doesn't cascade to the items.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbActiveChecklist` (" +
+                    "`id` INTEGER NOT NULL, " +
+                    "`listId` INTEGER, " +
+                    "PRIMARY KEY(`id`), " +
+                    "FOREIGN KEY(`listId`) REFERENCES `DbChecklist`(`listId`) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_DbActiveChecklist_listId` " +
+                    "ON `DbActiveChecklist` (`listId`)");
+            db.execSQL("INSERT INTO `DbActiveChecklist` (`id`, `listId`) VALUES (?, " +
+                    "(SELECT `listId` FROM `DbChecklist` WHERE `active` == 1 LIMIT 1))",
+                    new Object[]{DbActiveChecklist.ROW_ID});
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbChecklist_v7` (" +
+                    "`listId` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "`listTitle` TEXT NOT NULL)");
+            db.execSQL("INSERT INTO `DbChecklist_v7` (`listId`, `listTitle`) " +
+                    "SELECT `listId`, `listTitle` FROM `DbChecklist`");
+            db.execSQL("DROP TABLE `DbChecklist`");
+            db.execSQL("ALTER TABLE `DbChecklist_v7` RENAME TO `DbChecklist`");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DbChecklist_listTitle` " +
+                    "ON `DbChecklist` (`listTitle`)");
+        }
+    };
+
+    // Version 8 adds the catalog of item names (see DbCatalogItem), which is filled with the
+    // names of the existing items.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbCatalogItem` (" +
+                    "`catalogId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`name` TEXT NOT NULL, " +
+                    "`normalizedName` TEXT NOT NULL, " +
+                    "`useCount` INTEGER NOT NULL, " +
+                    "`lastUsed` INTEGER NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DbCatalogItem_normalizedName` " +
+                    "ON `DbCatalogItem` (`normalizedName`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_DbCatalogItem_useCount_lastUsed` " +
+                    "ON `DbCatalogItem` (`useCount`, `lastUsed`)");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `DbCatalogItemFts` USING FTS4(" +
+                    "`name` TEXT NOT NULL, tokenize=unicode61, prefix=`2,3`, " +
+                    "content=`DbCatalogItem`)");
+            // Same as the triggers Room creates for a new database.
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " +
+                    "room_fts_content_sync_DbCatalogItemFts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `DbCatalogItem` BEGIN " +
+                    "DELETE FROM `DbCatalogItemFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " +
+                    "room_fts_content_sync_DbCatalogItemFts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `DbCatalogItem` BEGIN " +
+                    "DELETE FROM `DbCatalogItemFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " +
+                    "room_fts_content_sync_DbCatalogItemFts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `DbCatalogItem` BEGIN " +
+                    "INSERT INTO `DbCatalogItemFts`(`docid`, `name`) " +
+                    "VALUES (NEW.`rowid`, NEW.`name`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " +
+                    "room_fts_content_sync_DbCatalogItemFts_AFTER_INSERT " +
+                    "AFTER INSERT ON `DbCatalogItem` BEGIN " +
+                    "INSERT INTO `DbCatalogItemFts`(`docid`, `name`) " +
+                    "VALUES (NEW.`rowid`, NEW.`name`); END");
+            // Items with the same name in several checklists share a single entry. Every item
+            // has been used at least once, plus once for every time it has been flipped.
+            db.execSQL("INSERT INTO `DbCatalogItem` " +
+                    "(`name`, `normalizedName`, `useCount`, `lastUsed`) " +
+                    "SELECT MAX(`name`), `normalizedName`, SUM(MAX(`incidence`, 0) + 1), " +
+                    CATALOG_NOW + " FROM `DbChecklistItem` GROUP BY `normalizedName`");
+            createCatalogTriggers(db);
+        }
+    };
+
+    // Version 9 adds the templates of the checklists (see DbTemplateItem).
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `DbTemplateItem` (" +
+                    "`belongsToChecklist` INTEGER NOT NULL, " +
+                    "`normalizedName` TEXT NOT NULL, " +
+                    "`name` TEXT NOT NULL, " +
+                    "`position` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`belongsToChecklist`, `normalizedName`), " +
+                    "FOREIGN KEY(`belongsToChecklist`) REFERENCES `DbChecklist`(`listId`) " +
+                    "ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    // Version 10 replaces the title prefix of trashed checklists by the "trashedAt" column.
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `DbChecklist` " +
+                    "ADD COLUMN `trashedAt` INTEGER NOT NULL DEFAULT 0");
+            // Previously, trashed checklists were renamed to "__TRASH__<title>(<date>)". The
+            // date is kept as part of the title, so that the titles stay unique.
+            db.execSQL("UPDATE `DbChecklist` SET `trashedAt` = " + CATALOG_NOW + ", " +
+                    "`listTitle` = substr(`listTitle`, 10) " +
+                    "WHERE substr(`listTitle`, 1, 9) == '__TRASH__'");
+            db.execSQL("DROP INDEX IF EXISTS `index_DbChecklist_listTitle`");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DbChecklist_listTitle_trashedAt` " +
+                    "ON `DbChecklist` (`listTitle`, `trashedAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_DbChecklist_trashedAt` " +
+                    "ON `DbChecklist` (`trashedAt`)");
+        }
+    };
+
+    private static void createCatalogTriggers(@NonNull SupportSQLiteDatabase db) {
+        // Keep the catalog up-to-date with every write to DbChecklistItem (see CatalogSql).
+        // Note: the triggers are dropped together with DbChecklistItem, so a migration that
+        // recreates the table must call this again.
+        for (String sql : CatalogSql.createTriggers()) {
+            db.execSQL(sql);
+        }
+    }
+
     private static void populateInitList(Context context) {
         // Populate the database with an initial list for demonstration purposes.
         INSTANCE.clearAllTables();
         ItemDao dao = INSTANCE.itemDao();
-        DbChecklist list = new DbChecklist(context.getString(R.string.database_init_title), true);
-        dao.insert(list);
-        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked0), false, 0, list.getListTitle(), 0));
-        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked1), false, 1, list.getListTitle(), 0));
-        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked2), false, 2, list.getListTitle(), 0));
-        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_checked0),   true,  0, list.getListTitle(), 0));
-        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_checked1),   true,  1, list.getListTitle(), 0));
+        DbChecklist list = new DbChecklist(context.getString(R.string.database_init_title));
+        int listId = (int) dao.insert(list);
+        dao.setActiveChecklist(new DbActiveChecklist(listId));
+        final long step = DbChecklistItem.POSITION_STEP;
+        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked0), false, 0L,       listId, 0));
+        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked1), false, step,     listId, 0));
+        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_unchecked2), false, 2 * step, listId, 0));
+        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_checked0),   true,  null,     listId, 1));
+        dao.insert(new DbChecklistItem(context.getString(R.string.database_init_checked1),   true,  null,     listId, 0));
+        // The items haven't been written via ChecklistRepository.
+        INSTANCE.getChangeTracker().markAllChanged();
     }
 
     static ChecklistDatabase getInstance(@NonNull Context context) {
@@ -143,6 +499,7 @@ public abstract class ChecklistDatabase extends RoomDatabase {
                                     // Called only if no data is present yet
                                     // (after app was installed or user deleted app storage)
                                     super.onCreate(db);
+                                    createCatalogTriggers(db);
                                     executor.execute(() -> populateInitList(
                                             context.getApplicationContext()));
                                 }
@@ -157,10 +514,83 @@ public abstract class ChecklistDatabase extends RoomDatabase {
                                     }
                                 }
                             })
+                            // Room's default (AUTOMATIC) doesn't use the write-ahead log on
+                            // low-RAM devices. Without it, the connection pool has only one
+                            // connection, and ChecklistRepository.beginRead() blocks writers.
+                            .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                            .addMigrations(
+                                    MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                    MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+                                    MIGRATION_8_9, MIGRATION_9_10)
                             .build();
                 }
             }
         }
         return INSTANCE;
     }
+
+    @NonNull
+    static File getDatabaseFile(@NonNull Context context) {
+        return context.getDatabasePath(DATABASE_NAME);
+    }
+
+    @NonNull
+    static String getIdentityHash(@NonNull Context context) {
+        // Room's hash of the current schema, as stored in the database.
+        try (Cursor cursor = getInstance(context).query(
+                "SELECT identity_hash FROM room_master_table WHERE id = 42", null)) {
+            boolean found = cursor.moveToFirst();
+            assert found: "Missing room_master_table";
+            return cursor.getString(0);
+        }
+    }
+
+    static void replaceDatabaseFile(@NonNull Context context,
+                                    @NonNull File replacement) throws IOException {
+        // Close the database, replace its file with "replacement" (which must be in the same
+        // directory) and open it again. The previous file is restored if the replacement can't
+        // be opened (e.g. if it can't be migrated). Afterwards, getInstance() returns a new
+        // instance, objects obtained from the previous one must not be used anymore.
+        synchronized (ChecklistDatabase.class) {
+            File databaseFile = getDatabaseFile(context);
+            File previousFile = new File(databaseFile.getPath() + ".previous");
+            // Move everything from the WAL into the database file, which is kept (without its
+            // journals) for rolling back.
+            getInstance(context).query("PRAGMA wal_checkpoint(TRUNCATE)", null).close();
+            INSTANCE.close();
+            INSTANCE = null;
+            deleteWithJournals(previousFile);
+            if (!databaseFile.renameTo(previousFile)) {
+                throw new IOException("Failed to rename " + databaseFile);
+            }
+            deleteWithJournals(databaseFile);
+            try {
+                if (!replacement.renameTo(databaseFile)) {
+                    throw new IOException("Failed to rename " + replacement);
+                }
+                // Opening the database migrates and validates it.
+                getInstance(context).getOpenHelper().getWritableDatabase();
+            } catch (IOException | RuntimeException e) {
+                if (INSTANCE != null) {
+                    INSTANCE.close();
+                    INSTANCE = null;
+                }
+                deleteWithJournals(databaseFile);
+                if (!previousFile.renameTo(databaseFile)) {
+                    throw new IOException("Failed to roll back " + previousFile, e);
+                }
+                throw new IOException("Failed to open the restored database", e);
+            }
+            deleteWithJournals(previousFile);
+        }
+    }
+
+    private static void deleteWithJournals(@NonNull File databaseFile) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            File file = new File(databaseFile.getPath() + suffix);
+            if (file.exists() && !file.delete()) {
+                throw new IllegalStateException("Failed to delete " + file);
+            }
+        }
+    }
 }
@@ -0,0 +1,303 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class ChecklistExporter {
+    /*
+     *  Writes the items of one or all checklists (excluding the trash) to a stream, as CSV, JSON
+     *  Lines or plain text (see Format).
+     *
+     *  The items are read from a Cursor per checklist (unchecked items in their order, followed
+     *  by the checked items, most frequently used first) and written straight to a buffered
+     *  stream. Only the rows of the Cursor's current window are held in memory, no matter how
+     *  large the database is.
+     *
+     *  Exporting is blocking and must not be done on the UI thread. It can be cancelled by
+     *  interrupting the exporting thread (e.g. by cancelling its Future).
+     */
+
+    public enum Format {
+        // Separated by ";" (like the previous export), quoted if required (RFC 4180).
+        CSV("text/csv", "csv"),
+        // One JSON object per item and line.
+        JSON_LINES("application/jsonl", "jsonl"),
+        // Human readable, e.g. for sharing a checklist with a messenger app.
+        TEXT("text/plain", "txt");
+
+        private final String mMimeType;
+        private final String mFileExtension;
+
+        Format(@NonNull String mimeType, @NonNull String fileExtension) {
+            mMimeType = mimeType;
+            mFileExtension = fileExtension;
+        }
+
+        @NonNull
+        public String getMimeType() {
+            return mMimeType;
+        }
+
+        @NonNull
+        public String getFileExtension() {
+            return mFileExtension;
+        }
+    }
+
+    public interface ProgressListener {
+        // Called on the exporting thread.
+        void onProgress(int exportedItems, int totalItems);
+    }
+
+    // Progress is reported (and cancellation checked) every PROGRESS_INTERVAL items.
+    private static final int PROGRESS_INTERVAL = 256;
+
+    private final ChecklistRepository mRepository;
+
+
+    public ChecklistExporter(@NonNull ChecklistRepository repository) {
+        mRepository = repository;
+    }
+
+    public int export(@Nullable Integer listId,
+                      @NonNull Format format,
+                      @NonNull OutputStream out,
+                      @Nullable ProgressListener listener) throws IOException {
+        // Export the items of the checklist "listId", or of all checklists if "listId" is null.
+        // "out" is flushed, but not closed. Returns the number of exported items.
+        // Throws InterruptedIOException if the exporting thread has been interrupted.
+        List<DbChecklist> checklists = new ArrayList<>();
+        int totalItems = 0;
+        for (DbChecklist checklist : mRepository.getChecklists()) {
+            if (!checklist.isTrashed() &&
+                    ((listId == null) || (listId.equals(checklist.getListId())))) {
+                checklists.add(checklist);
+                totalItems += mRepository.countItems(checklist.getListId());
+            }
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RowWriter rowWriter = RowWriter.create(format, writer);
+        int exportedItems = 0;
+        rowWriter.writeHeader();
+        for (DbChecklist checklist : checklists) {
+            rowWriter.writeChecklist(checklist.getListTitle());
+            // Both Cursors in the same read transaction, otherwise an item that is checked in
+            // between would be exported twice (or not at all).
+            mRepository.beginRead();
+            try {
+                for (boolean isChecked : new boolean[]{false, true}) {
+                    try (Cursor cursor = mRepository.queryItemsForExport(
+                            checklist.getListId(), isChecked)) {
+                        int nameColumn = cursor.getColumnIndexOrThrow("name");
+                        int incidenceColumn = cursor.getColumnIndexOrThrow("incidence");
+                        while (cursor.moveToNext()) {
+                            rowWriter.writeItem(
+                                    checklist.getListTitle(),
+                                    cursor.getString(nameColumn),
+                                    cursor.getLong(incidenceColumn),
+                                    isChecked);
+                            exportedItems++;
+                            if (exportedItems % PROGRESS_INTERVAL == 0) {
+                                if (Thread.currentThread().isInterrupted()) {
+                                    throw new InterruptedIOException("Export cancelled");
+                                }
+                                if (listener != null) {
+                                    listener.onProgress(exportedItems, totalItems);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                mRepository.endRead();
+            }
+        }
+        writer.flush();
+        if (listener != null) {
+            listener.onProgress(exportedItems, totalItems);
+        }
+        return exportedItems;
+    }
+
+    static abstract class RowWriter {
+        // Formats the rows of an export (package-private for testing).
+
+        protected final Writer mWriter;
+
+        RowWriter(@NonNull Writer writer) {
+            mWriter = writer;
+        }
+
+        @NonNull
+        static RowWriter create(@NonNull Format format, @NonNull Writer writer) {
+            switch (format) {
+                case CSV:
+                    return new CsvWriter(writer);
+                case JSON_LINES:
+                    return new JsonLinesWriter(writer);
+                case TEXT:
+                    return new TextWriter(writer);
+                default:
+                    assert false: "Invalid format: " + format;
+                    return new CsvWriter(writer);
+            }
+        }
+
+        void writeHeader() throws IOException {}
+
+        void writeChecklist(@NonNull String listTitle) throws IOException {}
+
+        abstract void writeItem(@NonNull String listTitle,
+                                @NonNull String name,
+                                long incidence,
+                                boolean isChecked) throws IOException;
+    }
+
+    private static class CsvWriter extends RowWriter {
+
+        private static final char SEPARATOR = ';';
+
+        CsvWriter(@NonNull Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            mWriter.write("List;Name;Incidence;Checked\n");
+        }
+
+        @Override
+        void writeItem(@NonNull String listTitle,
+                       @NonNull String name,
+                       long incidence,
+                       boolean isChecked) throws IOException {
+            writeField(listTitle);
+            mWriter.write(SEPARATOR);
+            writeField(name);
+            mWriter.write(SEPARATOR);
+            mWriter.write(Long.toString(incidence));
+            mWriter.write(SEPARATOR);
+            mWriter.write(Boolean.toString(isChecked));
+            mWriter.write('\n');
+        }
+
+        private void writeField(@NonNull String value) throws IOException {
+            // Fields containing the separator, quotes or line breaks are enclosed in quotes, and
+            // quotes within are doubled.
+            boolean quote = false;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if ((c == SEPARATOR) || (c == '"') || (c == '\n') || (c == '\r')) {
+                    quote = true;
+                    break;
+                }
+            }
+            if (quote) {
+                mWriter.write('"');
+                mWriter.write(value.replace("\"", "\"\""));
+                mWriter.write('"');
+            } else {
+                mWriter.write(value);
+            }
+        }
+    }
+
+    private static class JsonLinesWriter extends RowWriter {
+
+        JsonLinesWriter(@NonNull Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeItem(@NonNull String listTitle,
+                       @NonNull String name,
+                       long incidence,
+                       boolean isChecked) throws IOException {
+            mWriter.write("{\"list\":");
+            writeString(listTitle);
+            mWriter.write(",\"name\":");
+            writeString(name);
+            mWriter.write(",\"incidence\":");
+            mWriter.write(Long.toString(incidence));
+            mWriter.write(",\"checked\":");
+            mWriter.write(Boolean.toString(isChecked));
+            mWriter.write("}\n");
+        }
+
+        private void writeString(@NonNull String value) throws IOException {
+            mWriter.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        mWriter.write("\\\"");
+                        break;
+                    case '\\':
+                        mWriter.write("\\\\");
+                        break;
+                    case '\n':
+                        mWriter.write("\\n");
+                        break;
+                    case '\r':
+                        mWriter.write("\\r");
+                        break;
+                    case '\t':
+                        mWriter.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            mWriter.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            mWriter.write(c);
+                        }
+                }
+            }
+            mWriter.write('"');
+        }
+    }
+
+    private static class TextWriter extends RowWriter {
+
+        private boolean mIsFirstChecklist = true;
+
+        TextWriter(@NonNull Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeChecklist(@NonNull String listTitle) throws IOException {
+            // The title, followed by the items as a bulleted list (checked items are marked).
+            // Checklists are separated by a blank line. Meant to be read by people, not to be
+            // imported: SharedTextParser would take the title for an item and ignore the marks.
+            if (!mIsFirstChecklist) {
+                mWriter.write('\n');
+            }
+            mIsFirstChecklist = false;
+            mWriter.write(listTitle);
+            mWriter.write('\n');
+        }
+
+        @Override
+        void writeItem(@NonNull String listTitle,
+                       @NonNull String name,
+                       long incidence,
+                       boolean isChecked) throws IOException {
+            mWriter.write(isChecked ? "- [x] " : "- ");
+            mWriter.write(name);
+            mWriter.write('\n');
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class ChecklistImporter {
+    /*
+     *  Reads items from a CSV file (in the "List;Name;Incidence;Checked" layout written by
+     *  ChecklistExporter) or a JSON Lines file, and adds them to the checklists with the given
+     *  titles (which are created if they don't exist).
+     *
+     *  The file is parsed as a stream, and the rows are written in batches of BATCH_SIZE, each
+     *  in a single transaction using the same prepared statements for every row. Items that
+     *  already exist in the checklist are handled like MainViewModel.insertItem() does: they are
+     *  flipped if their "isChecked" differs, otherwise unchecked items are moved to the end.
+     *
+     *  Rows that cannot be parsed are skipped and reported to the Listener, the import goes on.
+     *  Importing is blocking and must not be done on the UI thread. It can be cancelled by
+     *  interrupting the importing thread (batches that have been written are kept).
+     */
+
+    public interface Listener {
+        // Called on the importing thread.
+        void onRowFailed(int lineNumber, @NonNull String reason);
+
+        void onProgress(@NonNull Result result);
+    }
+
+    public static class Result {
+        // Rows read from the file (not counting blank lines and the CSV header).
+        public int rows = 0;
+        public int inserted = 0;
+        // Existing items that have been flipped or moved.
+        public int updated = 0;
+        // Existing checked items that have been imported as checked again.
+        public int unchanged = 0;
+        public int failed = 0;
+    }
+
+    static class Row {
+        final int lineNumber;
+        final String listTitle;
+        final String name;
+        final long incidence;
+        final boolean isChecked;
+
+        Row(int lineNumber,
+            @NonNull String listTitle,
+            @NonNull String name,
+            long incidence,
+            boolean isChecked) {
+            this.lineNumber = lineNumber;
+            this.listTitle = listTitle;
+            this.name = name;
+            this.incidence = incidence;
+            this.isChecked = isChecked;
+        }
+    }
+
+    static class InvalidRowException extends Exception {
+        final int lineNumber;
+
+        InvalidRowException(int lineNumber, @NonNull String message) {
+            super(message);
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    private static final int BATCH_SIZE = 5000;
+
+    // Same as flipping the item (see ChecklistRepository.uncheckAllItems()/checkAllItems()).
+    private static final String SQL_FLIP = "UPDATE DbChecklistItem " +
+            "SET isChecked = ?1, position = ?2, incidence = incidence + 1 " +
+            "WHERE belongsToChecklist == ?3 AND normalizedName == ?4 AND isChecked != ?1";
+    private static final String SQL_MOVE = "UPDATE DbChecklistItem SET position = ?1 " +
+            "WHERE belongsToChecklist == ?2 AND normalizedName == ?3 AND isChecked == 0";
+    // Ignored if the item exists already (see the unique index in DbChecklistItem).
+    private static final String SQL_INSERT = "INSERT OR IGNORE INTO DbChecklistItem " +
+            "(name, normalizedName, belongsToChecklist, isChecked, position, incidence) " +
+            "VALUES (?1, ?2, ?3, ?4, ?5, ?6)";
+
+    private final ChecklistRepository mRepository;
+    // The checklists that have been looked up or created so far (key: title).
+    private final Map<String, Integer> mListIds = new HashMap<>();
+
+
+    public ChecklistImporter(@NonNull ChecklistRepository repository) {
+        mRepository = repository;
+    }
+
+    @NonNull
+    public Result importItems(@NonNull InputStream in,
+                              @NonNull Listener listener) throws IOException {
+        // The format is detected from the first character: JSON Lines if it's "{", CSV
+        // otherwise. Throws InterruptedIOException if the importing thread has been interrupted.
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+        RowReader rowReader = RowReader.create(reader);
+        Result result = new Result();
+        List<Row> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            Row row;
+            try {
+                row = rowReader.next();
+            } catch (InvalidRowException e) {
+                result.rows++;
+                result.failed++;
+                listener.onRowFailed(e.lineNumber, e.getMessage());
+                continue;
+            }
+            if (row != null) {
+                result.rows++;
+                batch.add(row);
+            }
+            if ((batch.size() >= BATCH_SIZE) || ((row == null) && !batch.isEmpty())) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Import cancelled");
+                }
+                writeBatch(batch, result);
+                batch.clear();
+                listener.onProgress(result);
+            }
+            if (row == null) {
+                return result;
+            }
+        }
+    }
+
+    private void writeBatch(@NonNull List<Row> batch, @NonNull Result result) {
+        mRepository.runInTransaction(() -> {
+            // The largest position of the unchecked items per checklist, looked up once per
+            // batch (other writes might have been executed in between).
+            Map<Integer, Long> maxPositions = new HashMap<>();
+            SupportSQLiteStatement flip = mRepository.compileStatement(SQL_FLIP);
+            SupportSQLiteStatement move = mRepository.compileStatement(SQL_MOVE);
+            SupportSQLiteStatement insert = mRepository.compileStatement(SQL_INSERT);
+            try {
+                for (Row row : batch) {
+                    int listId = getOrCreateChecklist(row.listTitle);
+                    String normalizedName = DbChecklistItem.normalizeName(row.name);
+                    Long position = null;
+                    if (!row.isChecked) {
+                        Long maxPosition = maxPositions.containsKey(listId) ?
+                                maxPositions.get(listId) :
+                                mRepository.getMaxPosition(listId, false);
+                        position = (maxPosition == null) ?
+                                0 : (maxPosition + DbChecklistItem.POSITION_STEP);
+                        maxPositions.put(listId, position);
+                    }
+                    flip.bindLong(1, row.isChecked ? 1 : 0);
+                    bindPosition(flip, 2, position);
+                    flip.bindLong(3, listId);
+                    flip.bindString(4, normalizedName);
+                    if (flip.executeUpdateDelete() > 0) {
+                        result.updated++;
+                        continue;
+                    }
+                    if (!row.isChecked) {
+                        bindPosition(move, 1, position);
+                        move.bindLong(2, listId);
+                        move.bindString(3, normalizedName);
+                        if (move.executeUpdateDelete() > 0) {
+                            result.updated++;
+                            continue;
+                        }
+                    }
+                    insert.bindString(1, row.name);
+                    insert.bindString(2, normalizedName);
+                    insert.bindLong(3, listId);
+                    insert.bindLong(4, row.isChecked ? 1 : 0);
+                    bindPosition(insert, 5, position);
+                    insert.bindLong(6, row.incidence);
+                    if (insert.executeInsert() != -1) {
+                        result.inserted++;
+                    } else {
+                        result.unchanged++;
+                    }
+                }
+            } finally {
+                close(flip);
+                close(move);
+                close(insert);
+            }
+            // The items haven't been written via ChecklistRepository's item methods.
+            mRepository.markAllChanged();
+        });
+    }
+
+    private int getOrCreateChecklist(@NonNull String listTitle) {
+        Integer listId = mListIds.get(listTitle);
+        if (listId == null) {
+            listId = mRepository.findChecklist(listTitle);
+            if (listId == null) {
+                listId = mRepository.insertChecklist(listTitle);
+            }
+            mListIds.put(listTitle, listId);
+        }
+        return listId;
+    }
+
+    private static void bindPosition(@NonNull SupportSQLiteStatement statement,
+                                     int index,
+                                     @Nullable Long position) {
+        if (position == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, position);
+        }
+    }
+
+    private static void close(@NonNull SupportSQLiteStatement statement) {
+        try {
+            statement.close();
+        } catch (IOException e) {
+            // Not thrown when closing a statement.
+        }
+    }
+
+    static abstract class RowReader {
+        // Parses the rows of an import (package-private for testing).
+
+        protected final BufferedReader mReader;
+        // Line number of the next character to read.
+        protected int mLineNumber = 1;
+
+        RowReader(@NonNull BufferedReader reader) {
+            mReader = reader;
+        }
+
+        @NonNull
+        static RowReader create(@NonNull BufferedReader reader) throws IOException {
+            reader.mark(1);
+            int first = reader.read();
+            reader.reset();
+            if (first == '\uFEFF') {
+                // Skip the byte order mark.
+                reader.read();
+                reader.mark(1);
+                first = reader.read();
+                reader.reset();
+            }
+            return (first == '{') ? new JsonLinesReader(reader) : new CsvReader(reader);
+        }
+
+        // Returns null at the end of the file.
+        @Nullable
+        abstract Row next() throws IOException, InvalidRowException;
+
+        @NonNull
+        static Row toRow(int lineNumber,
+                         @Nullable String listTitle,
+                         @Nullable String name,
+                         long incidence,
+                         boolean isChecked) throws InvalidRowException {
+            // Same as the names entered by the user (see MainViewModel).
+            String strippedTitle =
+                    (listTitle == null) ? "" : DbChecklistItem.stripWhitespace(listTitle);
+            String strippedName = (name == null) ? "" : DbChecklistItem.stripWhitespace(name);
+            if (strippedTitle.isEmpty()) {
+                throw new InvalidRowException(lineNumber, "Missing list");
+            } else if (strippedName.isEmpty()) {
+                throw new InvalidRowException(lineNumber, "Missing name");
+            }
+            return new Row(lineNumber, strippedTitle, strippedName, incidence, isChecked);
+        }
+    }
+
+    private static class CsvReader extends RowReader {
+
+        private static final char SEPARATOR = ';';
+
+        private boolean mIsFirstRecord = true;
+
+        CsvReader(@NonNull BufferedReader reader) {
+            super(reader);
+        }
+
+        @Nullable
+        @Override
+        Row next() throws IOException, InvalidRowException {
+            while (true) {
+                int lineNumber = mLineNumber;
+                List<String> fields = readRecord();
+                if (fields == null) {
+                    return null;
+                }
+                boolean isHeader = mIsFirstRecord && fields.get(0).equalsIgnoreCase("List");
+                mIsFirstRecord = false;
+                if (isHeader || ((fields.size() == 1) && fields.get(0).trim().isEmpty())) {
+                    continue;
+                }
+                if (fields.size() < 2) {
+                    throw new InvalidRowException(lineNumber, "Expected at least 2 fields");
+                }
+                long incidence = 0;
+                if ((fields.size() > 2) && !fields.get(2).trim().isEmpty()) {
+                    try {
+                        incidence = Long.parseLong(fields.get(2).trim());
+                    } catch (NumberFormatException e) {
+                        throw new InvalidRowException(
+                                lineNumber, "Invalid incidence: " + fields.get(2));
+                    }
+                }
+                boolean isChecked = (fields.size() > 3) && parseBoolean(lineNumber, fields.get(3));
+                return toRow(lineNumber, fields.get(0), fields.get(1), incidence, isChecked);
+            }
+        }
+
+        @Nullable
+        private List<String> readRecord() throws IOException, InvalidRowException {
+            // Read the fields of the next record, which may span several lines if a quoted field
+            // contains line breaks. Returns null at the end of the file.
+            int lineNumber = mLineNumber;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean isQuoted = false;
+            boolean wasQuoted = false;
+            int c = mReader.read();
+            if (c == -1) {
+                return null;
+            }
+            while (true) {
+                if (isQuoted) {
+                    if (c == -1) {
+                        throw new InvalidRowException(lineNumber, "Unterminated quote");
+                    } else if (c == '"') {
+                        mReader.mark(1);
+                        if (mReader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            mReader.reset();
+                            isQuoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            mLineNumber++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if ((c == -1) || (c == '\n') || (c == '\r') || (c == SEPARATOR)) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                    if (c == '\r') {
+                        mReader.mark(1);
+                        if (mReader.read() != '\n') {
+                            mReader.reset();
+                        }
+                    }
+                    if (c != SEPARATOR) {
+                        if (c != -1) {
+                            mLineNumber++;
+                        }
+                        return fields;
+                    }
+                } else if ((c == '"') && (field.length() == 0) && !wasQuoted) {
+                    isQuoted = true;
+                    wasQuoted = true;
+                } else {
+                    field.append((char) c);
+                }
+                c = mReader.read();
+            }
+        }
+
+        private static boolean parseBoolean(int lineNumber,
+                                            @NonNull String value) throws InvalidRowException {
+            String trimmed = value.trim();
+            if (trimmed.equalsIgnoreCase("true") || trimmed.equals("1")) {
+                return true;
+            } else if (trimmed.isEmpty() || trimmed.equalsIgnoreCase("false") ||
+                    trimmed.equals("0")) {
+                return false;
+            } else {
+                throw new InvalidRowException(lineNumber, "Invalid checked value: " + value);
+            }
+        }
+    }
+
+    private static class JsonLinesReader extends RowReader {
+        // Only flat objects are supported, e.g. {"list":"A","name":"B","incidence":1,
+        // "checked":false} (as written by ChecklistExporter). Unknown keys are ignored.
+
+        JsonLinesReader(@NonNull BufferedReader reader) {
+            super(reader);
+        }
+
+        @Nullable
+        @Override
+        Row next() throws IOException, InvalidRowException {
+            while (true) {
+                String line = mReader.readLine();
+                int lineNumber = mLineNumber++;
+                if (line == null) {
+                    return null;
+                } else if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JSONObject object;
+                try {
+                    object = new JSONObject(line);
+                } catch (JSONException e) {
+                    throw new InvalidRowException(lineNumber, e.getMessage());
+                }
+                Object listTitle = opt(object, "list");
+                Object name = opt(object, "name");
+                Object incidence = opt(object, "incidence");
+                Object isChecked = opt(object, "checked");
+                if (((listTitle != null) && !(listTitle instanceof String)) ||
+                        ((name != null) && !(name instanceof String))) {
+                    throw new InvalidRowException(
+                            lineNumber, "\"list\" and \"name\" must be strings");
+                } else if ((incidence != null) &&
+                        !(incidence instanceof Integer) && !(incidence instanceof Long)) {
+                    throw new InvalidRowException(lineNumber, "\"incidence\" must be an integer");
+                } else if ((isChecked != null) && !(isChecked instanceof Boolean)) {
+                    throw new InvalidRowException(lineNumber, "\"checked\" must be a boolean");
+                }
+                return toRow(lineNumber,
+                        (String) listTitle,
+                        (String) name,
+                        (incidence == null) ? 0 : ((Number) incidence).longValue(),
+                        Boolean.TRUE.equals(isChecked));
+            }
+        }
+
+        @Nullable
+        private static Object opt(@NonNull JSONObject object, @NonNull String key) {
+            // The value of "key", or null if it's missing or null.
+            return object.isNull(key) ? null : object.opt(key);
+        }
+    }
+}
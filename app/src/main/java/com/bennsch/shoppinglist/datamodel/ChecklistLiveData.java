@@ -0,0 +1,128 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+
+class ChecklistLiveData<T> extends LiveData<T> {
+    /*
+     *  LiveData holding the result of a query on the items of a single checklist.
+     *
+     *  The query is only re-run if the checklist's items have changed (see
+     *  ChecklistChangeTracker), so changes to other checklists don't cause any work. While there
+     *  are no active observers, changes are not tracked; once an observer becomes active again,
+     *  the query is only re-run if the checklist's version has moved in the meantime.
+     *
+     *  If the changes since the current value are known (see ChecklistChangeTracker.getChanges()),
+     *  the optional "patch" function is used to apply them to the current value, instead of
+     *  running the query again. The patch may return null if it can't apply the changes.
+     */
+
+    private final int mListId;
+    private final Callable<T> mQuery;
+    private final ChecklistChangeTracker mTracker;
+    private final Executor mQueryExecutor;
+    // Called whenever the LiveData becomes active or inactive (see hasActiveObservers()).
+    @Nullable private final Consumer<ChecklistLiveData<T>> mOnObserversChanged;
+    @Nullable private final BiFunction<T, ItemChangeSet, T> mPatch;
+    private final Runnable mOnChanged = this::refresh;
+    // Serializes the queries, so that an outdated result can't overwrite a newer one.
+    private final Object mQueryLock = new Object();
+    // Version of the checklist the current value has been loaded from. Guarded by mQueryLock.
+    private long mLoadedVersion = -1;
+    // The current value (getValue() might not be up to date yet). Guarded by mQueryLock.
+    @Nullable private T mLoadedValue = null;
+
+
+    ChecklistLiveData(int listId,
+                      @NonNull Callable<T> query,
+                      @NonNull ChecklistChangeTracker tracker,
+                      @NonNull Executor queryExecutor,
+                      @Nullable Consumer<ChecklistLiveData<T>> onObserversChanged,
+                      @Nullable BiFunction<T, ItemChangeSet, T> patch) {
+        mListId = listId;
+        mQuery = query;
+        mTracker = tracker;
+        mQueryExecutor = queryExecutor;
+        mOnObserversChanged = onObserversChanged;
+        mPatch = patch;
+    }
+
+    int getListId() {
+        return mListId;
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        mTracker.addObserver(mListId, mOnChanged);
+        refresh();
+        if (mOnObserversChanged != null) {
+            mOnObserversChanged.accept(this);
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        mTracker.removeObserver(mListId, mOnChanged);
+        if (mOnObserversChanged != null) {
+            mOnObserversChanged.accept(this);
+        }
+    }
+
+    void reload() {
+        // Re-run the query, even if the checklist hasn't changed (e.g. because the query's
+        // parameters have changed).
+        if (hasActiveObservers()) {
+            refresh(true);
+        } else {
+            synchronized (mQueryLock) {
+                // Reloaded once it becomes active again.
+                mLoadedVersion = -1;
+                mLoadedValue = null;
+            }
+        }
+    }
+
+    private void refresh() {
+        refresh(false);
+    }
+
+    private void refresh(boolean force) {
+        mQueryExecutor.execute(() -> {
+            synchronized (mQueryLock) {
+                // Read the version before querying: if the checklist changes during the query,
+                // another refresh will follow.
+                long version = mTracker.getVersion(mListId);
+                if ((version == mLoadedVersion) && !force) {
+                    return;
+                }
+                try {
+                    T value = null;
+                    if (!force && (mPatch != null) && (mLoadedValue != null)) {
+                        ItemChangeSet changes =
+                                mTracker.getChanges(mListId, mLoadedVersion, version);
+                        if (changes != null) {
+                            value = mPatch.apply(mLoadedValue, changes);
+                        }
+                    }
+                    if (value == null) {
+                        value = mQuery.call();
+                    }
+                    postValue(value);
+                    mLoadedValue = value;
+                    mLoadedVersion = version;
+                } catch (Exception e) {
+                    throw new RuntimeException("Query failed for listId == " + mListId, e);
+                }
+            }
+        });
+    }
+}
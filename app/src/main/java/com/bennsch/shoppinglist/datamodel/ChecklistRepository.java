@@ -1,14 +1,23 @@
 package com.bennsch.shoppinglist.datamodel;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.Transformations;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 public class ChecklistRepository {
@@ -18,13 +27,35 @@ public class ChecklistRepository {
      *  device).
      */
     
+    // Number of checked items that are loaded at once (see ChecklistSnapshot).
+    public static final int CHECKED_WINDOW_SIZE = 100;
+    // Number of names to look up with a single query (see findItemsByName()).
+    private static final int MAX_QUERY_PARAMETERS = 500;
+
     private static ChecklistRepository INSTANCE;
+    // Every transaction holds the read lock, replacing the database file holds the write lock
+    // (see replaceDatabase()).
+    private static final ReadWriteLock mDatabaseLock = new ReentrantReadWriteLock();
+    private final ChecklistDatabase mDatabase;
     private final ChecklistDatabase.ItemDao mItemDao;
+    // Every modification of items must be reported to mChangeTracker, so that only the LiveData
+    // of the affected checklist is updated.
+    private final ChecklistChangeTracker mChangeTracker;
+    // Snapshots that are currently observed (key: listId), shared by all their observers.
+    private final Map<Integer, ChecklistLiveData<ChecklistSnapshot>> mSnapshots;
+    // Number of checked items to load into the snapshots (key: listId, see ChecklistSnapshot).
+    private final Map<Integer, Integer> mCheckedWindows;
+    // Set once the database has been replaced, this repository must not write anymore. Guarded
+    // by mDatabaseLock.
+    private boolean mClosed = false;
 
 
     private ChecklistRepository(@NonNull Context context) {
-        ChecklistDatabase db = ChecklistDatabase.getInstance(context);
-        mItemDao = db.itemDao();
+        mDatabase = ChecklistDatabase.getInstance(context);
+        mItemDao = mDatabase.itemDao();
+        mChangeTracker = mDatabase.getChangeTracker();
+        mSnapshots = new HashMap<>();
+        mCheckedWindows = new HashMap<>();
     }
 
     public static synchronized ChecklistRepository getInstance(@NonNull Context context) {
@@ -34,48 +65,167 @@ public class ChecklistRepository {
         return INSTANCE;
     }
 
-    public LiveData<List<String>> getAllChecklistTitles() {
-        // distinctUntilChanged() is required, because the room database would notify the LiveData 
-        // observers if ANY column in the DbChecklist table changes, not just the title of a
-        // checklist.
-        return Transformations.distinctUntilChanged(
-                Transformations.map(
-                        mItemDao.getAllChecklists(),
-                        checklists -> checklists.stream()
-                                .map(DbChecklist::getListTitle)
-                                .collect(Collectors.toList())));
-    }
-
-    public LiveData<String> getActiveChecklistTitle() {
-        // distinctUntilChanged() is required, because the room database would notify the LiveData 
-        // observers if ANY column in the DbChecklist table changes, not just the "active" attribute.
-        return Transformations.distinctUntilChanged(
-                Transformations.map(
-                        mItemDao.getActiveChecklist(), dbChecklist -> {
-                            if (dbChecklist != null) {
-                                return dbChecklist.getListTitle();
-                            } else {
-                                return null;
-                            }
-                        }));
-    }
-
-    public void setActiveChecklist(@Nullable String listTitle) {
-        // Set the checklist "listTitle" active, set all other checklists "inactive". If title is 
+    static void replaceDatabase(@NonNull Context context,
+                                @NonNull File replacement) throws IOException {
+        // Replace the database file (see ChecklistBackup). Waits until the running transaction
+        // (e.g. a batch of MainViewModel's WritePipeline) is done, and blocks new ones until the
+        // file has been replaced. Afterwards, transactions of the current repository fail, and
+        // the next call of getInstance() creates a repository for the new database.
+        mDatabaseLock.writeLock().lock();
+        try {
+            ChecklistDatabase.replaceDatabaseFile(context, replacement);
+            synchronized (ChecklistRepository.class) {
+                if (INSTANCE != null) {
+                    INSTANCE.mClosed = true;
+                    INSTANCE = null;
+                }
+            }
+        } finally {
+            mDatabaseLock.writeLock().unlock();
+        }
+    }
+
+    public void runInTransaction(@NonNull Runnable body) {
+        // Execute "body" (which may call any of the methods below) in a single database
+        // transaction. LiveData observers are notified once, after the transaction is committed.
+        mDatabaseLock.readLock().lock();
+        try {
+            if (mClosed) {
+                throw new IllegalStateException("The database has been replaced");
+            }
+            boolean outermost = mChangeTracker.beginTransaction();
+            boolean committed = false;
+            try {
+                mDatabase.runInTransaction(body);
+                committed = true;
+            } finally {
+                if (outermost) {
+                    mChangeTracker.endTransaction(committed);
+                }
+            }
+        } finally {
+            mDatabaseLock.readLock().unlock();
+        }
+    }
+
+    public void beginRead() {
+        // Start a read transaction, so that the following queries (e.g. the Cursors of
+        // queryItemsForExport()) see the same state of the database. Must be followed by
+        // endRead() on the same thread.
+        // Unlike runInTransaction(), writers are not blocked meanwhile: the transaction is
+        // "DEFERRED" and read-only, so the connection pool runs it on a secondary connection,
+        // which only holds a snapshot of the write-ahead log, while writers use the primary
+        // connection. Secondary connections only exist with the write-ahead log (see
+        // ChecklistDatabase.getInstance()), otherwise writers wait until endRead()
+        // (see ReadTransactionTest).
+        mDatabaseLock.readLock().lock();
+        if (mClosed) {
+            mDatabaseLock.readLock().unlock();
+            throw new IllegalStateException("The database has been replaced");
+        }
+        mDatabase.getOpenHelper().getWritableDatabase().beginTransactionReadOnly();
+    }
+
+    public void endRead() {
+        // Nothing has been written, so the transaction is not marked as successful.
+        try {
+            mDatabase.getOpenHelper().getWritableDatabase().endTransaction();
+        } finally {
+            mDatabaseLock.readLock().unlock();
+        }
+    }
+
+    @NonNull
+    public SupportSQLiteStatement compileStatement(@NonNull String sql) {
+        // For writing many rows with the same statement (see ChecklistImporter). Must be called
+        // within runInTransaction(), and modifications of items must be reported with
+        // markAllChanged().
+        return mDatabase.compileStatement(sql);
+    }
+
+    public void markAllChanged() {
+        // Notify the observers of all checklists, e.g. after items have been written with
+        // statements from compileStatement().
+        mChangeTracker.markAllChanged();
+    }
+
+    public LiveData<List<DbChecklist>> getAllChecklists(boolean includeTrash) {
+        // Note: the room database would notify the LiveData observers if ANY column in the
+        // DbChecklist table changes, not just the title of a checklist.
+        // The trashed checklists are excluded by the query (unless "includeTrash").
+        return includeTrash ? mItemDao.getAllChecklistsWithTrash() : mItemDao.getAllChecklists();
+    }
+
+    public List<DbChecklist> getChecklists() {
+        // Same as getAllChecklists(true), but not wrapped in a LiveData holder.
+        return mItemDao.getChecklists();
+    }
+
+    public LiveData<DbChecklist> getActiveChecklist() {
+        // Note: the room database would notify the LiveData observers if ANY column in the
+        // DbChecklist table changes (not only if another checklist is selected).
+        // The value is null, if no checklist is active.
+        return mItemDao.getActiveChecklist();
+    }
+
+    public void setActiveChecklist(@Nullable Integer listId) {
+        // Set the checklist "listId" active, set all other checklists "inactive". If "listId" is
         // null, set all checklists inactive.
-        mItemDao.setActiveChecklist(listTitle);
+        // Only a single row is written, the DbChecklist table isn't modified.
+        mItemDao.setActiveChecklist(new DbActiveChecklist(listId));
+    }
+
+    public void updateChecklistTitle(int listId, @NonNull String newListTitle) {
+        // Only a single row is modified, the items reference the checklist by its "listId".
+        mItemDao.update(listId, newListTitle);
     }
 
-    public void updateChecklistTitle(@NonNull String listTitle, @NonNull String newListTitle) {
-        mItemDao.update(listTitle, newListTitle);
+    @Nullable
+    public Integer findChecklist(@NonNull String listTitle) {
+        // Return the "listId" of the checklist (not in the trash) with the title "listTitle", or
+        // null if there is no such checklist.
+        return mItemDao.getChecklistId(listTitle);
     }
 
-    public void insertChecklist(@NonNull String listTitle) {
-        mItemDao.insert(new DbChecklist(listTitle, false));
+    public int insertChecklist(@NonNull String listTitle) {
+        // Returns the "listId" of the new checklist.
+        return (int) mItemDao.insert(new DbChecklist(listTitle));
     }
 
-    public void deleteChecklist(@NonNull String listTitle) {
-        mItemDao.delete(listTitle);
+    public void deleteChecklist(int listId) {
+        // The checklist's items are deleted as well (see ForeignKey in DbChecklistItem).
+        mItemDao.delete(listId);
+        mChangeTracker.markChanged(listId);
+    }
+
+    public void trashChecklist(int listId) {
+        // Only a single row is modified, the items are kept until the trash is purged (see
+        // purgeTrash()).
+        mItemDao.trash(listId, System.currentTimeMillis());
+    }
+
+    public boolean restoreChecklist(int listId) {
+        // Returns false if the checklist hasn't been restored, because it isn't trashed (anymore)
+        // or because its title is used by another checklist.
+        return mItemDao.restore(listId) > 0;
+    }
+
+    public int purgeTrash(long trashedBefore, int batchSize) {
+        // Delete (up to "batchSize" items of) the checklists that have been trashed before
+        // "trashedBefore". The checklists themselves are deleted once their items are gone.
+        // Returns the number of deleted rows, i.e. 0 if there is nothing left to purge.
+        List<Integer> listIds = mItemDao.getExpiredTrash(trashedBefore, batchSize);
+        if (listIds.isEmpty()) {
+            return 0;
+        }
+        int deleted = mItemDao.deleteItems(listIds, batchSize);
+        if (deleted == 0) {
+            deleted = mItemDao.delete(listIds);
+        }
+        for (int listId : listIds) {
+            mChangeTracker.markChanged(listId);
+        }
+        return deleted;
     }
 
     public List<DbChecklistItem> getAllItems() {
@@ -83,46 +233,299 @@ public class ChecklistRepository {
         return mItemDao.getAllItems();
     }
 
-    public List<DbChecklistItem> getItems(@NonNull String listTitle) {
+    public List<DbChecklistItem> getItems(int listId) {
         // Return all items from a checklist.
-        return mItemDao.getItems(listTitle);
+        return mItemDao.getItems(listId);
+    }
+
+    @Nullable
+    public DbChecklistItem findItemByName(int listId, @NonNull String name) {
+        // Return the item in the checklist whose name matches "name" (ignoring case and
+        // whitespace, see DbChecklistItem.normalizeName()), or null if there is no such item.
+        return mItemDao.getItemByNormalizedName(listId, DbChecklistItem.normalizeName(name));
+    }
+
+    @NonNull
+    public Map<String, DbChecklistItem> findItemsByName(int listId,
+                                                        @NonNull Collection<String> names) {
+        // Same as findItemByName(), but for several names at once. Returns the items that exist,
+        // by their normalized name.
+        List<String> normalizedNames = new ArrayList<>(names.size());
+        for (String name : names) {
+            normalizedNames.add(DbChecklistItem.normalizeName(name));
+        }
+        Map<String, DbChecklistItem> items = new HashMap<>();
+        // Older SQLite versions allow at most 999 parameters per query.
+        for (int i = 0; i < normalizedNames.size(); i += MAX_QUERY_PARAMETERS) {
+            for (DbChecklistItem item : mItemDao.getItemsByNormalizedNames(listId,
+                    normalizedNames.subList(
+                            i, Math.min(i + MAX_QUERY_PARAMETERS, normalizedNames.size())))) {
+                items.put(item.getNormalizedName(), item);
+            }
+        }
+        return items;
     }
 
-    public LiveData<List<DbChecklistItem>> getItemsLiveData(@NonNull String listTitle) {
-        // Same as getItems(), but items are wrapped in a LiveData holder.
-        return mItemDao.getItemsLiveData(listTitle);
+    public int countItems(int listId) {
+        // Return the number of items (both checked and unchecked) in the checklist.
+        return mItemDao.countItems(listId, false) + mItemDao.countItems(listId, true);
     }
 
-    public List<DbChecklistItem> getItemSubsetSorted(@NonNull String listTitle,
+    @NonNull
+    public Cursor queryItemsForExport(int listId, boolean isChecked) {
+        // Same order as getItemSubsetSorted() (unchecked) or getCheckedItemsSorted() (checked),
+        // but the rows ("name", "incidence") are read from the returned Cursor, which must be
+        // closed by the caller.
+        return isChecked ? mItemDao.queryCheckedItems(listId) : mItemDao.queryUncheckedItems(listId);
+    }
+
+    public List<DbChecklistItem> getItemSubsetSorted(int listId,
                                                      @NonNull Boolean isChecked) {
         // Return all items from the checklist that are "isChecked".
         // The items are sorted by their "position".
-        return mItemDao.getItemSubsetSorted(listTitle, isChecked);
+        return mItemDao.getItemSubsetSorted(listId, isChecked);
+    }
+
+    public long getVersion(int listId) {
+        // Version of the checklist's items, which is incremented by every modification (see
+        // ChecklistSnapshot.getVersion()).
+        return mChangeTracker.getVersion(listId);
+    }
+
+    public synchronized LiveData<ChecklistSnapshot> getSnapshot(int listId) {
+        // Return the items of the checklist as a snapshot, which is loaded once per change of the
+        // checklist (see ChecklistLiveData). All callers share the same LiveData as long as it's
+        // observed, so it's loaded only once no matter how many views are derived from it.
+        ChecklistLiveData<ChecklistSnapshot> snapshot = mSnapshots.get(listId);
+        if (snapshot == null) {
+            snapshot = new ChecklistLiveData<>(
+                    listId,
+                    () -> loadSnapshot(listId),
+                    mChangeTracker,
+                    mDatabase.getQueryExecutor(),
+                    this::onSnapshotObserversChanged,
+                    ChecklistSnapshot::apply);
+            mSnapshots.put(listId, snapshot);
+        }
+        return snapshot;
+    }
+
+    public LiveData<List<DbItemSummary>> getItemSummaries(int listId) {
+        // Return the summaries of all items of the checklist (in no particular order). They are
+        // only loaded while observed, and updated in memory after small modifications.
+        return new ChecklistLiveData<>(
+                listId,
+                () -> mItemDao.getItemSummaries(listId),
+                mChangeTracker,
+                mDatabase.getQueryExecutor(),
+                null,
+                ChecklistRepository::applyToSummaries);
     }
 
-    public LiveData<List<DbChecklistItem>> getItemSubsetSortedLiveData(@NonNull String listTitle, @NonNull Boolean isChecked) {
-        // Same as getItemSubsetSorted(), but items are wrapped in a LiveData holder.
-        return mItemDao.getItemSubsetSortedLiveData(listTitle, isChecked);
+    public List<DbChecklistItem> getCheckedItemsSorted(int listId) {
+        // Return all checked items from the checklist, sorted by their "incidence" (descending).
+        return mItemDao.getCheckedItemsSorted(listId);
     }
 
     public void updateItems(@NonNull List<DbChecklistItem> items) {
         // Update the database items so they match the items in "items". Their "itemId" is used to
         // find the right items in the database.
         mItemDao.update(items);
+        for (DbChecklistItem item : items) {
+            markChanged(ItemChangeSet.Type.UPDATED, new DbChecklistItem(item));
+        }
     }
 
-    public void insertAndUpdateItems(@NonNull DbChecklistItem itemToInsert, @NonNull List<DbChecklistItem> itemsToUpdate) {
-        // Insert a new item, then update all items in "itemsToUpdate".
-        mItemDao.insertAndUpdate(itemToInsert, itemsToUpdate);
+    public void insertItem(@NonNull DbChecklistItem item) {
+        DbChecklistItem inserted = new DbChecklistItem(item);
+        inserted.setItemId((int) mItemDao.insert(item));
+        markChanged(ItemChangeSet.Type.INSERTED, inserted);
+    }
+
+    public void insertItems(@NonNull List<DbChecklistItem> items) {
+        // Same as insertItem(), but with a single statement for all "items".
+        List<Long> itemIds = mItemDao.insert(items);
+        for (int i = 0; i < items.size(); i++) {
+            DbChecklistItem inserted = new DbChecklistItem(items.get(i));
+            inserted.setItemId(itemIds.get(i).intValue());
+            markChanged(ItemChangeSet.Type.INSERTED, inserted);
+        }
     }
 
     public void deleteItem(@NonNull DbChecklistItem item) {
         mItemDao.delete(item);
+        markChanged(ItemChangeSet.Type.DELETED, new DbChecklistItem(item));
+    }
+
+    public void uncheckAllItems(int listId) {
+        // Flip all checked items, which are placed at the end of the unchecked items (most
+        // frequently used first).
+        runInTransaction(() -> {
+            // The positions are assigned in a single pass over the checked items (in the order
+            // of the index). Numbering the rows in SQL would need window functions, which
+            // require SQLite 3.25 (Android 11).
+            Long maxPosition = mItemDao.getMaxPosition(listId, false);
+            long position = (maxPosition == null) ?
+                    0 : (maxPosition + DbChecklistItem.POSITION_STEP);
+            for (int itemId : mItemDao.getCheckedItemIdsSorted(listId)) {
+                mItemDao.setPosition(itemId, position);
+                position += DbChecklistItem.POSITION_STEP;
+            }
+            mItemDao.uncheckAllItems(listId);
+            mChangeTracker.markChanged(listId);
+        });
+    }
+
+    public void checkAllItems(int listId) {
+        // Flip all unchecked items.
+        mItemDao.checkAllItems(listId);
+        mChangeTracker.markChanged(listId);
+    }
+
+    public void deleteCheckedItems(int listId) {
+        mItemDao.deleteCheckedItems(listId);
+        mChangeTracker.markChanged(listId);
+    }
+
+    public void saveTemplate(int listId) {
+        // Save the unchecked items (and their order) as the checklist's template, replacing the
+        // previous one.
+        runInTransaction(() -> {
+            mItemDao.deleteTemplate(listId);
+            mItemDao.saveTemplate(listId);
+        });
+    }
+
+    public boolean resetToTemplate(int listId) {
+        // Make the unchecked items match the checklist's template: items that are not part of it
+        // are flipped to checked, the template items are flipped to unchecked (or inserted again,
+        // if they have been deleted) and placed in their saved order.
+        // Returns false if there is no template (nothing is modified then).
+        boolean[] hasTemplate = {false};
+        runInTransaction(() -> {
+            if (mItemDao.countTemplateItems(listId) > 0) {
+                hasTemplate[0] = true;
+                mItemDao.checkItemsNotInTemplate(listId);
+                mItemDao.insertMissingTemplateItems(listId);
+                mItemDao.uncheckTemplateItems(listId);
+                mChangeTracker.markChanged(listId);
+            }
+        });
+        return hasTemplate[0];
+    }
+
+    @Nullable
+    public Long getMaxPosition(int listId, boolean isChecked) {
+        // Return the largest "position" value of the items that are "isChecked".
+        // Returns null if there are no such items.
+        return mItemDao.getMaxPosition(listId, isChecked);
     }
 
-    public long getMinIncidence(@NonNull String listTitle) {
+    public long getMinIncidence(int listId) {
         // Return the smallest "incidence" value in the checklist.
         // Returns 0 if the list is empty.
-        return mItemDao.getMinIncidence(listTitle);
+        return mItemDao.getMinIncidence(listId);
+    }
+
+    @NonNull
+    public List<String> searchCatalog(@NonNull String prefix, int limit) {
+        // Return the names of the (at most "limit") most used items in the catalog (see
+        // DbCatalogItem) that contain words starting with each of the words in "prefix".
+        // The catalog contains the items of all checklists, including deleted ones.
+        StringBuilder match = new StringBuilder();
+        for (String word : DbChecklistItem.normalizeName(prefix).split(" ")) {
+            // Quotes would be interpreted by the full-text query syntax.
+            word = word.replace("\"", "");
+            if (!word.isEmpty()) {
+                match.append('"').append(word).append("*\" ");
+            }
+        }
+        if (match.length() == 0) {
+            return mItemDao.getCatalogMostUsed(limit);
+        } else {
+            return mItemDao.searchCatalog(match.toString().trim(), limit);
+        }
+    }
+
+    public synchronized void loadCheckedItems(int listId, int count) {
+        // Make sure that the snapshot of the checklist contains (at least) the first "count"
+        // checked items. The window grows in steps of CHECKED_WINDOW_SIZE.
+        int window = getCheckedWindow(listId);
+        if (count > window) {
+            window = ((count + CHECKED_WINDOW_SIZE - 1) / CHECKED_WINDOW_SIZE) * CHECKED_WINDOW_SIZE;
+            mCheckedWindows.put(listId, window);
+            ChecklistLiveData<ChecklistSnapshot> snapshot = mSnapshots.get(listId);
+            if (snapshot != null) {
+                snapshot.reload();
+            }
+        }
+    }
+
+    private void markChanged(@NonNull ItemChangeSet.Type type, @NonNull DbChecklistItem item) {
+        // Report the modification in detail, so that the snapshot can be updated in memory (see
+        // ChecklistSnapshot.apply()). "item" must be a copy, since the caller may still modify
+        // its own instance.
+        mChangeTracker.markChanged(
+                item.getBelongsToChecklist(), new ItemChangeSet.Change(type, item));
+    }
+
+    @Nullable
+    private static List<DbItemSummary> applyToSummaries(@NonNull List<DbItemSummary> summaries,
+                                                        @NonNull ItemChangeSet changes) {
+        // Same as ChecklistSnapshot.apply(), but for the summaries (which may already contain
+        // the changes as well). Returns null if the summaries have to be loaded again.
+        if (changes.size() > ChecklistSnapshot.MAX_CHANGES_TO_APPLY) {
+            return null;
+        }
+        Map<Integer, DbItemSummary> result = new LinkedHashMap<>();
+        for (DbItemSummary summary : summaries) {
+            result.put(summary.getItemId(), summary);
+        }
+        for (ItemChangeSet.Change change : changes.getChanges()) {
+            DbChecklistItem item = change.item;
+            if (item.getItemId() == null) {
+                return null;
+            }
+            if (change.type == ItemChangeSet.Type.DELETED) {
+                result.remove(item.getItemId());
+            } else {
+                result.put(item.getItemId(), new DbItemSummary(
+                        item.getItemId(), item.getName(), item.getIncidence()));
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private synchronized int getCheckedWindow(int listId) {
+        Integer window = mCheckedWindows.get(listId);
+        return (window != null) ? window : CHECKED_WINDOW_SIZE;
+    }
+
+    private ChecklistSnapshot loadSnapshot(int listId) {
+        // All queries in the same transaction, so the snapshot is consistent.
+        int window = getCheckedWindow(listId);
+        // Modifications are reported after they have been committed, so the queries see at
+        // least this version.
+        long version = mChangeTracker.getVersion(listId);
+        return mDatabase.runInTransaction(() -> new ChecklistSnapshot(
+                mItemDao.getItemSubsetSorted(listId, false),
+                mItemDao.getCheckedItemsSorted(listId, window),
+                mItemDao.countItems(listId, true),
+                version));
+    }
+
+    private synchronized void onSnapshotObserversChanged(
+            ChecklistLiveData<ChecklistSnapshot> snapshot) {
+        // Reference counting: a snapshot is shared as long as it has active observers. If it
+        // becomes active again later (e.g. observed via a LiveData derived from it), it's shared
+        // again, unless another snapshot of the same checklist has been created in the meantime.
+        if (snapshot.hasActiveObservers()) {
+            if (!mSnapshots.containsKey(snapshot.getListId())) {
+                mSnapshots.put(snapshot.getListId(), snapshot);
+            }
+        } else if (mSnapshots.values().remove(snapshot)) {
+            // Start with a small window again, the next time the checklist is displayed.
+            mCheckedWindows.remove(snapshot.getListId());
+        }
     }
-}
\ No newline at end of file
+}
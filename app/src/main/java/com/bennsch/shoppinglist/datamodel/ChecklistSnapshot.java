@@ -0,0 +1,169 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+public class ChecklistSnapshot {
+    /*
+     *  Immutable state of all items of a single checklist, loaded at once. All views on a
+     *  checklist (sorted subsets, emptiness etc.) are derived from the same snapshot in memory,
+     *  instead of running a separate query for each of them. The summaries of all items (for the
+     *  suggestions) are not included, they are only loaded while they are observed (see
+     *  ChecklistRepository.getItemSummaries()).
+     *
+     *  Checked items can pile up to thousands, so only a window (the first items, i.e. the most
+     *  frequently used ones) of them is loaded. The window grows as the user scrolls down (see
+     *  ChecklistRepository.loadCheckedItems()).
+     *
+     *  After small modifications (e.g. a single flip), the next snapshot is derived from the
+     *  previous one in memory (see apply()), instead of being loaded from the database.
+     *
+     *  Note: the DbChecklistItems are mutable, but they must not be modified (they are shared by
+     *  all observers of the snapshot).
+     */
+
+    // Larger change sets are loaded from the database instead (see apply()).
+    static final int MAX_CHANGES_TO_APPLY = 16;
+
+    private final List<DbChecklistItem> mUncheckedSorted;
+    private final List<DbChecklistItem> mCheckedSorted;
+    // Number of all checked items, including those outside of the window.
+    private final int mCheckedCount;
+    // Version of the checklist the snapshot contains (at least).
+    private final long mVersion;
+
+
+    ChecklistSnapshot(@NonNull List<DbChecklistItem> uncheckedSorted,
+                      @NonNull List<DbChecklistItem> checkedSortedWindow,
+                      int checkedCount,
+                      long version) {
+        // Unchecked items must be sorted by position, checked items by incidence (see ItemDao).
+        // "version" must have been read before loading the items (see
+        // ChecklistChangeTracker.getVersion()).
+        mUncheckedSorted = Collections.unmodifiableList(uncheckedSorted);
+        mCheckedSorted = Collections.unmodifiableList(checkedSortedWindow);
+        mCheckedCount = checkedCount;
+        mVersion = version;
+    }
+
+    @NonNull
+    public List<DbChecklistItem> getItemsSorted(boolean isChecked) {
+        // Unchecked items are sorted by "position", checked items by "incidence" (descending).
+        // Only the loaded window of the checked items is returned.
+        return isChecked ? mCheckedSorted : mUncheckedSorted;
+    }
+
+    public long getVersion() {
+        // All modifications up to this version of the checklist are contained in the snapshot
+        // (see ChecklistRepository.getVersion()).
+        return mVersion;
+    }
+
+    public int getItemCount() {
+        return mUncheckedSorted.size() + mCheckedCount;
+    }
+
+    public boolean isEmpty() {
+        return getItemCount() == 0;
+    }
+
+    @Nullable
+    ChecklistSnapshot apply(@NonNull ItemChangeSet changes) {
+        // Return a new snapshot with "changes" applied, or null if that's not possible (then the
+        // snapshot has to be loaded from the database).
+        // The snapshot might have been loaded while the changes were being committed, i.e. it
+        // may already contain them. So every changed item is removed first (if it's there), and
+        // then inserted again with its new values. If a changed item isn't loaded, it's either
+        // a checked item outside of the window, or it doesn't exist (yet, or anymore). Where
+        // that can't be told apart, the snapshot is loaded again.
+        if (changes.size() > MAX_CHANGES_TO_APPLY) {
+            return null;
+        }
+        List<DbChecklistItem> unchecked = new ArrayList<>(mUncheckedSorted);
+        List<DbChecklistItem> checked = new ArrayList<>(mCheckedSorted);
+        int checkedCount = mCheckedCount;
+        for (ItemChangeSet.Change change : changes.getChanges()) {
+            DbChecklistItem item = change.item;
+            if (item.getItemId() == null) {
+                return null;
+            }
+            DbChecklistItem oldItem = removeItem(unchecked, item.getItemId());
+            if (oldItem == null) {
+                oldItem = removeItem(checked, item.getItemId());
+                if (oldItem != null) {
+                    checkedCount--;
+                }
+            }
+            boolean loaded = (oldItem != null);
+            boolean windowComplete = (checked.size() == checkedCount);
+            if (!loaded) {
+                if (windowComplete) {
+                    // All items are loaded, so the item doesn't exist.
+                    if (change.type == ItemChangeSet.Type.UPDATED) {
+                        return null;
+                    }
+                } else if (change.type == ItemChangeSet.Type.DELETED) {
+                    // Outside of the window, or it has already been deleted.
+                    return null;
+                } else if (change.type == ItemChangeSet.Type.UPDATED) {
+                    // All unchecked items are loaded, so it's a checked item outside of the
+                    // window.
+                    checkedCount--;
+                }
+            }
+            if (change.type == ItemChangeSet.Type.DELETED) {
+                continue;
+            }
+            if (!item.isChecked()) {
+                if (item.getPosition() == null) {
+                    return null;
+                }
+                int index = 0;
+                while ((index < unchecked.size()) &&
+                       (unchecked.get(index).getPosition() < item.getPosition())) {
+                    index++;
+                }
+                unchecked.add(index, item);
+            } else {
+                int index = 0;
+                while ((index < checked.size()) && isSortedBefore(checked.get(index), item)) {
+                    index++;
+                }
+                // If it would be the last item of the window, but there are more items outside
+                // of the window, it belongs outside of the window as well.
+                if ((index < checked.size()) || (checked.size() == checkedCount)) {
+                    checked.add(index, item);
+                } else if (!loaded && (change.type == ItemChangeSet.Type.INSERTED)) {
+                    // Outside of the window, it might have been inserted already.
+                    return null;
+                }
+                checkedCount++;
+            }
+        }
+        return new ChecklistSnapshot(unchecked, checked, checkedCount, changes.getVersion());
+    }
+
+    @Nullable
+    private static DbChecklistItem removeItem(@NonNull List<DbChecklistItem> items, int itemId) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getItemId() == itemId) {
+                return items.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSortedBefore(@NonNull DbChecklistItem a, @NonNull DbChecklistItem b) {
+        // Order of the checked items: incidence (descending), then itemId (descending), same as
+        // ItemDao.getCheckedItemsSorted().
+        if (a.getIncidence() != b.getIncidence()) {
+            return a.getIncidence() > b.getIncidence();
+        }
+        return a.getItemId() > b.getItemId();
+    }
+}
@@ -0,0 +1,57 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+
+// If the active checklist is deleted, "listId" is set to null (i.e. no checklist is active).
+@Entity(foreignKeys = @ForeignKey(
+            entity = DbChecklist.class,
+            parentColumns = "listId",
+            childColumns = "listId",
+            onDelete = ForeignKey.SET_NULL),
+        indices = {
+            @Index("listId")}
+)
+public class DbActiveChecklist {
+    /*
+     *  Single-row table that holds the checklist which is currently selected by the user.
+     *
+     *  It's kept separate from DbChecklist, so that selecting another checklist only writes a
+     *  single row, and doesn't notify the observers of the DbChecklist table.
+     */
+
+    // The id of the (only) row.
+    static final int ROW_ID = 0;
+
+    @PrimaryKey
+    private final int id;
+
+    // Null if no checklist is active.
+    @Nullable
+    private final Integer listId;
+
+    public DbActiveChecklist(int id, @Nullable Integer listId) {
+        // Used by Room. "id" must be ROW_ID.
+        this.id = id;
+        this.listId = listId;
+    }
+
+    @Ignore
+    public DbActiveChecklist(@Nullable Integer listId) {
+        this(ROW_ID, listId);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Nullable
+    public Integer getListId() {
+        return listId;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+
+// The unique index on "normalizedName" allows updating an entry by name (see the triggers in
+// ChecklistDatabase). The composite index matches the ranking of the suggestions, so the most
+// used entries can be read without sorting the whole catalog.
+@Entity(indices = {
+            @Index(value = "normalizedName", unique = true),
+            @Index({"useCount", "lastUsed"})}
+)
+public class DbCatalogItem {
+    /*
+     *  An entry in the catalog of every item name that has ever been entered, in any checklist.
+     *  Entries are never deleted together with the items, so they can still be suggested later.
+     *
+     *  The catalog is maintained by triggers on DbChecklistItem (see ChecklistDatabase), and is
+     *  searched via its full-text index (see DbCatalogItemFts).
+     */
+
+    // Also the "rowid" the full-text index refers to.
+    @PrimaryKey(autoGenerate = true)
+    private int catalogId;
+
+    // The name as most recently entered by the user.
+    @NonNull private String name;
+
+    // See DbChecklistItem.normalizeName().
+    @NonNull private String normalizedName;
+
+    // How often the item has been added to, or put back on, a checklist.
+    private long useCount;
+
+    // When the item was last used (milliseconds since epoch).
+    private long lastUsed;
+
+    public DbCatalogItem(@NonNull String name,
+                         @NonNull String normalizedName,
+                         long useCount,
+                         long lastUsed) {
+        this.name = name;
+        this.normalizedName = normalizedName;
+        this.useCount = useCount;
+        this.lastUsed = lastUsed;
+    }
+
+    public int getCatalogId() {
+        return catalogId;
+    }
+
+    public void setCatalogId(int catalogId) {
+        // Needs to be publicly available so that auto generated Room code can access it.
+        this.catalogId = catalogId;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @NonNull
+    public String getNormalizedName() {
+        return normalizedName;
+    }
+
+    public long getUseCount() {
+        return useCount;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+}
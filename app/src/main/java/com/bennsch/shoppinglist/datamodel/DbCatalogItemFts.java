@@ -0,0 +1,33 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+
+// External content table: the names are only stored in DbCatalogItem, this table only holds the
+// full-text index. Room keeps both in sync via triggers. "prefix" adds indices for 2 and 3
+// character prefixes, which is what is usually typed before picking a suggestion.
+// Note: FTS5 is not available in the SQLite of all supported Android versions.
+@Fts4(contentEntity = DbCatalogItem.class,
+        tokenizer = FtsOptions.TOKENIZER_UNICODE61,
+        prefix = {2, 3})
+@Entity
+public class DbCatalogItemFts {
+    /*
+     *  Full-text index on the names in the catalog (see DbCatalogItem). The "rowid" of an entry
+     *  is the "catalogId" of the DbCatalogItem it belongs to.
+     */
+
+    @NonNull private final String name;
+
+    public DbCatalogItemFts(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+}
@@ -1,27 +1,56 @@
 package com.bennsch.shoppinglist.datamodel;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 
-@Entity
+// The title is indexed (and unique), but it's not the primary key, so that renaming a checklist
+// only modifies a single row instead of every item that belongs to it.
+// Titles only need to be unique among the checklists that are not trashed: a trashed checklist
+// keeps its title (so it can be restored), and is distinguished by the time it was trashed.
+@Entity(indices = {
+            @Index(value = {"listTitle", "trashedAt"}, unique = true),
+            @Index(value = "trashedAt")}
+)
 public class DbChecklist {
     /*
      *  Represents a list that contains multiple DbCheckListItems. The items are linked to a
      *  specific list via "ForeignKeys" (see DbChecklistItem).
      */
 
-    @PrimaryKey
+    // autoGenerate: null is treated as "non-set".
+    @PrimaryKey(autoGenerate = true)
+    private Integer listId;
+
     @NonNull private final String listTitle;
 
-    // True, if this checklist is currently selected by the user, false otherwise.
-    // TODO: consider using separate table (1 column) for "active checklist"
-    private final boolean active;
+    // Milliseconds since epoch when the checklist was moved to the trash, 0 if it's not trashed.
+    // Trashed checklists (and their items) are deleted once the retention period has expired
+    // (see ChecklistRepository.purgeTrash()).
+    @ColumnInfo(defaultValue = "0")
+    private long trashedAt;
+
+    // Note: the checklist that is currently selected by the user is stored separately (see
+    // DbActiveChecklist).
 
-    public DbChecklist(@NonNull String listTitle, boolean active) {
+    public DbChecklist(@NonNull String listTitle) {
+        // Only the database should generate a "listId" to ensure uniqueness!
+        // "null" means "generate a new id".
+        this.listId = null;
         this.listTitle = listTitle;
-        this.active = active;
+        this.trashedAt = 0;
+    }
+
+    public Integer getListId() {
+        return listId;
+    }
+
+    public void setListId(Integer listId) {
+        // Needs to be publicly available so that auto generated Room code can access it.
+        this.listId = listId;
     }
 
     @NonNull
@@ -29,7 +58,16 @@ public class DbChecklist {
         return listTitle;
     }
 
-    public boolean isActive() {
-        return active;
+    public long getTrashedAt() {
+        return trashedAt;
+    }
+
+    public void setTrashedAt(long trashedAt) {
+        // Needs to be publicly available so that auto generated Room code can access it.
+        this.trashedAt = trashedAt;
+    }
+
+    public boolean isTrashed() {
+        return trashedAt != 0;
     }
-}
\ No newline at end of file
+}
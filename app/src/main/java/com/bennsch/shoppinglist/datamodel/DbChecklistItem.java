@@ -5,37 +5,56 @@ import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.util.Locale;
+
 
 // ForeignKey enforces a relationship between DbChecklist and the DbChecklistItems that belong to
-// it. ForeignKey.CASCADE causes all items that belong to a checklist to be deleted/updated if that
-// list is deleted/updated.
+// it. ForeignKey.CASCADE causes all items that belong to a checklist to be deleted if that list is
+// deleted. The "listId" of a checklist never changes, so no "onUpdate" action is required.
+// The composite index matches the "WHERE belongsToChecklist == ? AND isChecked == ? ORDER BY
+// position" queries, so SQLite can search it directly instead of scanning and sorting the items.
+// It's also used for the ForeignKey, since "belongsToChecklist" is its leftmost column.
+// Checked items are sorted by incidence instead, which is backed by a separate index.
+// The unique index ensures that item names are unique within a checklist (see "normalizedName")
+// and allows looking up a single item by its name.
 @Entity(indices = {
-            @Index("belongsToChecklist")},
+            @Index({"belongsToChecklist", "isChecked", "position"}),
+            @Index({"belongsToChecklist", "isChecked", "incidence"}),
+            @Index(value = {"belongsToChecklist", "normalizedName"}, unique = true)},
         foreignKeys = {
             @ForeignKey(
                 entity = DbChecklist.class,
-                parentColumns = "listTitle",
+                parentColumns = "listId",
                 childColumns = "belongsToChecklist",
-                onDelete = ForeignKey.CASCADE,
-                onUpdate = ForeignKey.CASCADE)}
+                onDelete = ForeignKey.CASCADE)}
 )
 public class DbChecklistItem {
     /*
      *  Represents a single item in a checklist.
      */
 
+    // Default distance between the positions of two adjacent items. The gaps allow moving or
+    // inserting an item by only updating its own position (see PositionHelper).
+    public static final long POSITION_STEP = 1L << 32;
+
     // autoGenerate: null is treated as "non-set".
     @PrimaryKey(autoGenerate = true)
     private Integer itemId;
 
-    // Items can have duplicate names, since itemId is unique.
+    // The name as entered by the user.
     @NonNull private String name;
 
-    // Link this item to a checklist.
-    @NonNull private final String belongsToChecklist;
+    // The name with whitespace collapsed and case folded (see normalizeName()). Two items with the
+    // same "normalizedName" cannot exist in the same checklist.
+    @ColumnInfo(defaultValue = "") // Default value required for database migration.
+    @NonNull private String normalizedName;
+
+    // Link this item to a checklist (its "listId").
+    private final int belongsToChecklist;
 
     // Item is checked or not.
     private boolean isChecked;
@@ -44,7 +63,9 @@ public class DbChecklistItem {
     // have the same "position" as long as "isChecked" differs. We need to keep track of the
     // position separately like this, because checked and unchecked items will be displayed as
     // separate lists and we need the flexibility to control their positions independently.
-    private Integer position;
+    // Positions are sparse (see POSITION_STEP), only their order matters.
+    // Checked items are sorted by "incidence", so their position is not used (null).
+    private Long position;
 
     // How often the user has "touched" this item. Incremented whenever the user checks or unchecks
     // the item.
@@ -53,19 +74,32 @@ public class DbChecklistItem {
 
     public DbChecklistItem(@NonNull String name,
                            boolean isChecked,
-                           Integer position,
-                           @NonNull String belongsToChecklist,
+                           Long position,
+                           int belongsToChecklist,
                            long incidence) {
         // Only the database should generate an "itemId" to ensure uniqueness!
         // "null" means "generate a new id".
         this.itemId = null;
         this.name = name;
+        this.normalizedName = normalizeName(name);
         this.isChecked = isChecked;
         this.position = position;
         this.incidence = incidence;
         this.belongsToChecklist = belongsToChecklist;
     }
 
+    @Ignore
+    DbChecklistItem(@NonNull DbChecklistItem other) {
+        // Copy of "other", including its "itemId".
+        this.itemId = other.itemId;
+        this.name = other.name;
+        this.normalizedName = other.normalizedName;
+        this.isChecked = other.isChecked;
+        this.position = other.position;
+        this.incidence = other.incidence;
+        this.belongsToChecklist = other.belongsToChecklist;
+    }
+
     public Integer getItemId() {
         return itemId;
     }
@@ -75,12 +109,11 @@ public class DbChecklistItem {
         this.itemId = itemId;
     }
 
-    @NonNull
-    public String getBelongsToChecklist() {
+    public int getBelongsToChecklist() {
         return belongsToChecklist;
     }
 
-    public void setPosition(Integer position) {
+    public void setPosition(Long position) {
         this.position = position;
     }
 
@@ -99,6 +132,31 @@ public class DbChecklistItem {
 
     public void setName(@NonNull String name) {
         this.name = name;
+        this.normalizedName = normalizeName(name);
+    }
+
+    @NonNull
+    public String getNormalizedName() {
+        return normalizedName;
+    }
+
+    public void setNormalizedName(@NonNull String normalizedName) {
+        // Needs to be publicly available so that auto generated Room code can access it.
+        this.normalizedName = normalizedName;
+    }
+
+    @NonNull
+    public static String stripWhitespace(@NonNull String s) {
+        // Remove leading and trailing spaces, and replace all multi-spaces with single spaces.
+        // Applied to item names and checklist titles before they are stored.
+        return s.strip().replaceAll(" +", " ");
+    }
+
+    @NonNull
+    public static String normalizeName(@NonNull String name) {
+        // Remove leading and trailing whitespace, collapse any other whitespace into single spaces
+        // and fold the case, so that e.g. " Orange  juice" and "orange Juice" are the same item.
+        return name.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
     }
 
     public boolean isChecked() {
@@ -110,7 +168,7 @@ public class DbChecklistItem {
     }
 
     @Nullable
-    public Integer getPosition() {
+    public Long getPosition() {
         return position;
     }
 }
\ No newline at end of file
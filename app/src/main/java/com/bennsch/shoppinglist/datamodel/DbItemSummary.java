@@ -0,0 +1,36 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+
+
+public class DbItemSummary {
+    /*
+     *  The columns of a DbChecklistItem that are needed for every item of a checklist, even if
+     *  the item itself isn't loaded (see ChecklistRepository.getItemSummaries()), e.g. for
+     *  autocomplete suggestions.
+     */
+
+    private final int itemId;
+    @NonNull private final String name;
+    private final long incidence;
+
+    public DbItemSummary(int itemId, @NonNull String name, long incidence) {
+        // Used by Room (the parameter names must match the columns).
+        this.itemId = itemId;
+        this.name = name;
+        this.incidence = incidence;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public long getIncidence() {
+        return incidence;
+    }
+}
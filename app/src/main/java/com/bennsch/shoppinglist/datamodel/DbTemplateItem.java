@@ -0,0 +1,60 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+
+// The template is deleted together with its checklist. The primary key also serves as the index
+// for the ForeignKey, since "belongsToChecklist" is its leftmost column.
+@Entity(primaryKeys = {"belongsToChecklist", "normalizedName"},
+        foreignKeys = {
+            @ForeignKey(
+                entity = DbChecklist.class,
+                parentColumns = "listId",
+                childColumns = "belongsToChecklist",
+                onDelete = ForeignKey.CASCADE)}
+)
+public class DbTemplateItem {
+    /*
+     *  An item of the template of a checklist, i.e. of the unchecked items as they were when the
+     *  template was saved. Resetting the checklist restores them (see ChecklistRepository).
+     *
+     *  Only written and read via set-based queries (see ChecklistDatabase.ItemDao).
+     */
+
+    private final int belongsToChecklist;
+
+    // See DbChecklistItem.
+    @NonNull private final String normalizedName;
+    @NonNull private final String name;
+    private final long position;
+
+    public DbTemplateItem(int belongsToChecklist,
+                          @NonNull String normalizedName,
+                          @NonNull String name,
+                          long position) {
+        this.belongsToChecklist = belongsToChecklist;
+        this.normalizedName = normalizedName;
+        this.name = name;
+        this.position = position;
+    }
+
+    public int getBelongsToChecklist() {
+        return belongsToChecklist;
+    }
+
+    @NonNull
+    public String getNormalizedName() {
+        return normalizedName;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
@@ -0,0 +1,60 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+public class ItemChangeSet {
+    /*
+     *  The modifications of a checklist's items made by a single (committed) transaction, in the
+     *  order they have been written by ChecklistRepository. Items are identified by their itemId.
+     *
+     *  The change sets are published by ChecklistChangeTracker, so that the snapshot of a
+     *  checklist can be updated in memory instead of being queried again (see
+     *  ChecklistSnapshot.apply()).
+     */
+
+    public enum Type {
+        INSERTED,
+        UPDATED,
+        DELETED
+    }
+
+    public static class Change {
+
+        @NonNull public final Type type;
+        // The item as it has been written (or deleted).
+        @NonNull public final DbChecklistItem item;
+
+        Change(@NonNull Type type, @NonNull DbChecklistItem item) {
+            this.type = type;
+            this.item = item;
+        }
+    }
+
+    private final List<Change> mChanges;
+    // Version of the checklist after the changes (see ChecklistChangeTracker.getVersion()).
+    private final long mVersion;
+
+
+    ItemChangeSet(@NonNull List<Change> changes, long version) {
+        mChanges = Collections.unmodifiableList(new ArrayList<>(changes));
+        mVersion = version;
+    }
+
+    @NonNull
+    public List<Change> getChanges() {
+        return mChanges;
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public int size() {
+        return mChanges.size();
+    }
+}
@@ -28,19 +28,21 @@ public class EditListDialog extends DialogFragment {
     // recreated on e.g. screen rotation and arguments would be lost) Using "onAttach()" is
     // recommended by API doc.
     public interface DialogListener{
-        void editListDialog_onSafeClicked(String oldTitle, String newTitle);
-        void editListDialog_onDeleteClicked(String listTitle);
+        void editListDialog_onSafeClicked(int listId, String newTitle);
+        void editListDialog_onDeleteClicked(int listId);
         String editListDialog_onValidateTitle(String title);
     }
 
+    private static final String ARG_LIST_ID = "list_id";
     private static final String ARG_LIST_TITLE = "list_title";
 
     private DialogListener mListener;
     private AlertDialog mConfirmationDialog;
 
 
-    public static EditListDialog newInstance(String listTitle) {
+    public static EditListDialog newInstance(int listId, String listTitle) {
         Bundle args = new Bundle();
+        args.putInt(ARG_LIST_ID, listId);
         args.putString(ARG_LIST_TITLE, listTitle);
         EditListDialog fragment = new EditListDialog();
         fragment.setArguments(args);
@@ -74,6 +76,7 @@ public class EditListDialog extends DialogFragment {
 
         Bundle args = getArguments();
         assert args != null;
+        int listId = getArguments().getInt(ARG_LIST_ID);
         String listTitle = getArguments().getString(ARG_LIST_TITLE);
         assert listTitle != null;
 
@@ -91,7 +94,7 @@ public class EditListDialog extends DialogFragment {
                 .setNeutralButton(getString(R.string.dialog_edit_list_delete_list), null) // OnClickListener is set in onShow() callback
                 .setPositiveButton(getString(R.string.dialog_edit_list_save), (dialog, which) ->
                         mListener.editListDialog_onSafeClicked(
-                                listTitle,
+                                listId,
                                 Objects.requireNonNull(binding.listTitle.getText()).toString()));
         AlertDialog dialog = builder.create();
         binding.listTitle.setText(listTitle);
@@ -124,7 +127,7 @@ public class EditListDialog extends DialogFragment {
             // Add listener here to prevent the dialog from closing when the button is pressed.
             ((AlertDialog) dlg)
                     .getButton(DialogInterface.BUTTON_NEUTRAL)
-                    .setOnClickListener(v -> showConfirmationDialog(listTitle));
+                    .setOnClickListener(v -> showConfirmationDialog(listId, listTitle));
             // Change color of the "Delete" button.
             Context context = getContext();
             assert context != null: "getContext() returned null";
@@ -138,7 +141,7 @@ public class EditListDialog extends DialogFragment {
         return dialog;
     }
 
-    private void showConfirmationDialog(String listTitle) {
+    private void showConfirmationDialog(int listId, String listTitle) {
         Context context = getContext();
         assert context != null: "getContext() returned null";
         // MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(getContext());
@@ -147,7 +150,7 @@ public class EditListDialog extends DialogFragment {
                 .setMessage(getString(R.string.dialog_edit_list_confirm, listTitle))
                 .setNegativeButton(getString(R.string.dialog_cancel), null)
                 .setPositiveButton(getString(R.string.dialog_edit_list_delete), (dialog, which) -> {
-                    mListener.editListDialog_onDeleteClicked(listTitle);
+                    mListener.editListDialog_onDeleteClicked(listId);
                     dismiss(); // Close the dialog.
                 });
         mConfirmationDialog = builder.create();
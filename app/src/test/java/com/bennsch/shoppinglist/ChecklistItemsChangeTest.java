@@ -0,0 +1,49 @@
+package com.bennsch.shoppinglist;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the changes published by the ChecklistItemsModel.
+ */
+public class ChecklistItemsChangeTest {
+
+    @Test
+    public void contentChange_persistedItems_onlyChangedContents() {
+        // "Eggs" has been written to the database (new id), "Milk" has been renamed and "Salt"
+        // has been used again.
+        List<ChecklistItem> base = Arrays.asList(
+                new ChecklistItem(-1, "Eggs", 0),
+                new ChecklistItem(1, "Milk", 0),
+                new ChecklistItem(2, "Salt", 3));
+        List<ChecklistItem> result = Arrays.asList(
+                new ChecklistItem(5, "Eggs", 0),
+                new ChecklistItem(1, "milk", 0),
+                new ChecklistItem(2, "Salt", 4));
+        ChecklistItemsChange change = ChecklistItemsModel.contentChange(base, result);
+        assertNotNull(change);
+        List<ChecklistItemsChange.Operation> operations = change.getOperations();
+        assertEquals(2, operations.size());
+        assertEquals(ChecklistItemsChange.Type.CHANGED, operations.get(0).type);
+        assertEquals(1, operations.get(0).position);
+        assertEquals(ChecklistItemsChange.PAYLOAD_NAME, operations.get(0).payload);
+        assertEquals(2, operations.get(1).position);
+        assertEquals(ChecklistItemsChange.PAYLOAD_INCIDENCE, operations.get(1).payload);
+    }
+
+    @Test
+    public void contentChange_reorderedItems_null() {
+        List<ChecklistItem> base = Arrays.asList(
+                new ChecklistItem(1, "Milk", 0),
+                new ChecklistItem(2, "Salt", 0));
+        List<ChecklistItem> result = Arrays.asList(
+                new ChecklistItem(2, "Salt", 0),
+                new ChecklistItem(1, "Milk", 0));
+        assertNull(ChecklistItemsModel.contentChange(base, result));
+        assertNull(ChecklistItemsModel.contentChange(base, result.subList(0, 1)));
+    }
+}
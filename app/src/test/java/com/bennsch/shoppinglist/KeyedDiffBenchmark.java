@@ -0,0 +1,195 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares KeyedDiff against DiffUtil on the JVM. Not run by default, since it takes a while:
+ *
+ *   ./gradlew testDebugUnitTest -Pbenchmark=true --tests '*KeyedDiffBenchmark'
+ *
+ * The results are printed to the test's standard output.
+ */
+public class KeyedDiffBenchmark {
+
+    private static final int[] SIZES = {100, 1_000, 10_000, 50_000};
+    // DiffUtil takes O(n * d), which gets out of hand for shuffled lists.
+    private static final int MAX_SHUFFLE_SIZE_DIFF_UTIL = 10_000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 7;
+
+    @Test
+    public void benchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        System.out.println(String.format("%-24s %8s %14s %14s", "trace", "size", "DiffUtil [ms]",
+                "KeyedDiff [ms]"));
+        for (int size : SIZES) {
+            List<ChecklistItem> items = makeItems(size);
+            run("flip (re-sort)", size, items, flipTrace(items));
+            run("drag move", size, items, moveTrace(items));
+            run("insert + delete", size, items, insertDeleteTrace(items));
+            run("shuffle", size, items, shuffleTrace(items));
+        }
+    }
+
+    private void run(String trace, int size, List<ChecklistItem> oldItems,
+                     List<ChecklistItem> newItems) {
+        String diffUtil = "-";
+        if (!trace.equals("shuffle") || (size <= MAX_SHUFFLE_SIZE_DIFF_UTIL)) {
+            diffUtil = String.format("%.3f", median(() -> {
+                DiffUtil.calculateDiff(new DiffUtilCallback(oldItems, newItems))
+                        .dispatchUpdatesTo(NO_OP);
+                return null;
+            }));
+        }
+        String keyedDiff = String.format("%.3f", median(() -> {
+            KeyedDiff.calculateDiff(oldItems, newItems, new KeyedDiffCallback())
+                    .dispatchUpdatesTo(NO_OP);
+            return null;
+        }));
+        System.out.println(String.format("%-24s %8d %14s %14s", trace, size, diffUtil, keyedDiff));
+    }
+
+    private static double median(Supplier<Void> diff) {
+        // Median of the measured runs, in milliseconds.
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            diff.get();
+        }
+        double[] times = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            diff.get();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2];
+    }
+
+    private static List<ChecklistItem> makeItems(int size) {
+        // Checked items, sorted by incidence (descending).
+        List<ChecklistItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new ChecklistItem(i, "Item " + i, size - i));
+        }
+        return items;
+    }
+
+    private static List<ChecklistItem> flipTrace(List<ChecklistItem> items) {
+        // Ten items from the bottom are flipped twice each (i.e. checked again), which moves
+        // them to the top.
+        List<ChecklistItem> result = new ArrayList<>(items);
+        Random random = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            int index = result.size() / 2 + random.nextInt(result.size() / 2);
+            ChecklistItem item = result.remove(index);
+            result.add(0, new ChecklistItem(item.getItemId(), item.getName(),
+                    result.get(0).getIncidence() + 1));
+        }
+        return result;
+    }
+
+    private static List<ChecklistItem> moveTrace(List<ChecklistItem> items) {
+        // A single item is dragged from the top to the bottom.
+        List<ChecklistItem> result = new ArrayList<>(items);
+        result.add(result.remove(0));
+        return result;
+    }
+
+    private static List<ChecklistItem> insertDeleteTrace(List<ChecklistItem> items) {
+        // Some items are deleted, some new ones appended.
+        List<ChecklistItem> result = new ArrayList<>(items);
+        Random random = new Random(2);
+        for (int i = 0; i < 10; i++) {
+            result.remove(random.nextInt(result.size()));
+            result.add(new ChecklistItem(items.size() + i, "New item " + i, 0));
+        }
+        return result;
+    }
+
+    private static List<ChecklistItem> shuffleTrace(List<ChecklistItem> items) {
+        List<ChecklistItem> result = new ArrayList<>(items);
+        Collections.shuffle(result, new Random(3));
+        return result;
+    }
+
+    private static final ListUpdateCallback NO_OP = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {}
+
+        @Override
+        public void onRemoved(int position, int count) {}
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {}
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {}
+    };
+
+    private static class KeyedDiffCallback implements KeyedDiff.Callback<ChecklistItem> {
+
+        @NonNull
+        @Override
+        public Object getKey(@NonNull ChecklistItem item) {
+            // Same key as ChecklistFragment's DiffCallback.
+            return item.getNormalizedName();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChecklistItem oldItem,
+                                          @NonNull ChecklistItem newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull ChecklistItem oldItem,
+                                       @NonNull ChecklistItem newItem) {
+            return null;
+        }
+    }
+
+    private static class DiffUtilCallback extends DiffUtil.Callback {
+
+        private final List<ChecklistItem> mOldList;
+        private final List<ChecklistItem> mNewList;
+
+        DiffUtilCallback(List<ChecklistItem> oldList, List<ChecklistItem> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).getNormalizedName().equals(
+                    mNewList.get(newItemPosition).getNormalizedName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).equals(mNewList.get(newItemPosition));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.bennsch.shoppinglist;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the keyed list diff.
+ */
+public class KeyedDiffTest {
+
+    @Test
+    public void calculateDiff_identicalLists_noOperations() {
+        List<String> items = Arrays.asList("a", "b", "c");
+        assertEquals(0, KeyedDiff.calculateDiff(items, items, new KeyCallback()).getOperationCount());
+    }
+
+    @Test
+    public void calculateDiff_singleMove_singleOperation() {
+        List<String> oldItems = Arrays.asList("a", "b", "c", "d", "e");
+        List<String> newItems = Arrays.asList("a", "d", "b", "c", "e");
+        KeyedDiff.Result result = KeyedDiff.calculateDiff(oldItems, newItems, new KeyCallback());
+        assertEquals(1, result.getOperationCount());
+        assertEquals(newItems, apply(oldItems, newItems, result));
+    }
+
+    @Test
+    public void calculateDiff_changedContents_dispatchesPayload() {
+        List<String> oldItems = Arrays.asList("a:1", "b:1", "c:1");
+        List<String> newItems = Arrays.asList("a:1", "b:2", "c:1");
+        List<Object> payloads = new ArrayList<>();
+        KeyedDiff.calculateDiff(oldItems, newItems, new KeyCallback()).dispatchUpdatesTo(
+                new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int position, int count) { fail(); }
+
+                    @Override
+                    public void onRemoved(int position, int count) { fail(); }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) { fail(); }
+
+                    @Override
+                    public void onChanged(int position, int count, @Nullable Object payload) {
+                        assertEquals(1, position);
+                        assertEquals(1, count);
+                        payloads.add(payload);
+                    }
+                });
+        assertEquals(Collections.singletonList("b:2"), payloads);
+    }
+
+    @Test
+    public void calculateDiff_randomEdits_producesNewList() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            List<String> oldItems = new ArrayList<>();
+            int size = random.nextInt(30);
+            for (int i = 0; i < size; i++) {
+                oldItems.add("item" + i + ":0");
+            }
+            List<String> newItems = new ArrayList<>(oldItems);
+            int edits = random.nextInt(10);
+            for (int e = 0; e < edits; e++) {
+                int op = random.nextInt(4);
+                if (op == 0 && !newItems.isEmpty()) {
+                    newItems.remove(random.nextInt(newItems.size()));
+                } else if (op == 1) {
+                    newItems.add(random.nextInt(newItems.size() + 1), "new" + run + "_" + e + ":0");
+                } else if (op == 2 && !newItems.isEmpty()) {
+                    String item = newItems.remove(random.nextInt(newItems.size()));
+                    newItems.add(random.nextInt(newItems.size() + 1), item);
+                } else if (!newItems.isEmpty()) {
+                    int index = random.nextInt(newItems.size());
+                    newItems.set(index, key(newItems.get(index)) + ":1");
+                }
+            }
+            if (random.nextInt(5) == 0) {
+                Collections.shuffle(newItems, random);
+            }
+            KeyedDiff.Result result = KeyedDiff.calculateDiff(oldItems, newItems, new KeyCallback());
+            assertEquals(newItems, apply(oldItems, newItems, result));
+        }
+    }
+
+    @Test
+    public void calculateDiff_duplicateKeys_producesNewList() {
+        List<String> oldItems = Arrays.asList("a", "b", "a", "c");
+        List<String> newItems = Arrays.asList("c", "a", "a", "a", "b");
+        KeyedDiff.Result result = KeyedDiff.calculateDiff(oldItems, newItems, new KeyCallback());
+        assertEquals(newItems, apply(oldItems, newItems, result));
+    }
+
+    private static String key(String item) {
+        // Items are "key:contents".
+        int separator = item.indexOf(':');
+        return (separator >= 0) ? item.substring(0, separator) : item;
+    }
+
+    private static List<String> apply(List<String> oldItems, List<String> newItems,
+                                      KeyedDiff.Result result) {
+        // Apply the operations to a copy of "oldItems". Inserted and changed items are taken
+        // from "newItems", at the position they have once all operations have been applied.
+        // Inserted items are marked first, since their final position isn't known yet.
+        List<String> items = new ArrayList<>(oldItems);
+        List<Boolean> inserted = new ArrayList<>(Collections.nCopies(items.size(), false));
+        List<Integer> changed = new ArrayList<>();
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    items.add(position, null);
+                    inserted.add(position, true);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    items.remove(position);
+                    inserted.remove(position);
+                }
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                items.add(toPosition, items.remove(fromPosition));
+                inserted.add(toPosition, inserted.remove(fromPosition));
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                for (int i = 0; i < count; i++) {
+                    changed.add(position + i);
+                }
+            }
+        });
+        assertEquals(newItems.size(), items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (inserted.get(i)) {
+                items.set(i, newItems.get(i));
+            } else {
+                assertEquals(key(newItems.get(i)), key(items.get(i)));
+            }
+        }
+        for (int position : changed) {
+            items.set(position, newItems.get(position));
+        }
+        return items;
+    }
+
+    private static class KeyCallback implements KeyedDiff.Callback<String> {
+
+        @Override
+        public Object getKey(String item) {
+            return key(item);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(String oldItem, String newItem) {
+            return newItem;
+        }
+    }
+}
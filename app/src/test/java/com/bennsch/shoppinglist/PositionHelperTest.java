@@ -0,0 +1,102 @@
+package com.bennsch.shoppinglist;
+
+import com.bennsch.shoppinglist.datamodel.DbChecklistItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the sparse item positions.
+ */
+public class PositionHelperTest {
+
+    private static final long STEP = PositionHelper.POSITION_STEP;
+
+    @Test
+    public void nextPosition_appendsAfterLargestPosition() {
+        assertEquals(0, PositionHelper.nextPosition(null));
+        assertEquals(5 + STEP, PositionHelper.nextPosition(5L));
+    }
+
+    @Test
+    public void reorder_unchangedOrder_updatesNothing() {
+        List<DbChecklistItem> items = makeItems(5);
+        assertTrue(PositionHelper.reorder(items).isEmpty());
+    }
+
+    @Test
+    public void reorder_singleMove_updatesOnlyMovedItem() {
+        List<DbChecklistItem> items = makeItems(6);
+        DbChecklistItem moved = items.remove(4);
+        items.add(1, moved);
+        List<DbChecklistItem> changed = PositionHelper.reorder(items);
+        assertEquals(Collections.singletonList(moved), changed);
+        assertSortedByPosition(items);
+    }
+
+    @Test
+    public void reorder_moveToFrontAndBack_updatesOnlyMovedItems() {
+        List<DbChecklistItem> items = makeItems(6);
+        DbChecklistItem first = items.remove(5);
+        items.add(0, first);
+        DbChecklistItem last = items.remove(1);
+        items.add(last);
+        assertEquals(2, PositionHelper.reorder(items).size());
+        assertSortedByPosition(items);
+    }
+
+    @Test
+    public void reorder_itemWithoutPosition_getsPlacedInBetween() {
+        List<DbChecklistItem> items = makeItems(3);
+        DbChecklistItem newItem = new DbChecklistItem("new", false, null, 1, 0);
+        items.add(1, newItem);
+        assertEquals(Collections.singletonList(newItem), PositionHelper.reorder(items));
+        assertSortedByPosition(items);
+    }
+
+    @Test
+    public void reorder_noGapLeft_rebalances() {
+        List<DbChecklistItem> items = new ArrayList<>(Arrays.asList(
+                new DbChecklistItem("a", false, 0L, 1, 0),
+                new DbChecklistItem("b", false, 1L, 1, 0),
+                new DbChecklistItem("c", false, 2L, 1, 0)));
+        DbChecklistItem moved = items.remove(2);
+        items.add(1, moved);
+        PositionHelper.reorder(items);
+        assertSortedByPosition(items);
+        assertEquals(STEP, items.get(1).getPosition() - items.get(0).getPosition());
+    }
+
+    @Test
+    public void reorder_repeatedMovesIntoSameGap_keepOrder() {
+        List<DbChecklistItem> items = makeItems(4);
+        for (int i = 0; i < 100; i++) {
+            // Always move the last item between the first two items.
+            DbChecklistItem moved = items.remove(items.size() - 1);
+            items.add(1, moved);
+            PositionHelper.reorder(items);
+            assertSortedByPosition(items);
+        }
+    }
+
+    private static List<DbChecklistItem> makeItems(int count) {
+        List<DbChecklistItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new DbChecklistItem("item" + i, false, i * STEP, 1, 0));
+        }
+        return items;
+    }
+
+    private static void assertSortedByPosition(List<DbChecklistItem> items) {
+        for (int i = 1; i < items.size(); i++) {
+            assertTrue("Not sorted at index " + i,
+                    items.get(i - 1).getPosition() < items.get(i).getPosition());
+        }
+    }
+}
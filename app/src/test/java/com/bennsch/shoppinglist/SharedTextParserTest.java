@@ -0,0 +1,31 @@
+package com.bennsch.shoppinglist;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for parsing shared text into item names.
+ */
+public class SharedTextParserTest {
+
+    @Test
+    public void parse_removesListMarkers() {
+        String text = "Ingredients:\r\n" +
+                "- 2 eggs\n" +
+                "* Milk\n" +
+                "\n" +
+                "  \u2022 Flour  \n" +
+                "1. Sugar\n" +
+                "12) Butter\n" +
+                "[ ] Salt\n" +
+                "[x] Pepper\n" +
+                "1.5 kg potatoes\n" +
+                "  -  \n";
+        assertEquals(Arrays.asList("Ingredients:", "2 eggs", "Milk", "Flour  ", "Sugar",
+                        "Butter", "Salt", "Pepper", "1.5 kg potatoes"),
+                SharedTextParser.parse(text));
+    }
+}
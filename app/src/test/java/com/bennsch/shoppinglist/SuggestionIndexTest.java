@@ -0,0 +1,98 @@
+package com.bennsch.shoppinglist;
+
+import com.bennsch.shoppinglist.datamodel.DbItemSummary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the autocomplete suggestions.
+ */
+public class SuggestionIndexTest {
+
+    @Test
+    public void query_matchesWordStarts_rankedByIncidence() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.update(Arrays.asList(
+                new DbItemSummary(1, "Orange juice", 2),
+                new DbItemSummary(2, "Apple juice", 5),
+                new DbItemSummary(3, "Jam", 1),
+                new DbItemSummary(4, "Bajuice", 9)));
+
+        assertEquals(Arrays.asList("Apple juice", "Orange juice", "Jam"),
+                index.query(" J", 10));
+        assertEquals(Collections.singletonList("Orange juice"), index.query("orange  ju", 10));
+        assertEquals(Collections.singletonList("Apple juice"), index.query("j", 1));
+    }
+
+    @Test
+    public void update_incremental() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.update(Arrays.asList(
+                new DbItemSummary(1, "Milk", 1),
+                new DbItemSummary(2, "Mint", 1)));
+        assertEquals(Arrays.asList("Mint", "Milk"), index.query("mi", 10));
+
+        // "Milk" has been used again (more recent), "Mint" renamed, "Mango" added.
+        index.update(Arrays.asList(
+                new DbItemSummary(1, "Milk", 1 + 1),
+                new DbItemSummary(2, "Peppermint", 1),
+                new DbItemSummary(3, "Mango", 0)));
+        assertEquals(Collections.singletonList("Milk"), index.query("mi", 10));
+        assertEquals(Collections.singletonList("Peppermint"), index.query("pe", 10));
+        assertEquals(Arrays.asList("Milk", "Mango"), index.query("m", 10));
+
+        // "Milk" has been deleted.
+        index.update(Collections.singletonList(new DbItemSummary(3, "Mango", 0)));
+        assertEquals(Collections.emptyList(), index.query("mi", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void update_first_itemsEquallyOld() {
+        // Regardless of their order, the most recently added (larger itemId) come first.
+        SuggestionIndex index = new SuggestionIndex();
+        index.update(Arrays.asList(
+                new DbItemSummary(3, "Bread", 1),
+                new DbItemSummary(1, "Butter", 1),
+                new DbItemSummary(2, "Buns", 1)));
+
+        assertEquals(Arrays.asList("Bread", "Buns", "Butter"), index.query("b", 10));
+    }
+
+    @Test
+    public void query_completesWithFuzzyMatches() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.update(Arrays.asList(
+                new DbItemSummary(1, "Yogurt", 1),
+                new DbItemSummary(2, "Tomatoes", 3),
+                new DbItemSummary(3, "Yoghurt drink", 2)));
+
+        // Exact prefix matches first, then the ones with a typo.
+        assertEquals(Arrays.asList("Yoghurt drink", "Yogurt"), index.query("yoghu", 10));
+        assertEquals(Collections.singletonList("Tomatoes"), index.query("tamat", 10));
+        // Too short to be fuzzy.
+        assertEquals(Collections.emptyList(), index.query("ta", 10));
+    }
+
+    @Test
+    public void findSimilar() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.update(Arrays.asList(
+                new DbItemSummary(1, "Tomatoes", 1),
+                new DbItemSummary(2, "Yogurt", 1),
+                new DbItemSummary(3, "Milk", 1)));
+
+        assertEquals("Tomatoes", index.findSimilar("tomatos"));
+        assertEquals("Yogurt", index.findSimilar(" Yoghurt"));
+        assertNull(index.findSimilar("tomatoes"));
+        assertNull(index.findSimilar("Bread"));
+        // Short names tolerate a single typo only.
+        assertEquals("Milk", index.findSimilar("Mylk"));
+        assertNull(index.findSimilar("Mlyk"));
+    }
+}
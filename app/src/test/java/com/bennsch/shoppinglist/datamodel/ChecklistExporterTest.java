@@ -0,0 +1,56 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the formats of the export.
+ */
+public class ChecklistExporterTest {
+
+    private static String write(ChecklistExporter.Format format) throws IOException {
+        StringWriter out = new StringWriter();
+        ChecklistExporter.RowWriter writer = ChecklistExporter.RowWriter.create(format, out);
+        writer.writeHeader();
+        writer.writeChecklist("Groceries");
+        writer.writeItem("Groceries", "Milk", 3, false);
+        writer.writeItem("Groceries", "Salt; \"fine\"", -1, true);
+        writer.writeChecklist("Hardware");
+        writer.writeItem("Hardware", "Nails\\Screws\n10\u0001", 0, false);
+        return out.toString();
+    }
+
+    @Test
+    public void csv_quotesFieldsIfRequired() throws IOException {
+        assertEquals("List;Name;Incidence;Checked\n" +
+                        "Groceries;Milk;3;false\n" +
+                        "Groceries;\"Salt; \"\"fine\"\"\";-1;true\n" +
+                        "Hardware;\"Nails\\Screws\n10\u0001\";0;false\n",
+                write(ChecklistExporter.Format.CSV));
+    }
+
+    @Test
+    public void jsonLines_escapesStrings() throws IOException {
+        assertEquals("{\"list\":\"Groceries\",\"name\":\"Milk\",\"incidence\":3,\"checked\":false}\n" +
+                        "{\"list\":\"Groceries\",\"name\":\"Salt; \\\"fine\\\"\",\"incidence\":-1," +
+                        "\"checked\":true}\n" +
+                        "{\"list\":\"Hardware\",\"name\":\"Nails\\\\Screws\\n10\\u0001\"," +
+                        "\"incidence\":0,\"checked\":false}\n",
+                write(ChecklistExporter.Format.JSON_LINES));
+    }
+
+    @Test
+    public void text_listsItemsPerChecklist() throws IOException {
+        assertEquals("Groceries\n" +
+                        "- Milk\n" +
+                        "- [x] Salt; \"fine\"\n" +
+                        "\n" +
+                        "Hardware\n" +
+                        "- Nails\\Screws\n10\u0001\n",
+                write(ChecklistExporter.Format.TEXT));
+    }
+}
@@ -0,0 +1,104 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for parsing the rows of an import.
+ */
+public class ChecklistImporterTest {
+
+    private static List<String> read(String text) throws Exception {
+        // Each row (or error) as a string.
+        ChecklistImporter.RowReader reader = ChecklistImporter.RowReader.create(
+                new BufferedReader(new StringReader(text)));
+        List<String> rows = new ArrayList<>();
+        while (true) {
+            try {
+                ChecklistImporter.Row row = reader.next();
+                if (row == null) {
+                    return rows;
+                }
+                rows.add(row.lineNumber + ":" + row.listTitle + "|" + row.name + "|" +
+                        row.incidence + "|" + row.isChecked);
+            } catch (ChecklistImporter.InvalidRowException e) {
+                rows.add(e.lineNumber + ":ERROR");
+            }
+        }
+    }
+
+    @Test
+    public void csv_readsExportedFile() throws Exception {
+        StringWriter out = new StringWriter();
+        ChecklistExporter.RowWriter writer =
+                ChecklistExporter.RowWriter.create(ChecklistExporter.Format.CSV, out);
+        writer.writeHeader();
+        writer.writeItem("Groceries", "Milk", 3, false);
+        writer.writeItem("Groceries", "Salt; \"fine\"", -1, true);
+        writer.writeItem("Hardware", "Nails\nScrews", 0, false);
+        writer.writeItem("Hardware", "Glue", 2, true);
+
+        assertEquals(Arrays.asList(
+                        "2:Groceries|Milk|3|false",
+                        "3:Groceries|Salt; \"fine\"|-1|true",
+                        "4:Hardware|Nails\nScrews|0|false",
+                        "6:Hardware|Glue|2|true"),
+                read(out.toString()));
+    }
+
+    @Test
+    public void csv_reportsInvalidRows() throws Exception {
+        assertEquals(Arrays.asList(
+                        "1:A|Milk|0|false",
+                        "2:ERROR",
+                        "3:ERROR",
+                        "5:ERROR",
+                        "6:B|Eggs|1|true",
+                        "7:ERROR"),
+                read("A;  Milk  \r\n" +
+                        "A;Bread;many;false\n" +
+                        "A;;1;true\n" +
+                        "\n" +
+                        "NoName\n" +
+                        "B;\"  Eggs\";1;TRUE\n" +
+                        "B;\"Jam;0;false\n"));
+    }
+
+    @Test
+    public void jsonLines_readsExportedFile() throws Exception {
+        StringWriter out = new StringWriter();
+        ChecklistExporter.RowWriter writer =
+                ChecklistExporter.RowWriter.create(ChecklistExporter.Format.JSON_LINES, out);
+        writer.writeItem("Groceries", "Milk", 3, false);
+        writer.writeItem("Groceries", "Salt; \"fine\"\\\n\u0001", -1, true);
+
+        assertEquals(Arrays.asList(
+                        "1:Groceries|Milk|3|false",
+                        "2:Groceries|Salt; \"fine\"\\\n\u0001|-1|true"),
+                read(out.toString()));
+    }
+
+    @Test
+    public void jsonLines_reportsInvalidRows() throws Exception {
+        assertEquals(Arrays.asList(
+                        "1:A|Milk|0|false",
+                        "2:ERROR",
+                        "3:ERROR",
+                        "5:ERROR",
+                        "6:B|Eggs|7|true"),
+                read("{\"list\": \"A\", \"name\": \"Milk\", \"extra\": 1.5}\n" +
+                        "{\"list\": \"A\", \"name\": \"Bread\", \"incidence\": \"many\"}\n" +
+                        "{\"list\": \"A\", \"name\": \"Jam\"\n" +
+                        "\n" +
+                        "{\"list\": \"B\"}\n" +
+                        " { \"name\" : \"Eggs\" , \"list\":\"B\", \"incidence\":7, \"checked\":true }"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.bennsch.shoppinglist.datamodel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for applying change sets to a snapshot in memory.
+ */
+public class ChecklistSnapshotTest {
+
+    private static final long STEP = DbChecklistItem.POSITION_STEP;
+
+    @Test
+    public void apply_flipToChecked_movesItemIntoWindow() {
+        DbChecklistItem a = unchecked(1, "a", 0);
+        DbChecklistItem b = unchecked(2, "b", STEP);
+        DbChecklistItem c = checked(3, "c", 5);
+        ChecklistSnapshot snapshot = snapshot(
+                Arrays.asList(a, b), Collections.singletonList(c), 1);
+
+        DbChecklistItem flipped = checked(1, "a", 6);
+        ChecklistSnapshot result = snapshot.apply(changes(ItemChangeSet.Type.UPDATED, flipped));
+
+        assertNotNull(result);
+        assertEquals(Collections.singletonList(2), ids(result.getItemsSorted(false)));
+        assertEquals(Arrays.asList(1, 3), ids(result.getItemsSorted(true)));
+        assertEquals(3, result.getItemCount());
+    }
+
+    @Test
+    public void apply_flipToUnchecked_fromOutsideOfWindow() {
+        // Only "c" is in the window, "d" is outside of it.
+        DbChecklistItem c = checked(3, "c", 5);
+        DbChecklistItem d = checked(4, "d", 1);
+        ChecklistSnapshot snapshot = new ChecklistSnapshot(new ArrayList<>(),
+                Collections.singletonList(c), 2, 0);
+
+        DbChecklistItem flipped = unchecked(4, "d", 0);
+        ChecklistSnapshot result = snapshot.apply(changes(ItemChangeSet.Type.UPDATED, flipped));
+
+        assertNotNull(result);
+        assertEquals(Collections.singletonList(4), ids(result.getItemsSorted(false)));
+        assertEquals(Collections.singletonList(3), ids(result.getItemsSorted(true)));
+        assertEquals(2, result.getItemCount());
+    }
+
+    @Test
+    public void apply_insertCheckedIntoIncompleteWindow() {
+        DbChecklistItem c = checked(3, "c", 5);
+        ChecklistSnapshot snapshot = new ChecklistSnapshot(new ArrayList<>(),
+                Collections.singletonList(c), 2, 0);
+
+        ChecklistSnapshot result = snapshot.apply(
+                changes(ItemChangeSet.Type.INSERTED, checked(5, "e", 7)));
+
+        assertNotNull(result);
+        assertEquals(Arrays.asList(5, 3), ids(result.getItemsSorted(true)));
+        assertEquals(3, result.getItemCount());
+    }
+
+    @Test
+    public void apply_insertCheckedAfterIncompleteWindow_reloads() {
+        // The snapshot might already contain "e" outside of the window, so the count is unknown.
+        DbChecklistItem c = checked(3, "c", 5);
+        ChecklistSnapshot snapshot = new ChecklistSnapshot(new ArrayList<>(),
+                Collections.singletonList(c), 2, 0);
+
+        assertNull(snapshot.apply(changes(ItemChangeSet.Type.INSERTED, checked(5, "e", -1))));
+    }
+
+    @Test
+    public void apply_changesAlreadyContained_resultUnchanged() {
+        // The snapshot has been loaded after the changes have been committed.
+        DbChecklistItem a = unchecked(1, "a", 0);
+        DbChecklistItem b = checked(2, "b", 3);
+        ChecklistSnapshot snapshot = snapshot(Collections.singletonList(a),
+                Collections.singletonList(b), 1);
+
+        ChecklistSnapshot result = snapshot.apply(new ItemChangeSet(Arrays.asList(
+                new ItemChangeSet.Change(ItemChangeSet.Type.INSERTED, a),
+                new ItemChangeSet.Change(ItemChangeSet.Type.UPDATED, b)), 1));
+
+        assertNotNull(result);
+        assertEquals(Collections.singletonList(1), ids(result.getItemsSorted(false)));
+        assertEquals(Collections.singletonList(2), ids(result.getItemsSorted(true)));
+        assertEquals(2, result.getItemCount());
+    }
+
+    @Test
+    public void apply_deleteCheckedOutsideOfWindow_reloads() {
+        // "d" is either outside of the window or already deleted, so the count is unknown.
+        DbChecklistItem c = checked(3, "c", 5);
+        DbChecklistItem d = checked(4, "d", 1);
+        ChecklistSnapshot snapshot = new ChecklistSnapshot(new ArrayList<>(),
+                Collections.singletonList(c), 2, 0);
+
+        assertNull(snapshot.apply(changes(ItemChangeSet.Type.DELETED, d)));
+    }
+
+    @Test
+    public void apply_deleteWithCompleteWindow_updatesCount() {
+        DbChecklistItem c = checked(3, "c", 5);
+        DbChecklistItem d = checked(4, "d", 1);
+        ChecklistSnapshot snapshot = snapshot(new ArrayList<>(), Arrays.asList(c, d), 2);
+
+        ChecklistSnapshot result = snapshot.apply(changes(ItemChangeSet.Type.DELETED, d));
+
+        assertNotNull(result);
+        assertEquals(Collections.singletonList(3), ids(result.getItemsSorted(true)));
+        assertEquals(1, result.getItemCount());
+        // Applied again, e.g. if the snapshot has been loaded after the deletion.
+        result = result.apply(changes(ItemChangeSet.Type.DELETED, d));
+        assertNotNull(result);
+        assertEquals(1, result.getItemCount());
+    }
+
+    private static ChecklistSnapshot snapshot(List<DbChecklistItem> unchecked,
+                                              List<DbChecklistItem> checked,
+                                              int checkedCount) {
+        return new ChecklistSnapshot(unchecked, checked, checkedCount, 0);
+    }
+
+    private static ItemChangeSet changes(ItemChangeSet.Type type, DbChecklistItem item) {
+        return new ItemChangeSet(
+                Collections.singletonList(new ItemChangeSet.Change(type, item)), 1);
+    }
+
+    private static DbChecklistItem unchecked(int id, String name, long position) {
+        DbChecklistItem item = new DbChecklistItem(name, false, position, 1, 0);
+        item.setItemId(id);
+        return item;
+    }
+
+    private static DbChecklistItem checked(int id, String name, long incidence) {
+        DbChecklistItem item = new DbChecklistItem(name, true, null, 1, incidence);
+        item.setItemId(id);
+        return item;
+    }
+
+    private static List<Integer> ids(List<DbChecklistItem> items) {
+        List<Integer> ids = new ArrayList<>();
+        for (DbChecklistItem item : items) {
+            ids.add(item.getItemId());
+        }
+        return ids;
+    }
+}
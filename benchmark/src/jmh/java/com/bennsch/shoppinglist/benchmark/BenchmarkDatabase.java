@@ -0,0 +1,166 @@
+package com.bennsch.shoppinglist.benchmark;
+
+import androidx.sqlite.SQLiteConnection;
+import androidx.sqlite.SQLiteStatement;
+import androidx.sqlite.driver.bundled.BundledSQLiteDriver;
+
+import com.bennsch.shoppinglist.sql.CatalogSql;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+
+final class BenchmarkDatabase implements AutoCloseable {
+    /*
+     *  A ChecklistDatabase in a temporary file, opened with Room's bundled SQLite driver (so the
+     *  benchmarks run on a plain JVM).
+     *
+     *  The tables and indices are created from the schema Room exports when the app is compiled
+     *  (see "room.schemaDirectory" in app/build.gradle), so they always match the entities. The
+     *  catalog triggers are not part of that schema, they are created from CatalogSql like in
+     *  ChecklistDatabase.createCatalogTriggers(). The connection is configured like Room's
+     *  (write-ahead log, foreign keys enabled).
+     */
+
+    // Same as DbChecklistItem.POSITION_STEP.
+    static final long POSITION_STEP = 1L << 32;
+
+    private static final String SCHEMA_DIRECTORY_PROPERTY = "benchmark.schemaDirectory";
+
+    private final File mFile;
+    private final SQLiteConnection mConnection;
+
+
+    BenchmarkDatabase() throws IOException {
+        mFile = File.createTempFile("checklist_benchmark", ".db");
+        deleteWithJournals(mFile);
+        mConnection = new BundledSQLiteDriver().open(mFile.getPath());
+        execute("PRAGMA journal_mode = WAL");
+        execute("PRAGMA synchronous = NORMAL");
+        execute("PRAGMA foreign_keys = ON");
+        createSchema(readLatestSchema());
+        createCatalogTriggers();
+    }
+
+    @Override
+    public void close() {
+        mConnection.close();
+        deleteWithJournals(mFile);
+    }
+
+    SQLiteStatement prepare(String sql) {
+        return mConnection.prepare(sql);
+    }
+
+    void execute(String sql) {
+        try (SQLiteStatement statement = mConnection.prepare(sql)) {
+            statement.step();
+        }
+    }
+
+    long queryLong(String sql) {
+        try (SQLiteStatement statement = mConnection.prepare(sql)) {
+            statement.step();
+            return statement.getLong(0);
+        }
+    }
+
+    void beginTransaction() {
+        // Room starts its write transactions as "IMMEDIATE".
+        execute("BEGIN IMMEDIATE TRANSACTION");
+    }
+
+    void endTransaction() {
+        execute("END TRANSACTION");
+    }
+
+    private static JSONObject readLatestSchema() throws IOException {
+        // The schema with the highest version number, i.e. the current one.
+        String directory = System.getProperty(SCHEMA_DIRECTORY_PROPERTY);
+        if (directory == null) {
+            throw new IllegalStateException("Missing system property " + SCHEMA_DIRECTORY_PROPERTY);
+        }
+        File latest = null;
+        int latestVersion = 0;
+        File[] files = new File(directory).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(".json")) {
+                    int version = Integer.parseInt(name.substring(0, name.length() - 5));
+                    if (version > latestVersion) {
+                        latest = file;
+                        latestVersion = version;
+                    }
+                }
+            }
+        }
+        if (latest == null) {
+            throw new IOException("No schema in " + directory + ", compile the app first");
+        }
+        String json = new String(Files.readAllBytes(latest.toPath()), StandardCharsets.UTF_8);
+        return new JSONObject(json).getJSONObject("database");
+    }
+
+    private void createSchema(JSONObject database) {
+        // Same statements Room executes in its RoomOpenHelper.onCreate().
+        List<String> statements = new ArrayList<>();
+        JSONArray entities = database.getJSONArray("entities");
+        for (int i = 0; i < entities.length(); i++) {
+            JSONObject entity = entities.getJSONObject(i);
+            String tableName = entity.getString("tableName");
+            statements.add(withTableName(entity.getString("createSql"), tableName));
+            JSONArray indices = entity.optJSONArray("indices");
+            if (indices != null) {
+                for (int j = 0; j < indices.length(); j++) {
+                    statements.add(withTableName(
+                            indices.getJSONObject(j).getString("createSql"), tableName));
+                }
+            }
+            // Keeps an external content FTS table in sync with its content table.
+            JSONArray triggers = entity.optJSONArray("contentSyncTriggers");
+            if (triggers != null) {
+                for (int j = 0; j < triggers.length(); j++) {
+                    statements.add(triggers.getString(j));
+                }
+            }
+        }
+        JSONArray views = database.optJSONArray("views");
+        if (views != null) {
+            for (int i = 0; i < views.length(); i++) {
+                JSONObject view = views.getJSONObject(i);
+                statements.add(view.getString("createSql")
+                        .replace("${VIEW_NAME}", view.getString("viewName")));
+            }
+        }
+        beginTransaction();
+        for (String sql : statements) {
+            execute(sql);
+        }
+        endTransaction();
+    }
+
+    private void createCatalogTriggers() {
+        for (String sql : CatalogSql.createTriggers()) {
+            execute(sql);
+        }
+    }
+
+    private static String withTableName(String sql, String tableName) {
+        return sql.replace("${TABLE_NAME}", tableName);
+    }
+
+    private static void deleteWithJournals(File file) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+}
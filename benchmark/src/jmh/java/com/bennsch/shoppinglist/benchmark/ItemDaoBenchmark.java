@@ -0,0 +1,359 @@
+package com.bennsch.shoppinglist.benchmark;
+
+import androidx.sqlite.SQLiteStatement;
+
+import com.bennsch.shoppinglist.sql.ItemDaoSql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ItemDao operations that run on every user interaction, for checklists of
+ * different sizes and databases with a different number of checklists. Run with:
+ *
+ *   ./gradlew :benchmark:jmh
+ *
+ * The results are written to benchmark/build/results/jmh/results.json.
+ *
+ * The queries are the ones of ChecklistDatabase.ItemDao (see ItemDaoSql), their parameters are
+ * bound by index in the order of their first occurrence. The SQL Room generates for @Insert,
+ * @Update and @Delete is copied below, it only changes with the entity. All operations target a single checklist, the other
+ * checklists only make the tables (and indices) larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemDaoBenchmark {
+
+    private static final String SQL_INSERT_CHECKLIST =
+            "INSERT OR ABORT INTO `DbChecklist` (`listId`,`listTitle`,`trashedAt`) VALUES (?,?,?)";
+    private static final String SQL_INSERT_ITEM =
+            "INSERT OR ABORT INTO `DbChecklistItem` (`itemId`,`name`,`normalizedName`," +
+            "`belongsToChecklist`,`isChecked`,`position`,`incidence`) VALUES (?,?,?,?,?,?,?)";
+    private static final String SQL_UPDATE_ITEM =
+            "UPDATE OR ABORT `DbChecklistItem` SET `itemId` = ?,`name` = ?,`normalizedName` = ?," +
+            "`belongsToChecklist` = ?,`isChecked` = ?,`position` = ?,`incidence` = ? " +
+            "WHERE `itemId` = ?";
+    private static final String SQL_DELETE_ITEM =
+            "DELETE FROM `DbChecklistItem` WHERE `itemId` = ?";
+
+    private static final long POSITION_STEP = BenchmarkDatabase.POSITION_STEP;
+    // Same as ChecklistRepository.CHECKED_WINDOW_SIZE.
+    private static final int CHECKED_WINDOW_SIZE = 100;
+
+    // Number of items in each checklist (half of them checked).
+    @Param({"100", "1000", "10000"})
+    public int listSize;
+
+    // Number of checklists in the database.
+    @Param({"1", "10"})
+    public int listCount;
+
+    private BenchmarkDatabase mDb;
+    // The checklist that is read and modified (the one in the middle).
+    private int mListId;
+    // The unchecked items of mListId, in their order.
+    private Item[] mUncheckedItems;
+    // Alternates between the original and the modified state, so that every invocation
+    // modifies the database (and the database stays the same size).
+    private boolean mToggle;
+
+    private SQLiteStatement mInsertItem;
+    private SQLiteStatement mUpdateItem;
+    private SQLiteStatement mDeleteItem;
+    private SQLiteStatement mGetItemSubsetSorted;
+    private SQLiteStatement mGetCheckedItemsSortedWindow;
+    private SQLiteStatement mGetItemByNormalizedName;
+    private SQLiteStatement mGetMinIncidence;
+    private SQLiteStatement mGetMaxPosition;
+    private SQLiteStatement mRenameChecklist;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDb = new BenchmarkDatabase();
+        mInsertItem = mDb.prepare(SQL_INSERT_ITEM);
+        mUpdateItem = mDb.prepare(SQL_UPDATE_ITEM);
+        mDeleteItem = mDb.prepare(SQL_DELETE_ITEM);
+        mGetItemSubsetSorted = mDb.prepare(ItemDaoSql.GET_ITEM_SUBSET_SORTED);
+        mGetCheckedItemsSortedWindow = mDb.prepare(ItemDaoSql.GET_CHECKED_ITEMS_SORTED_WINDOW);
+        mGetItemByNormalizedName = mDb.prepare(ItemDaoSql.GET_ITEM_BY_NORMALIZED_NAME);
+        mGetMinIncidence = mDb.prepare(ItemDaoSql.GET_MIN_INCIDENCE);
+        mGetMaxPosition = mDb.prepare(ItemDaoSql.GET_MAX_POSITION);
+        mRenameChecklist = mDb.prepare(ItemDaoSql.RENAME_CHECKLIST);
+        populate();
+        mListId = listCount / 2 + 1;
+        mUncheckedItems = new Item[listSize - listSize / 2];
+        mGetItemSubsetSorted.bindLong(1, mListId);
+        mGetItemSubsetSorted.bindLong(2, 0);
+        for (int i = 0; mGetItemSubsetSorted.step(); i++) {
+            mUncheckedItems[i] = Item.read(mGetItemSubsetSorted);
+        }
+        mGetItemSubsetSorted.reset();
+        mDb.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (SQLiteStatement statement : new SQLiteStatement[]{mInsertItem, mUpdateItem,
+                mDeleteItem, mGetItemSubsetSorted, mGetCheckedItemsSortedWindow,
+                mGetItemByNormalizedName, mGetMinIncidence, mGetMaxPosition, mRenameChecklist}) {
+            statement.close();
+        }
+        mDb.close();
+    }
+
+    @Benchmark
+    public void getItemSubsetSorted(Blackhole blackhole) {
+        // Loading the unchecked items (e.g. when a checklist is opened).
+        try {
+            mGetItemSubsetSorted.bindLong(1, mListId);
+            mGetItemSubsetSorted.bindLong(2, 0);
+            while (mGetItemSubsetSorted.step()) {
+                blackhole.consume(Item.read(mGetItemSubsetSorted));
+            }
+        } finally {
+            mGetItemSubsetSorted.reset();
+        }
+    }
+
+    @Benchmark
+    public void getCheckedItemsSortedWindow(Blackhole blackhole) {
+        // Loading the first window of checked items (see ChecklistSnapshot).
+        try {
+            mGetCheckedItemsSortedWindow.bindLong(1, mListId);
+            mGetCheckedItemsSortedWindow.bindLong(2, CHECKED_WINDOW_SIZE);
+            while (mGetCheckedItemsSortedWindow.step()) {
+                blackhole.consume(Item.read(mGetCheckedItemsSortedWindow));
+            }
+        } finally {
+            mGetCheckedItemsSortedWindow.reset();
+        }
+    }
+
+    @Benchmark
+    public long getMinIncidence() {
+        return queryMinIncidence();
+    }
+
+    @Benchmark
+    public void insertAndDeleteItem() {
+        // Same as MainViewModel.insertItem() for a new (unchecked) item, followed by deleting it.
+        mDb.beginTransaction();
+        try {
+            String name = "New item";
+            if (queryItemByNormalizedName("new item") != null) {
+                throw new IllegalStateException("Item already exists");
+            }
+            long incidence = queryMinIncidence() - 1;
+            Long maxPosition = queryMaxPosition(false);
+            long position = (maxPosition == null) ? 0 : maxPosition + POSITION_STEP;
+            bindItem(mInsertItem, new Item(null, name, "new item", mListId, false, position,
+                    incidence));
+            mInsertItem.step();
+        } finally {
+            mInsertItem.reset();
+            mDb.endTransaction();
+        }
+        mDb.beginTransaction();
+        try {
+            long itemId = mDb.queryLong("SELECT last_insert_rowid()");
+            mDeleteItem.bindLong(1, itemId);
+            mDeleteItem.step();
+        } finally {
+            mDeleteItem.reset();
+            mDb.endTransaction();
+        }
+    }
+
+    @Benchmark
+    public void insertExistingItem() {
+        // Same as MainViewModel.insertItem() for an existing unchecked item, i.e. it's moved to
+        // the end of the list (alternating between two items, so that the position changes).
+        mDb.beginTransaction();
+        try {
+            Item item = queryItemByNormalizedName(mToggle ? "item 0" : "item 2");
+            if (item == null) {
+                throw new IllegalStateException("Item doesn't exist");
+            }
+            Long maxPosition = queryMaxPosition(false);
+            if ((maxPosition != null) && !maxPosition.equals(item.position)) {
+                bindItem(mUpdateItem, new Item(item.itemId, item.name, item.normalizedName,
+                        item.belongsToChecklist, false, maxPosition + POSITION_STEP,
+                        item.incidence));
+                mUpdateItem.bindLong(8, item.itemId);
+                mUpdateItem.step();
+            }
+            mToggle = !mToggle;
+        } finally {
+            mUpdateItem.reset();
+            mDb.endTransaction();
+        }
+    }
+
+    @Benchmark
+    public void updateItems() {
+        // Updating all unchecked items with a single @Update (e.g. after reordering the list).
+        long offset = mToggle ? 0 : 1;
+        mDb.beginTransaction();
+        try {
+            for (Item item : mUncheckedItems) {
+                bindItem(mUpdateItem, new Item(item.itemId, item.name, item.normalizedName,
+                        item.belongsToChecklist, item.isChecked, item.position + offset,
+                        item.incidence));
+                mUpdateItem.bindLong(8, item.itemId);
+                mUpdateItem.step();
+                mUpdateItem.reset();
+            }
+            mToggle = !mToggle;
+        } finally {
+            mUpdateItem.reset();
+            mDb.endTransaction();
+        }
+    }
+
+    @Benchmark
+    public void renameChecklist() {
+        // The items refer to the checklist's id, so renaming doesn't cascade to them (unlike
+        // before version 2, when the title was the primary key).
+        mDb.beginTransaction();
+        try {
+            mRenameChecklist.bindText(1, "List " + mListId + (mToggle ? "" : " (renamed)"));
+            mRenameChecklist.bindLong(2, mListId);
+            mRenameChecklist.step();
+            mToggle = !mToggle;
+        } finally {
+            mRenameChecklist.reset();
+            mDb.endTransaction();
+        }
+    }
+
+    private void populate() {
+        // Every checklist contains the same names, so the catalog has "listSize" entries.
+        SQLiteStatement insertChecklist = mDb.prepare(SQL_INSERT_CHECKLIST);
+        mDb.beginTransaction();
+        try {
+            for (int listId = 1; listId <= listCount; listId++) {
+                insertChecklist.bindLong(1, listId);
+                insertChecklist.bindText(2, "List " + listId);
+                insertChecklist.bindLong(3, 0);
+                insertChecklist.step();
+                insertChecklist.reset();
+                for (int i = 0; i < listSize; i++) {
+                    boolean isChecked = (i % 2) == 1;
+                    bindItem(mInsertItem, new Item(null, "Item " + i, "item " + i, listId,
+                            isChecked, isChecked ? null : i * POSITION_STEP, listSize - i));
+                    mInsertItem.step();
+                    mInsertItem.reset();
+                }
+            }
+        } finally {
+            insertChecklist.close();
+            mDb.endTransaction();
+        }
+    }
+
+    private Item queryItemByNormalizedName(String normalizedName) {
+        try {
+            mGetItemByNormalizedName.bindLong(1, mListId);
+            mGetItemByNormalizedName.bindText(2, normalizedName);
+            return mGetItemByNormalizedName.step() ? Item.read(mGetItemByNormalizedName) : null;
+        } finally {
+            mGetItemByNormalizedName.reset();
+        }
+    }
+
+    private long queryMinIncidence() {
+        try {
+            mGetMinIncidence.bindLong(1, mListId);
+            mGetMinIncidence.step();
+            // Room returns 0 for NULL (i.e. if the list is empty).
+            return mGetMinIncidence.getLong(0);
+        } finally {
+            mGetMinIncidence.reset();
+        }
+    }
+
+    private Long queryMaxPosition(boolean isChecked) {
+        try {
+            mGetMaxPosition.bindLong(1, mListId);
+            mGetMaxPosition.bindLong(2, isChecked ? 1 : 0);
+            mGetMaxPosition.step();
+            return mGetMaxPosition.isNull(0) ? null : mGetMaxPosition.getLong(0);
+        } finally {
+            mGetMaxPosition.reset();
+        }
+    }
+
+    private static void bindItem(SQLiteStatement statement, Item item) {
+        // Binds the columns in the order of DbChecklistItem's fields (like Room).
+        if (item.itemId == null) {
+            statement.bindNull(1);
+        } else {
+            statement.bindLong(1, item.itemId);
+        }
+        statement.bindText(2, item.name);
+        statement.bindText(3, item.normalizedName);
+        statement.bindLong(4, item.belongsToChecklist);
+        statement.bindLong(5, item.isChecked ? 1 : 0);
+        if (item.position == null) {
+            statement.bindNull(6);
+        } else {
+            statement.bindLong(6, item.position);
+        }
+        statement.bindLong(7, item.incidence);
+    }
+
+    private static final class Item {
+        // A row of DbChecklistItem, read like Room maps it to an entity.
+
+        final Integer itemId;
+        final String name;
+        final String normalizedName;
+        final int belongsToChecklist;
+        final boolean isChecked;
+        final Long position;
+        final long incidence;
+
+        Item(Integer itemId, String name, String normalizedName, int belongsToChecklist,
+             boolean isChecked, Long position, long incidence) {
+            this.itemId = itemId;
+            this.name = name;
+            this.normalizedName = normalizedName;
+            this.belongsToChecklist = belongsToChecklist;
+            this.isChecked = isChecked;
+            this.position = position;
+            this.incidence = incidence;
+        }
+
+        static Item read(SQLiteStatement statement) {
+            // "SELECT *" returns the columns in the order of the table definition.
+            return new Item(
+                    (int) statement.getLong(0),
+                    statement.getText(1),
+                    statement.getText(2),
+                    (int) statement.getLong(3),
+                    statement.getLong(4) != 0,
+                    statement.isNull(5) ? null : statement.getLong(5),
+                    statement.getLong(6));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bennsch.shoppinglist.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+public class CatalogSql {
+    /*
+     *  The triggers that keep the catalog of item names (DbCatalogItem) up-to-date with every
+     *  write to DbChecklistItem, no matter which code path it comes from. An item is "used" when
+     *  it's added to a checklist, renamed, or put back on the list (flipping increments its
+     *  incidence, reordering only decrements it).
+     *
+     *  Room doesn't know about the triggers (they are not part of the exported schema), so they
+     *  are created by ChecklistDatabase, and by the benchmarks the same way.
+     */
+
+    // Current time in milliseconds since epoch, evaluated by SQLite (see DbCatalogItem).
+    public static final String NOW = "(CAST(strftime('%s', 'now') AS INTEGER) * 1000)";
+
+    private static final String USE = "INSERT OR IGNORE INTO `DbCatalogItem` " +
+            "(`name`, `normalizedName`, `useCount`, `lastUsed`) " +
+            "VALUES (NEW.`name`, NEW.`normalizedName`, 0, 0); " +
+            "UPDATE `DbCatalogItem` SET `name` = NEW.`name`, `useCount` = `useCount` + 1, " +
+            "`lastUsed` = " + NOW + " " +
+            "WHERE `normalizedName` = NEW.`normalizedName`; ";
+
+    public static final String CREATE_TRIGGER_ITEM_INSERTED =
+            "CREATE TRIGGER IF NOT EXISTS catalog_item_inserted " +
+            "AFTER INSERT ON `DbChecklistItem` BEGIN " + USE + "END";
+
+    public static final String CREATE_TRIGGER_ITEM_RENAMED =
+            "CREATE TRIGGER IF NOT EXISTS catalog_item_renamed " +
+            "AFTER UPDATE OF `name` ON `DbChecklistItem` " +
+            "WHEN NEW.`normalizedName` != OLD.`normalizedName` BEGIN " + USE + "END";
+
+    public static final String CREATE_TRIGGER_ITEM_USED =
+            "CREATE TRIGGER IF NOT EXISTS catalog_item_used " +
+            "AFTER UPDATE OF `incidence` ON `DbChecklistItem` " +
+            "WHEN NEW.`incidence` > OLD.`incidence` BEGIN " + USE + "END";
+
+    public static List<String> createTriggers() {
+        // All of the above, in the order they are created.
+        return Arrays.asList(CREATE_TRIGGER_ITEM_INSERTED, CREATE_TRIGGER_ITEM_RENAMED,
+                CREATE_TRIGGER_ITEM_USED);
+    }
+}
@@ -0,0 +1,170 @@
+package com.bennsch.shoppinglist.sql;
+
+
+public class ItemDaoSql {
+    /*
+     *  The SQL of the queries in ChecklistDatabase.ItemDao, one constant per method (named after
+     *  it). Kept in this plain Java module, so that the query plan test and the benchmarks (see
+     *  the ":benchmark" module) run exactly the statements the app runs.
+     *
+     *  Parameters are named (":listId"), as Room requires. SQLite numbers them in the order of
+     *  their first occurrence, so they can also be bound by index (a parameter that occurs more
+     *  than once is bound once). Room expands a list parameter ("IN (:listIds)") into one
+     *  parameter per element, a plain SQLite statement takes a single value.
+     */
+
+    public static final String RENAME_CHECKLIST =
+            "UPDATE DbChecklist SET listTitle = :newListTitle WHERE listId == :listId";
+
+    public static final String DELETE_CHECKLIST =
+            "DELETE FROM DbChecklist WHERE listId == :listId";
+
+    public static final String TRASH_CHECKLIST =
+            "UPDATE DbChecklist SET trashedAt = :trashedAt WHERE listId == :listId";
+
+    public static final String RESTORE_CHECKLIST =
+            "UPDATE DbChecklist SET trashedAt = 0 WHERE listId == :listId AND trashedAt != 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM DbChecklist AS other WHERE other.trashedAt == 0 " +
+            "AND other.listTitle == DbChecklist.listTitle)";
+
+    public static final String GET_EXPIRED_TRASH =
+            "SELECT listId FROM DbChecklist WHERE trashedAt != 0 AND trashedAt < :trashedBefore " +
+            "LIMIT :limit";
+
+    public static final String DELETE_ITEMS =
+            "DELETE FROM DbChecklistItem WHERE itemId IN (SELECT itemId FROM DbChecklistItem " +
+            "WHERE belongsToChecklist IN (:listIds) LIMIT :limit)";
+
+    public static final String DELETE_CHECKLISTS =
+            "DELETE FROM DbChecklist WHERE listId IN (:listIds)";
+
+    public static final String GET_ALL_ITEMS =
+            "SELECT * FROM DbChecklistItem";
+
+    public static final String GET_ALL_CHECKLISTS =
+            "SELECT * FROM DbChecklist WHERE trashedAt == 0";
+
+    public static final String GET_ALL_CHECKLISTS_WITH_TRASH =
+            "SELECT * FROM DbChecklist";
+
+    public static final String GET_CHECKLISTS =
+            "SELECT * FROM DbChecklist";
+
+    public static final String GET_CHECKLIST_ID =
+            "SELECT listId FROM DbChecklist WHERE listTitle == :listTitle AND trashedAt == 0";
+
+    public static final String GET_ITEM_SUBSET_SORTED =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == :isChecked ORDER BY position ASC";
+
+    public static final String GET_CHECKED_ITEMS_SORTED =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == 1 ORDER BY incidence DESC, itemId DESC";
+
+    public static final String GET_CHECKED_ITEMS_SORTED_WINDOW =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == 1 ORDER BY incidence DESC, itemId DESC LIMIT :limit";
+
+    public static final String COUNT_ITEMS =
+            "SELECT COUNT(*) FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == :isChecked";
+
+    public static final String GET_ITEM_SUMMARIES =
+            "SELECT itemId, name, incidence FROM DbChecklistItem " +
+            "WHERE belongsToChecklist == :listId";
+
+    public static final String QUERY_UNCHECKED_ITEMS =
+            "SELECT name, incidence FROM DbChecklistItem WHERE belongsToChecklist == :listId " +
+            "AND isChecked == 0 ORDER BY position ASC";
+
+    public static final String QUERY_CHECKED_ITEMS =
+            "SELECT name, incidence FROM DbChecklistItem WHERE belongsToChecklist == :listId " +
+            "AND isChecked == 1 ORDER BY incidence DESC, itemId DESC";
+
+    public static final String GET_ITEMS =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId";
+
+    public static final String GET_ACTIVE_CHECKLIST =
+            "SELECT DbChecklist.* FROM DbActiveChecklist " +
+            "INNER JOIN DbChecklist ON DbChecklist.listId == DbActiveChecklist.listId " +
+            "WHERE DbChecklist.trashedAt == 0";
+
+    public static final String GET_ITEM_BY_NORMALIZED_NAME =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "normalizedName == :normalizedName";
+
+    public static final String GET_ITEMS_BY_NORMALIZED_NAMES =
+            "SELECT * FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "normalizedName IN (:normalizedNames)";
+
+    public static final String GET_MIN_INCIDENCE =
+            "SELECT MIN(incidence) FROM DbChecklistItem WHERE belongsToChecklist == :listId";
+
+    public static final String GET_MAX_POSITION =
+            "SELECT MAX(position) FROM DbChecklistItem WHERE belongsToChecklist == :listId " +
+            "AND isChecked == :isChecked";
+
+    public static final String GET_CHECKED_ITEM_IDS_SORTED =
+            "SELECT itemId FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == 1 ORDER BY incidence DESC, itemId DESC";
+
+    public static final String SET_POSITION =
+            "UPDATE DbChecklistItem SET position = :position WHERE itemId == :itemId";
+
+    public static final String UNCHECK_ALL_ITEMS =
+            "UPDATE DbChecklistItem SET isChecked = 0, incidence = incidence + 1 " +
+            "WHERE belongsToChecklist == :listId AND isChecked == 1";
+
+    public static final String CHECK_ALL_ITEMS =
+            "UPDATE DbChecklistItem SET isChecked = 1, incidence = incidence + 1, " +
+            "position = NULL WHERE belongsToChecklist == :listId AND isChecked == 0";
+
+    public static final String DELETE_CHECKED_ITEMS =
+            "DELETE FROM DbChecklistItem WHERE belongsToChecklist == :listId AND " +
+            "isChecked == 1";
+
+    public static final String DELETE_TEMPLATE =
+            "DELETE FROM DbTemplateItem WHERE belongsToChecklist == :listId";
+
+    public static final String SAVE_TEMPLATE =
+            "INSERT INTO DbTemplateItem (belongsToChecklist, normalizedName, name, position) " +
+            "SELECT belongsToChecklist, normalizedName, name, position FROM DbChecklistItem " +
+            "WHERE belongsToChecklist == :listId AND isChecked == 0";
+
+    public static final String COUNT_TEMPLATE_ITEMS =
+            "SELECT COUNT(*) FROM DbTemplateItem WHERE belongsToChecklist == :listId";
+
+    public static final String CHECK_ITEMS_NOT_IN_TEMPLATE =
+            "UPDATE DbChecklistItem SET isChecked = 1, incidence = incidence + 1, " +
+            "position = NULL WHERE belongsToChecklist == :listId AND isChecked == 0 AND " +
+            "normalizedName NOT IN " +
+            "(SELECT normalizedName FROM DbTemplateItem WHERE belongsToChecklist == :listId)";
+
+    public static final String INSERT_MISSING_TEMPLATE_ITEMS =
+            "INSERT INTO DbChecklistItem " +
+            "(name, normalizedName, belongsToChecklist, isChecked, position, incidence) " +
+            "SELECT t.name, t.normalizedName, t.belongsToChecklist, 0, t.position, " +
+            "(SELECT COALESCE(MIN(i.incidence), 0) - 1 FROM DbChecklistItem AS i " +
+            "WHERE i.belongsToChecklist == :listId) " +
+            "FROM DbTemplateItem AS t WHERE t.belongsToChecklist == :listId AND NOT EXISTS " +
+            "(SELECT 1 FROM DbChecklistItem AS i WHERE i.belongsToChecklist == :listId AND " +
+            "i.normalizedName == t.normalizedName)";
+
+    public static final String UNCHECK_TEMPLATE_ITEMS =
+            "UPDATE DbChecklistItem SET incidence = incidence + isChecked, isChecked = 0, " +
+            "position = (SELECT t.position FROM DbTemplateItem AS t " +
+            "WHERE t.belongsToChecklist == :listId AND " +
+            "t.normalizedName == DbChecklistItem.normalizedName) " +
+            "WHERE belongsToChecklist == :listId AND normalizedName IN " +
+            "(SELECT normalizedName FROM DbTemplateItem WHERE belongsToChecklist == :listId)";
+
+    public static final String SEARCH_CATALOG =
+            "SELECT DbCatalogItem.name FROM DbCatalogItem " +
+            "INNER JOIN DbCatalogItemFts ON DbCatalogItem.catalogId == DbCatalogItemFts.rowid " +
+            "WHERE DbCatalogItemFts MATCH :match " +
+            "ORDER BY DbCatalogItem.useCount DESC, DbCatalogItem.lastUsed DESC LIMIT :limit";
+
+    public static final String GET_CATALOG_MOST_USED =
+            "SELECT name FROM DbCatalogItem ORDER BY useCount DESC, lastUsed DESC " +
+            "LIMIT :limit";
+}